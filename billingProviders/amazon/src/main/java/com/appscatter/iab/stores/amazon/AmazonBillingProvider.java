@@ -51,11 +51,11 @@ import com.appscatter.iab.stores.amazon.events.AmazonPurchaseResponse;
 import com.appscatter.iab.stores.amazon.events.AmazonPurchaseUpdatesResponse;
 import com.appscatter.iab.utils.ASChecks;
 import com.appscatter.iab.utils.ASLog;
+import com.appscatter.iab.utils.ASPackageIndex;
 import com.appscatter.iab.utils.ASUtils;
 
 import android.content.ComponentName;
 import android.content.Context;
-import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
@@ -255,13 +255,10 @@ public class AmazonBillingProvider extends BaseBillingProvider<SkuResolver, Purc
 
     @Override
     public boolean isAvailable() {
-        final PackageManager packageManager = context.getPackageManager();
-        for (final PackageInfo info : packageManager.getInstalledPackages(0)) {
-            if (PATTERN_STORE_PACKAGE.matcher(info.packageName).matches()) {
-                // Check sdk tester package if app is in sandbox mode.
-                return !PurchasingService.IS_SANDBOX_MODE
-                        || ASUtils.isInstalled(context, TESTER_PACKAGE);
-            }
+        if (ASPackageIndex.getInstance(context).isAnyInstalled(PATTERN_STORE_PACKAGE)) {
+            // Check sdk tester package if app is in sandbox mode.
+            return !PurchasingService.IS_SANDBOX_MODE
+                    || ASUtils.isInstalled(context, TESTER_PACKAGE);
         }
         return false;
     }
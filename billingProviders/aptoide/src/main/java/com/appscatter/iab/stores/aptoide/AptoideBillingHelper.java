@@ -16,6 +16,7 @@
 package com.appscatter.iab.stores.aptoide;
 
 import com.appscatter.iab.core.billing.AidlBillingHelper;
+import com.appscatter.iab.core.billing.BinderBatcher;
 import com.appscatter.iab.stores.aptoide.model.ItemType;
 import com.appscatter.iab.utils.ASLog;
 import com.appscatter.iab.utils.ASPreferences;
@@ -51,9 +52,15 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
     protected final String packageName = context.getPackageName();
     @NonNull
     protected final ASPreferences preferences = new ASPreferences(context);
+    /**
+     * Sizes chunks of SKU details requests, limited by {@link #BATCH_SIZE}.
+     */
+    @NonNull
+    protected final BinderBatcher skuDetailsBatcher = new BinderBatcher(BATCH_SIZE);
 
     protected AptoideBillingHelper(@NonNull final Context context) {
-        super(context, AptoideInAppBillingService.class);
+        super(context, AptoideInAppBillingService.class,
+                AptoideInAppBillingService.Stub::asInterface);
     }
 
     /**
@@ -68,11 +75,12 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
         final AptoideInAppBillingService service = getService();
         if (service == null) {
             // Can't connect to service.
-            return Response.UNKNOWN;
+            return Response.SERVICE_UNAVAILABLE;
         }
         try {
             for (final ItemType itemType : ItemType.values()) {
                 @Response final int response = service.isBillingSupported(API, packageName, itemType.toString());
+                onServiceSuccess();
                 if (response != Response.OK) {
                     // Report first encountered unsuccessful response.
                     return response;
@@ -80,6 +88,7 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
             }
             return Response.OK;
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.d("Billing check failed.", exception);
         }
         return Response.UNKNOWN;
@@ -98,15 +107,17 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
         ASLog.logMethod(sku, itemType);
         final AptoideInAppBillingService service = getService();
         if (service == null) {
-            return null;
+            return AptoideUtils.putResponse(new Bundle(), Response.SERVICE_UNAVAILABLE);
         }
         try {
             final String type = itemType.toString();
             final Bundle result = service.getBuyIntent(API, packageName, sku, type, "");
+            onServiceSuccess();
             @Response final int response = AptoideUtils.getResponse(result);
             ASLog.d("Response: %s. Result: %s", response, ASUtils.toString(result));
             return result;
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.d("getBuyIntent request failed.", exception);
         }
         return null;
@@ -124,13 +135,15 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
         ASLog.logMethod(token);
         final AptoideInAppBillingService service = getService();
         if (service == null) {
-            return Response.UNKNOWN;
+            return Response.SERVICE_UNAVAILABLE;
         }
         try {
             @Response final int response = service.consumePurchase(API, packageName, token);
+            onServiceSuccess();
             ASLog.d("Response: %s", response);
             return response;
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.e("consumePurchase request failed.", exception);
         }
         return Response.UNKNOWN;
@@ -138,49 +151,44 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
 
     /**
      * Wraps {@link AptoideInAppBillingService#getSkuDetails(int, String, String, Bundle)}.
+     * <p>
+     * SKUs are sent in chunks sized by {@link #skuDetailsBatcher}, details are handed to the
+     * receiver as soon as each chunk is loaded.
      *
-     * @param skus SKUs to load details for.
+     * @param skus     SKUs to load details for.
+     * @param receiver Receiver of the loaded details.
      *
-     * @return Bundle containing requested SKUs details. Can be null.
+     * @return {@link Response#OK} if all details were loaded, first encountered error otherwise.
      */
-    @Nullable
-    public Bundle getSkuDetails(@NonNull final Collection<String> skus) {
+    @Response
+    public int getSkuDetails(@NonNull final Collection<String> skus,
+            @NonNull final SkuDetailsReceiver receiver) {
         ASLog.logMethod(Arrays.toString(skus.toArray()));
         final AptoideInAppBillingService service = getService();
         if (service == null) {
-            return null;
+            return Response.SERVICE_UNAVAILABLE;
         }
         final List<String> skuList = new ArrayList<>(skus);
-        final Bundle result = new Bundle();
         try {
-            final int size = skuList.size();
-            final int batchCount = size / BATCH_SIZE;
-            for (int i = 0; i <= batchCount; i++) {
-                final int first = i * BATCH_SIZE;
-                final int last = Math.min((i + 1) * BATCH_SIZE, size);
-                final ArrayList<String> batch = new ArrayList<>(skuList.subList(first, last));
-                final Bundle bundle = AptoideUtils.putSkuList(new Bundle(), batch);
-                for (final ItemType itemType : ItemType.values()) {
-                    final String type = itemType.toString();
-                    final Bundle details = service.getSkuDetails(API, packageName, type, bundle);
-                    @Response final int response = AptoideUtils.getResponse(details);
-                    ASLog.d("From %d to %d. Type: %s. Response: %s. Details: %s.",
-                            first, last, itemType, response, ASUtils.toString(details));
-                    if (response != Response.OK) {
-                        // Return received bundle if error is encountered
-                        return details;
-                    } else {
-                        // Aggregate all loaded details in a single bundle
-                        final ArrayList<String> skuDetails = AptoideUtils.getSkuDetails(details);
-                        AptoideUtils.addSkuDetails(result, skuDetails);
-                    }
+            for (final ItemType itemType : ItemType.values()) {
+                final String type = itemType.toString();
+                final SkuDetailsChunkReceiver chunkReceiver = new SkuDetailsChunkReceiver(receiver);
+                skuDetailsBatcher.execute(skuList, chunk -> {
+                    final ArrayList<String> chunkList = new ArrayList<>(chunk);
+                    final Bundle bundle = AptoideUtils.putSkuList(new Bundle(), chunkList);
+                    return service.getSkuDetails(API, packageName, type, bundle);
+                }, chunkReceiver);
+                onServiceSuccess();
+                if (chunkReceiver.response != Response.OK) {
+                    return chunkReceiver.response;
                 }
             }
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.e("getSkuDetails request failed.", exception);
-            return null;
+            return Response.UNKNOWN;
         }
-        return AptoideUtils.putResponse(result, Response.OK);
+        return Response.OK;
     }
 
     /**
@@ -196,7 +204,7 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
         ASLog.logMethod(startOver);
         final AptoideInAppBillingService service = getService();
         if (service == null) {
-            return null;
+            return AptoideUtils.putResponse(new Bundle(), Response.SERVICE_UNAVAILABLE);
         }
         final Bundle result = new Bundle();
         try {
@@ -206,6 +214,7 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
                 // Try to use last successful request token if required
                 final String token = startOver ? null : preferences.getString(key);
                 final Bundle purchases = service.getPurchases(API, packageName, type, token);
+                onServiceSuccess();
                 @Response final int response = AptoideUtils.getResponse(purchases);
                 ASLog.d("Type: %s. Response: %s. Purchases: %s.",
                         itemType, response, ASUtils.toString(purchases));
@@ -229,6 +238,7 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
                 }
             }
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.e("getPurchases request failed.", exception);
             return null;
         }
@@ -243,4 +253,46 @@ public class AptoideBillingHelper extends AidlBillingHelper<AptoideInAppBillingS
         return serviceIntent;
     }
 
+    /**
+     * Receiver of SKU details loaded by {@link #getSkuDetails(Collection, SkuDetailsReceiver)}.
+     */
+    public interface SkuDetailsReceiver {
+
+        /**
+         * Handles details loaded in a single chunk.
+         *
+         * @param jsonSkuDetails SKU details in JSON format.
+         */
+        void onSkuDetails(@NonNull final Collection<String> jsonSkuDetails);
+    }
+
+    /**
+     * Checks chunk replies and passes loaded details further.
+     */
+    private static final class SkuDetailsChunkReceiver implements BinderBatcher.Receiver<String> {
+
+        @NonNull
+        private final SkuDetailsReceiver receiver;
+        @Response
+        private int response = Response.OK;
+
+        SkuDetailsChunkReceiver(@NonNull final SkuDetailsReceiver receiver) {
+            this.receiver = receiver;
+        }
+
+        @Override
+        public boolean onReply(@NonNull final List<String> chunk, @Nullable final Bundle reply,
+                final long latency) {
+            response = AptoideUtils.getResponse(reply);
+            ASLog.d("SKUs: %s. Response: %s. Latency: %d ms.", chunk, response, latency);
+            if (response != Response.OK) {
+                return false;
+            }
+            final ArrayList<String> skuDetails = AptoideUtils.getSkuDetails(reply);
+            if (skuDetails != null) {
+                receiver.onSkuDetails(skuDetails);
+            }
+            return true;
+        }
+    }
 }
@@ -63,7 +63,7 @@ import android.text.TextUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -297,35 +297,28 @@ public class AptoideBillingProvider extends BaseBillingProvider <TypedSkuResolve
     @Override
     protected void skuDetails(@NonNull final SkuDetailsRequest request) {
         final Set<String> skus = request.getSkus();
-        final Bundle result = helper.getSkuDetails(skus);
-        @Response final int response = AptoideUtils.getResponse(result);
-        //noinspection ConstantConditions
-        if (response != Response.OK || result == null) {
+        // Some details might not have been loaded
+        final Collection<SkuDetails> skusDetails = new ArrayList<>(skus.size());
+        final Collection<String> unresolvedSkus = new HashSet<>(skus);
+        // Parse every chunk as soon as it's loaded
+        @Response final int response = helper.getSkuDetails(skus, jsonSkuDetails -> {
+            for (final String jsonSku : jsonSkuDetails) {
+                try {
+                    final AptoideSkuDetails aptoideSkuDetails = new AptoideSkuDetails(jsonSku);
+                    final SkuDetails skuDetails = newSkuDetails(aptoideSkuDetails);
+                    unresolvedSkus.remove(skuDetails.getSku());
+                    skusDetails.add(skuDetails);
+                } catch (JSONException exception) {
+                    ASLog.e("Failed to parse sku details: " + jsonSku, exception);
+                }
+            }
+        });
+        if (response != Response.OK) {
             ASLog.e("Failed to retrieve sku details.");
             postEmptyResponse(request, getStatus(response));
             return;
         }
 
-        final Collection<String> jsonSkuDetails = AptoideUtils.getSkuDetails(result);
-        if (jsonSkuDetails == null) {
-            ASLog.d("No sku details data: %s", result);
-            postEmptyResponse(request, Status.SUCCESS);
-            return;
-        }
-
-        // Some details might not have been loaded
-        final Collection<SkuDetails> skusDetails = new ArrayList<>();
-        final Collection<String> unresolvedSkus = new LinkedList<>(skus);
-        for (final String jsonSku : jsonSkuDetails) {
-            try {
-                final AptoideSkuDetails aptoideSkuDetails = new AptoideSkuDetails(jsonSku);
-                final SkuDetails skuDetails = newSkuDetails(aptoideSkuDetails);
-                unresolvedSkus.remove(skuDetails.getSku());
-                skusDetails.add(skuDetails);
-            } catch (JSONException exception) {
-                ASLog.e("Failed to parse sku details: " + skusDetails, exception);
-            }
-        }
         for (final String sku : unresolvedSkus) {
             ASLog.e("No details for SKU: " + sku);
             skusDetails.add(new SkuDetails(sku));
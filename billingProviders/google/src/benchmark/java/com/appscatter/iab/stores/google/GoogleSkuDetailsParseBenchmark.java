@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.stores.google;
+
+import com.appscatter.iab.core.model.billing.SkuDetails;
+import com.appscatter.iab.core.model.billing.SkuType;
+import com.appscatter.iab.core.sku.TypedSkuResolver;
+import com.appscatter.iab.stores.google.model.GoogleSkuDetails;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares handling of SKU details response by {@link GoogleBillingProvider} with the
+ * {@link GoogleSkuDetails} model and linked list bookkeeping it replaced, for growing catalogs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GoogleSkuDetailsParseBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int skus;
+
+    private final GoogleBillingProvider provider = new BenchmarkProvider();
+    private final List<String> requested = new ArrayList<>();
+    private final List<String> response = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        requested.clear();
+        response.clear();
+        for (int i = 0; i < skus; i++) {
+            final String sku = "sku." + i;
+            requested.add(sku);
+            response.add("{\"productId\":\"" + sku + "\",\"type\":\"inapp\","
+                    + "\"price\":\"$0.99\",\"price_amount_micros\":990000,"
+                    + "\"price_currency_code\":\"USD\",\"title\":\"Title " + sku + "\","
+                    + "\"description\":\"Description\"}");
+        }
+    }
+
+    /**
+     * Response handling before the change: every JSON goes through the model, unresolved SKUs
+     * are removed from a linked list.
+     */
+    @Benchmark
+    public Collection<SkuDetails> modelParse() throws JSONException {
+        final Collection<SkuDetails> skusDetails = new ArrayList<>();
+        final Collection<String> unresolvedSkus = new LinkedList<>(requested);
+        for (final String json : response) {
+            final SkuDetails skuDetails = provider.newSkuDetails(new GoogleSkuDetails(json));
+            unresolvedSkus.remove(skuDetails.getSku());
+            skusDetails.add(skuDetails);
+        }
+        return skusDetails;
+    }
+
+    /**
+     * Current response handling: single pass over every JSON, unresolved SKUs kept in a hash set.
+     */
+    @Benchmark
+    public Collection<SkuDetails> readerParse() throws JSONException {
+        final Collection<SkuDetails> skusDetails = new ArrayList<>(requested.size());
+        final Collection<String> unresolvedSkus = new HashSet<>(requested);
+        for (final String json : response) {
+            final SkuDetails skuDetails = provider.parseSkuDetails(json);
+            unresolvedSkus.remove(skuDetails.getSku());
+            skusDetails.add(skuDetails);
+        }
+        return skusDetails;
+    }
+
+    private static final class BenchmarkProvider extends GoogleBillingProvider {
+
+        BenchmarkProvider() {
+            super();
+            skuResolver = new TypedSkuResolver() {
+                @Override
+                public int resolveType(@NonNull final String sku) {
+                    return SkuType.CONSUMABLE;
+                }
+
+                @NonNull
+                @Override
+                public String resolve(@NonNull final String sku) {
+                    return sku;
+                }
+
+                @NonNull
+                @Override
+                public String revert(@NonNull final String resolvedSku) {
+                    return resolvedSku;
+                }
+            };
+        }
+    }
+}
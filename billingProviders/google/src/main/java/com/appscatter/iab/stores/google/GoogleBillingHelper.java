@@ -19,6 +19,7 @@ package com.appscatter.iab.stores.google;
 
 import com.android.vending.billing.IInAppBillingService;
 import com.appscatter.iab.core.billing.AidlBillingHelper;
+import com.appscatter.iab.core.billing.BinderBatcher;
 import com.appscatter.iab.stores.google.model.ItemType;
 import com.appscatter.iab.utils.ASLog;
 import com.appscatter.iab.utils.ASPreferences;
@@ -33,9 +34,10 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.appscatter.iab.stores.google.GoogleBillingProvider.NAME;
 
@@ -56,9 +58,14 @@ public class GoogleBillingHelper extends AidlBillingHelper<IInAppBillingService>
     protected final String packageName = context.getPackageName();
     @NonNull
     protected final ASPreferences preferences = new ASPreferences(context);
+    /**
+     * Sizes chunks of SKU details requests, limited by {@link #BATCH_SIZE}.
+     */
+    @NonNull
+    protected final BinderBatcher skuDetailsBatcher = new BinderBatcher(BATCH_SIZE);
 
     protected GoogleBillingHelper(@NonNull final Context context) {
-        super(context, IInAppBillingService.class);
+        super(context, IInAppBillingService.class, IInAppBillingService.Stub::asInterface);
     }
 
     /**
@@ -73,11 +80,12 @@ public class GoogleBillingHelper extends AidlBillingHelper<IInAppBillingService>
         final IInAppBillingService service = getService();
         if (service == null) {
             // Can't connect to service.
-            return Response.UNKNOWN;
+            return Response.SERVICE_UNAVAILABLE;
         }
         try {
             for (final ItemType itemType : ItemType.values()) {
                 @Response final int response = service.isBillingSupported(API, packageName, itemType.toString());
+                onServiceSuccess();
                 if (response != Response.OK) {
                     // Report first encountered unsuccessful response.
                     return response;
@@ -85,6 +93,7 @@ public class GoogleBillingHelper extends AidlBillingHelper<IInAppBillingService>
             }
             return Response.OK;
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.d("Billing check failed.", exception);
         }
         return Response.UNKNOWN;
@@ -103,15 +112,17 @@ public class GoogleBillingHelper extends AidlBillingHelper<IInAppBillingService>
         ASLog.logMethod(sku, itemType);
         final IInAppBillingService service = getService();
         if (service == null) {
-            return null;
+            return GoogleUtils.putResponse(new Bundle(), Response.SERVICE_UNAVAILABLE);
         }
         try {
             final String type = itemType.toString();
             final Bundle result = service.getBuyIntent(API, packageName, sku, type, "");
+            onServiceSuccess();
             @Response final int response = GoogleUtils.getResponse(result);
             ASLog.d("Response: %s. Result: %s", response, ASUtils.toString(result));
             return result;
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.d("getBuyIntent request failed.", exception);
         }
         return null;
@@ -129,63 +140,94 @@ public class GoogleBillingHelper extends AidlBillingHelper<IInAppBillingService>
         ASLog.logMethod(token);
         final IInAppBillingService service = getService();
         if (service == null) {
-            return Response.UNKNOWN;
+            return Response.SERVICE_UNAVAILABLE;
         }
         try {
             @Response final int response = service.consumePurchase(API, packageName, token);
+            onServiceSuccess();
             ASLog.d("Response: %s", response);
             return response;
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.e("consumePurchase request failed.", exception);
         }
         return Response.UNKNOWN;
     }
 
+    /**
+     * Same as {@link #getSkuDetails(Map, SkuDetailsReceiver)} with every SKU probed for every
+     * {@link ItemType}.
+     *
+     * @param skus     SKUs to load details for.
+     * @param receiver Receiver of the loaded details.
+     *
+     * @return {@link Response#OK} if all details were loaded, first encountered error otherwise.
+     */
+    @Response
+    public int getSkuDetails(@NonNull final Collection<String> skus,
+            @NonNull final SkuDetailsReceiver receiver) {
+        final Map<ItemType, Collection<String>> skusByType = new EnumMap<>(ItemType.class);
+        for (final ItemType itemType : ItemType.values()) {
+            skusByType.put(itemType, skus);
+        }
+        return getSkuDetails(skusByType, receiver);
+    }
+
     /**
      * Wraps {@link IInAppBillingService#getSkuDetails(int, String, String, Bundle)}.
+     * <p>
+     * Only SKUs mapped to an {@link ItemType} are requested with this type, types with no SKUs
+     * are skipped. SKUs are sent in chunks sized by {@link #skuDetailsBatcher}, details are handed
+     * to the receiver as soon as each chunk is loaded.
      *
-     * @param skus SKUs to load details for.
+     * @param skusByType SKUs to load details for, grouped by type.
+     * @param receiver   Receiver of the loaded details.
      *
-     * @return Bundle containing requested SKUs details. Can be null.
+     * @return {@link Response#OK} if all details were loaded, first encountered error otherwise.
      */
-    @Nullable
-    public Bundle getSkuDetails(@NonNull final Collection<String> skus) {
-        ASLog.logMethod(Arrays.toString(skus.toArray()));
+    @Response
+    public int getSkuDetails(@NonNull final Map<ItemType, ? extends Collection<String>> skusByType,
+            @NonNull final SkuDetailsReceiver receiver) {
+        ASLog.logMethod(skusByType);
         final IInAppBillingService service = getService();
         if (service == null) {
-            return null;
+            return Response.SERVICE_UNAVAILABLE;
         }
-        final List<String> skuList = new ArrayList<>(skus);
-        final Bundle result = new Bundle();
         try {
-            final int size = skuList.size();
-            final int batchCount = size / BATCH_SIZE;
-            for (int i = 0; i <= batchCount; i++) {
-                final int first = i * BATCH_SIZE;
-                final int last = Math.min((i + 1) * BATCH_SIZE, size);
-                final ArrayList<String> batch = new ArrayList<>(skuList.subList(first, last));
-                final Bundle bundle = GoogleUtils.putSkuList(new Bundle(), batch);
-                for (final ItemType itemType : ItemType.values()) {
-                    final String type = itemType.toString();
-                    final Bundle details = service.getSkuDetails(API, packageName, type, bundle);
-                    @Response final int response = GoogleUtils.getResponse(details);
-                    ASLog.d("From %d to %d. Type: %s. Response: %s. Details: %s.",
-                            first, last, itemType, response, ASUtils.toString(details));
-                    if (response != Response.OK) {
-                        // Return received bundle if error is encountered
-                        return details;
-                    } else {
-                        // Aggregate all loaded details in a single bundle
-                        final ArrayList<String> skuDetails = GoogleUtils.getSkuDetails(details);
-                        GoogleUtils.addSkuDetails(result, skuDetails);
-                    }
+            for (final Map.Entry<ItemType, ? extends Collection<String>> entry
+                    : skusByType.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    continue;
+                }
+                final List<String> skuList = new ArrayList<>(entry.getValue());
+                final String type = entry.getKey().toString();
+                final SkuDetailsChunkReceiver chunkReceiver = new SkuDetailsChunkReceiver(receiver);
+                skuDetailsBatcher.execute(skuList, chunk -> {
+                    final ArrayList<String> chunkList = new ArrayList<>(chunk);
+                    final Bundle bundle = GoogleUtils.putSkuList(new Bundle(), chunkList);
+                    return service.getSkuDetails(API, packageName, type, bundle);
+                }, chunkReceiver);
+                onServiceSuccess();
+                if (chunkReceiver.response != Response.OK) {
+                    return chunkReceiver.response;
                 }
             }
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.e("getSkuDetails request failed.", exception);
-            return null;
+            return Response.UNKNOWN;
         }
-        return GoogleUtils.putResponse(result, Response.OK);
+        return Response.OK;
+    }
+
+    /**
+     * Gets number of {@link IInAppBillingService#getSkuDetails(int, String, String, Bundle)}
+     * calls made so far.
+     *
+     * @return Call count.
+     */
+    public long getSkuDetailsCallCount() {
+        return skuDetailsBatcher.getCallCount();
     }
 
     /**
@@ -201,7 +243,7 @@ public class GoogleBillingHelper extends AidlBillingHelper<IInAppBillingService>
         ASLog.logMethod(startOver);
         final IInAppBillingService service = getService();
         if (service == null) {
-            return null;
+            return GoogleUtils.putResponse(new Bundle(), Response.SERVICE_UNAVAILABLE);
         }
         final Bundle result = new Bundle();
         try {
@@ -211,6 +253,7 @@ public class GoogleBillingHelper extends AidlBillingHelper<IInAppBillingService>
                 // Try to use last successful request token if required
                 final String token = startOver ? null : preferences.getString(key);
                 final Bundle purchases = service.getPurchases(API, packageName, type, token);
+                onServiceSuccess();
                 @Response final int response = GoogleUtils.getResponse(purchases);
                 ASLog.d("Type: %s. Response: %s. Purchases: %s.",
                         itemType, response, ASUtils.toString(purchases));
@@ -234,6 +277,7 @@ public class GoogleBillingHelper extends AidlBillingHelper<IInAppBillingService>
                 }
             }
         } catch (RemoteException exception) {
+            onServiceError(exception);
             ASLog.e("getPurchases request failed.", exception);
             return null;
         }
@@ -247,4 +291,47 @@ public class GoogleBillingHelper extends AidlBillingHelper<IInAppBillingService>
         serviceIntent.setPackage(INTENT_PACKAGE);
         return serviceIntent;
     }
+
+    /**
+     * Receiver of SKU details loaded by {@link #getSkuDetails(Collection, SkuDetailsReceiver)}.
+     */
+    public interface SkuDetailsReceiver {
+
+        /**
+         * Handles details loaded in a single chunk.
+         *
+         * @param jsonSkuDetails SKU details in JSON format.
+         */
+        void onSkuDetails(@NonNull final Collection<String> jsonSkuDetails);
+    }
+
+    /**
+     * Checks chunk replies and passes loaded details further.
+     */
+    private static final class SkuDetailsChunkReceiver implements BinderBatcher.Receiver<String> {
+
+        @NonNull
+        private final SkuDetailsReceiver receiver;
+        @Response
+        private int response = Response.OK;
+
+        SkuDetailsChunkReceiver(@NonNull final SkuDetailsReceiver receiver) {
+            this.receiver = receiver;
+        }
+
+        @Override
+        public boolean onReply(@NonNull final List<String> chunk, @Nullable final Bundle reply,
+                final long latency) {
+            response = GoogleUtils.getResponse(reply);
+            ASLog.d("SKUs: %s. Response: %s. Latency: %d ms.", chunk, response, latency);
+            if (response != Response.OK) {
+                return false;
+            }
+            final ArrayList<String> skuDetails = GoogleUtils.getSkuDetails(reply);
+            if (skuDetails != null) {
+                receiver.onSkuDetails(skuDetails);
+            }
+            return true;
+        }
+    }
 }
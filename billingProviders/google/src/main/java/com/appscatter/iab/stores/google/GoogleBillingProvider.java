@@ -62,12 +62,17 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
+import android.util.JsonReader;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -145,6 +150,105 @@ public class GoogleBillingProvider extends BaseBillingProvider<TypedSkuResolver,
                 .build();
     }
 
+    /**
+     * Parses Google product details straight into the library SKU details model.
+     * <p>
+     * Unlike {@link #newSkuDetails(GoogleSkuDetails)} this reads supplied JSON in a single
+     * {@link JsonReader} pass without building an intermediate tree, which matters for catalogs
+     * with thousands of products. Fields are validated the same way {@link GoogleSkuDetails} does.
+     *
+     * @param json Google product details in JSON format.
+     * @return Newly constructed SKU details object, can't be null.
+     * @throws JSONException If supplied JSON is malformed, required field is missing or item type
+     *                       is not recognized.
+     */
+    @NonNull
+    protected SkuDetails parseSkuDetails(@NonNull final String json) throws JSONException {
+        final JsonReader reader = new JsonReader(new StringReader(json));
+        try {
+            return readSkuDetails(reader, json);
+        } catch (IOException | IllegalStateException | NumberFormatException exception) {
+            throw new JSONException("Malformed sku details: " + exception.getMessage());
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ignore) {
+                // Nothing to release for string source
+            }
+        }
+    }
+
+    @NonNull
+    private SkuDetails readSkuDetails(@NonNull final JsonReader reader,
+            @NonNull final String json) throws IOException, JSONException {
+        String sku = null;
+        String itemTypeCode = null;
+        String price = null;
+        String currency = null;
+        String title = null;
+        String description = null;
+        boolean hasMicros = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case GoogleSkuDetails.NAME_PRODUCT_ID:
+                    sku = reader.nextString();
+                    break;
+                case GoogleSkuDetails.NAME_TYPE:
+                    itemTypeCode = reader.nextString();
+                    break;
+                case GoogleSkuDetails.NAME_PRICE:
+                    price = reader.nextString();
+                    break;
+                case GoogleSkuDetails.NAME_MICROS:
+                    reader.nextLong();
+                    hasMicros = true;
+                    break;
+                case GoogleSkuDetails.NAME_CURRENCY:
+                    currency = reader.nextString();
+                    break;
+                case GoogleSkuDetails.NAME_TITLE:
+                    title = reader.nextString();
+                    break;
+                case GoogleSkuDetails.NAME_DESCRIPTION:
+                    description = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        final ItemType itemType = ItemType.fromCode(require(itemTypeCode,
+                GoogleSkuDetails.NAME_TYPE));
+        if (itemType == null) {
+            throw new JSONException("Unrecognized itemType: " + itemTypeCode);
+        }
+        if (!hasMicros) {
+            throw new JSONException("No value for " + GoogleSkuDetails.NAME_MICROS);
+        }
+        require(currency, GoogleSkuDetails.NAME_CURRENCY);
+        final String checkedSku = require(sku, GoogleSkuDetails.NAME_PRODUCT_ID);
+        return new SkuDetails.Builder(checkedSku)
+                .setType(skuType(checkedSku, itemType))
+                .setProviderName(getName())
+                .setOriginalJson(json)
+                .setPrice(require(price, GoogleSkuDetails.NAME_PRICE))
+                .setTitle(require(title, GoogleSkuDetails.NAME_TITLE))
+                .setDescription(require(description, GoogleSkuDetails.NAME_DESCRIPTION))
+                .build();
+    }
+
+    @NonNull
+    private static String require(@Nullable final String value, @NonNull final String name)
+            throws JSONException {
+        if (value == null) {
+            throw new JSONException("No value for " + name);
+        }
+        return value;
+    }
+
     /**
      * Transforms Google purchase to library specific model.
      *
@@ -267,6 +371,14 @@ public class GoogleBillingProvider extends BaseBillingProvider<TypedSkuResolver,
         return NAME;
     }
 
+    /**
+     * SKU details and inventory can be loaded over the same service connection simultaneously.
+     */
+    @Override
+    public int getMaxConcurrentRequests() {
+        return 2;
+    }
+
     @NonNull
     @Override
     @Compatibility
@@ -301,38 +413,61 @@ public class GoogleBillingProvider extends BaseBillingProvider<TypedSkuResolver,
         postResponse(new ConsumeResponse(Status.SUCCESS, getName(), purchase));
     }
 
+    /**
+     * Groups supplied SKUs by Google product type.
+     * <p>
+     * SKUs of unknown type are put in every group, since it's not known which type to request
+     * them with.
+     *
+     * @param skus SKUs to group, already resolved.
+     * @return Map of SKUs lists, containing every {@link ItemType}.
+     */
+    @NonNull
+    protected Map<ItemType, List<String>> groupByType(@NonNull final Collection<String> skus) {
+        final Map<ItemType, List<String>> skusByType = new EnumMap<>(ItemType.class);
+        for (final ItemType itemType : ItemType.values()) {
+            skusByType.put(itemType, new ArrayList<>());
+        }
+        for (final String sku : skus) {
+            final ItemType itemType = ItemType.fromSkuType(skuResolver.resolveType(sku));
+            if (itemType != null) {
+                skusByType.get(itemType).add(sku);
+                continue;
+            }
+            for (final List<String> group : skusByType.values()) {
+                group.add(sku);
+            }
+        }
+        return skusByType;
+    }
+
     @Override
     protected void skuDetails(@NonNull final SkuDetailsRequest request) {
         final Set<String> skus = request.getSkus();
-        final Bundle result = helper.getSkuDetails(skus);
-        @Response final int response = GoogleUtils.getResponse(result);
-        //noinspection ConstantConditions
-        if (response != Response.OK || result == null) {
+        // Some details might not have been loaded
+        final Collection<SkuDetails> skusDetails = new ArrayList<>(skus.size());
+        final Collection<String> unresolvedSkus = new HashSet<>(skus);
+        final long callCount = helper.getSkuDetailsCallCount();
+        // Parse every chunk as soon as it's loaded
+        @Response final int response = helper.getSkuDetails(groupByType(skus), jsonSkuDetails -> {
+            for (final String jsonSku : jsonSkuDetails) {
+                try {
+                    final SkuDetails skuDetails = parseSkuDetails(jsonSku);
+                    unresolvedSkus.remove(skuDetails.getSku());
+                    skusDetails.add(skuDetails);
+                } catch (JSONException exception) {
+                    ASLog.e("Failed to parse sku details: " + jsonSku, exception);
+                }
+            }
+        });
+        ASLog.d("Requested %d SKUs in %d calls", skus.size(),
+                helper.getSkuDetailsCallCount() - callCount);
+        if (response != Response.OK) {
             ASLog.e("Failed to retrieve sku details.");
             postEmptyResponse(request, getStatus(response));
             return;
         }
 
-        final Collection<String> jsonSkuDetails = GoogleUtils.getSkuDetails(result);
-        if (jsonSkuDetails == null) {
-            ASLog.d("No sku details data: %s", result);
-            postEmptyResponse(request, Status.SUCCESS);
-            return;
-        }
-
-        // Some details might not have been loaded
-        final Collection<SkuDetails> skusDetails = new ArrayList<>();
-        final Collection<String> unresolvedSkus = new LinkedList<>(skus);
-        for (final String jsonSku : jsonSkuDetails) {
-            try {
-                final GoogleSkuDetails googleSkuDetails = new GoogleSkuDetails(jsonSku);
-                final SkuDetails skuDetails = newSkuDetails(googleSkuDetails);
-                unresolvedSkus.remove(skuDetails.getSku());
-                skusDetails.add(skuDetails);
-            } catch (JSONException exception) {
-                ASLog.e("Failed to parse sku details: " + skusDetails, exception);
-            }
-        }
         for (final String sku : unresolvedSkus) {
             ASLog.e("No details for SKU: " + sku);
             skusDetails.add(new SkuDetails(sku));
@@ -27,7 +27,7 @@ import android.support.annotation.NonNull;
  */
 public class GoogleModel extends JsonModel {
 
-    protected static final String NAME_PRODUCT_ID = "productId";
+    public static final String NAME_PRODUCT_ID = "productId";
 
 
     @NonNull
@@ -25,12 +25,12 @@ import android.support.annotation.NonNull;
  */
 public class GoogleSkuDetails extends GoogleModel {
 
-    protected static final String NAME_TYPE = "type";
-    protected static final String NAME_PRICE = "price";
-    protected static final String NAME_CURRENCY = "price_currency_code";
-    protected static final String NAME_TITLE = "title";
-    protected static final String NAME_DESCRIPTION = "description";
-    protected static final String NAME_MICROS = "price_amount_micros";
+    public static final String NAME_TYPE = "type";
+    public static final String NAME_PRICE = "price";
+    public static final String NAME_CURRENCY = "price_currency_code";
+    public static final String NAME_TITLE = "title";
+    public static final String NAME_DESCRIPTION = "description";
+    public static final String NAME_MICROS = "price_amount_micros";
 
     @NonNull
     protected final ItemType itemType;
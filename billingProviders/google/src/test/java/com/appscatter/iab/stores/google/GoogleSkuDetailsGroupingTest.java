@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.stores.google;
+
+import com.android.vending.billing.IInAppBillingService;
+import com.appscatter.iab.core.model.billing.SkuType;
+import com.appscatter.iab.core.sku.TypedSkuResolver;
+import com.appscatter.iab.stores.google.model.ItemType;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import android.os.Bundle;
+import android.os.IBinder;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class GoogleSkuDetailsGroupingTest {
+
+    private static final String PREFIX_SUBSCRIPTION = "sub.";
+    private static final String PREFIX_CONSUMABLE = "consumable.";
+    private static final String KEY_SKU_LIST = "ITEM_ID_LIST";
+    private static final String INAPP = ItemType.CONSUMABLE_OR_ENTITLEMENT.toString();
+    private static final String SUBS = ItemType.SUBSCRIPTION.toString();
+    private static final int CONSUMABLES = 40;
+    private static final int SUBSCRIPTIONS = 5;
+    private static final GoogleBillingHelper.SkuDetailsReceiver RECEIVER =
+            new GoogleBillingHelper.SkuDetailsReceiver() {
+                @Override
+                public void onSkuDetails(@NonNull final Collection<String> jsonSkuDetails) {
+                    // Details are not checked here
+                }
+            };
+
+    private final GoogleBillingProvider provider = new TestProvider();
+
+    @Test
+    public void groupByType_putsTypedSkusInTheirGroupOnly() throws Exception {
+        final Map<ItemType, List<String>> groups = provider.groupByType(
+                Arrays.asList("sub.a", "consumable.b", "unknown.c", "sub.d"));
+
+        assertEquals(Arrays.asList("sub.a", "unknown.c", "sub.d"),
+                groups.get(ItemType.SUBSCRIPTION));
+        assertEquals(Arrays.asList("consumable.b", "unknown.c"),
+                groups.get(ItemType.CONSUMABLE_OR_ENTITLEMENT));
+    }
+
+    @Test
+    public void groupByType_singleType_leavesOtherGroupEmpty() throws Exception {
+        final Map<ItemType, List<String>> groups =
+                provider.groupByType(Arrays.asList("consumable.a", "consumable.b"));
+
+        assertEquals(0, groups.get(ItemType.SUBSCRIPTION).size());
+        assertEquals(2, groups.get(ItemType.CONSUMABLE_OR_ENTITLEMENT).size());
+    }
+
+    @Test
+    public void getSkuDetails_mixedTypes_sendsEachSkuWithItsTypeOnly() throws Exception {
+        final TestService service = new TestService();
+        final GoogleBillingHelper helper = new TestHelper(service);
+
+        final int response = helper.getSkuDetails(provider.groupByType(mixedSkus()), RECEIVER);
+
+        assertEquals(Response.OK, response);
+        // 1 chunk of subscriptions and 2 of consumables
+        assertEquals(3, helper.getSkuDetailsCallCount());
+        assertEquals(Arrays.asList(SUBS, INAPP, INAPP), service.types);
+        assertEquals(CONSUMABLES + SUBSCRIPTIONS, service.skuCount);
+    }
+
+    @Test
+    public void getSkuDetails_untyped_probesEveryType() throws Exception {
+        final TestService service = new TestService();
+        final GoogleBillingHelper helper = new TestHelper(service);
+
+        final int response = helper.getSkuDetails(mixedSkus(), RECEIVER);
+
+        assertEquals(Response.OK, response);
+        // 3 chunks of all SKUs for each type
+        assertEquals(6, helper.getSkuDetailsCallCount());
+        assertEquals(Arrays.asList(SUBS, SUBS, SUBS, INAPP, INAPP, INAPP), service.types);
+        assertEquals((CONSUMABLES + SUBSCRIPTIONS) * 2, service.skuCount);
+    }
+
+    @NonNull
+    private static List<String> mixedSkus() {
+        final List<String> skus = new ArrayList<>();
+        for (int i = 0; i < CONSUMABLES; i++) {
+            skus.add(PREFIX_CONSUMABLE + i);
+        }
+        for (int i = 0; i < SUBSCRIPTIONS; i++) {
+            skus.add(PREFIX_SUBSCRIPTION + i);
+        }
+        return skus;
+    }
+
+    /**
+     * Billing service which records item type and size of every SKU details call.
+     */
+    private static final class TestService implements IInAppBillingService {
+
+        private final List<String> types = new ArrayList<>();
+        private int skuCount;
+
+        @Override
+        public int isBillingSupported(final int apiVersion, final String packageName,
+                final String type) {
+            return Response.OK;
+        }
+
+        @Override
+        public Bundle getSkuDetails(final int apiVersion, final String packageName,
+                final String type, final Bundle skusBundle) {
+            types.add(type);
+            skuCount += skusBundle.getStringArrayList(KEY_SKU_LIST).size();
+            return GoogleUtils.putResponse(new Bundle(), Response.OK);
+        }
+
+        @Override
+        public Bundle getBuyIntent(final int apiVersion, final String packageName,
+                final String sku, final String type, final String developerPayload) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Bundle getPurchases(final int apiVersion, final String packageName,
+                final String type, final String continuationToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int consumePurchase(final int apiVersion, final String packageName,
+                final String purchaseToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IBinder asBinder() {
+            return null;
+        }
+    }
+
+    private static final class TestHelper extends GoogleBillingHelper {
+
+        @NonNull
+        private final IInAppBillingService service;
+
+        TestHelper(@NonNull final IInAppBillingService service) {
+            super(RuntimeEnvironment.application);
+            this.service = service;
+        }
+
+        @Nullable
+        @Override
+        public IInAppBillingService getService() {
+            return service;
+        }
+    }
+
+    private static final class TestProvider extends GoogleBillingProvider {
+
+        TestProvider() {
+            super();
+            skuResolver = new TypedSkuResolver() {
+                @Override
+                public int resolveType(@NonNull final String sku) {
+                    if (sku.startsWith(PREFIX_SUBSCRIPTION)) {
+                        return SkuType.SUBSCRIPTION;
+                    } else if (sku.startsWith(PREFIX_CONSUMABLE)) {
+                        return SkuType.CONSUMABLE;
+                    }
+                    return SkuType.UNKNOWN;
+                }
+
+                @NonNull
+                @Override
+                public String resolve(@NonNull final String sku) {
+                    return sku;
+                }
+
+                @NonNull
+                @Override
+                public String revert(@NonNull final String resolvedSku) {
+                    return resolvedSku;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.stores.google;
+
+import com.appscatter.iab.core.model.billing.SkuDetails;
+import com.appscatter.iab.core.model.billing.SkuType;
+import com.appscatter.iab.core.sku.TypedSkuResolver;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class GoogleSkuDetailsParseTest {
+
+    private static final int LARGE_RESPONSE_SIZE = 10000;
+
+    private final GoogleBillingProvider provider = new TestProvider();
+
+    @Test
+    public void parseSkuDetails_largeResponse_parsesEveryProduct() throws Exception {
+        final List<String> response = new ArrayList<>(LARGE_RESPONSE_SIZE);
+        for (int i = 0; i < LARGE_RESPONSE_SIZE; i++) {
+            response.add(json("sku." + i, i % 2 == 0 ? "inapp" : "subs", true, true));
+        }
+
+        for (int i = 0; i < LARGE_RESPONSE_SIZE; i++) {
+            final SkuDetails skuDetails = provider.parseSkuDetails(response.get(i));
+
+            assertEquals("sku." + i, skuDetails.getSku());
+            assertEquals(i % 2 == 0 ? SkuType.CONSUMABLE : SkuType.SUBSCRIPTION,
+                    skuDetails.getType());
+            assertEquals("$0.99", skuDetails.getPrice());
+            assertEquals("Title sku." + i, skuDetails.getTitle());
+            assertEquals("Description", skuDetails.getDescription());
+            assertEquals(response.get(i), skuDetails.getOriginalJson());
+        }
+    }
+
+    @Test(expected = JSONException.class)
+    public void parseSkuDetails_unknownType_throws() throws Exception {
+        provider.parseSkuDetails(json("sku", "unknown", true, true));
+    }
+
+    @Test(expected = JSONException.class)
+    public void parseSkuDetails_noMicros_throws() throws Exception {
+        provider.parseSkuDetails(json("sku", "inapp", false, true));
+    }
+
+    @Test(expected = JSONException.class)
+    public void parseSkuDetails_noCurrency_throws() throws Exception {
+        provider.parseSkuDetails(json("sku", "inapp", true, false));
+    }
+
+    @Test(expected = JSONException.class)
+    public void parseSkuDetails_malformedMicros_throws() throws Exception {
+        provider.parseSkuDetails(json("sku", "inapp", true, true)
+                .replace("990000", "\"free\""));
+    }
+
+    @NonNull
+    private static String json(@NonNull final String sku, @NonNull final String type,
+            final boolean micros, final boolean currency) {
+        return "{\"productId\":\"" + sku + "\",\"type\":\"" + type + "\",\"price\":\"$0.99\","
+                + (micros ? "\"price_amount_micros\":990000," : "")
+                + (currency ? "\"price_currency_code\":\"USD\"," : "")
+                + "\"title\":\"Title " + sku + "\",\"description\":\"Description\","
+                + "\"extra\":{\"nested\":[1,2,{\"key\":null}]}}";
+    }
+
+    private static final class TestProvider extends GoogleBillingProvider {
+
+        TestProvider() {
+            super();
+            skuResolver = new TypedSkuResolver() {
+                @Override
+                public int resolveType(@NonNull final String sku) {
+                    return SkuType.CONSUMABLE;
+                }
+
+                @NonNull
+                @Override
+                public String resolve(@NonNull final String sku) {
+                    return sku;
+                }
+
+                @NonNull
+                @Override
+                public String revert(@NonNull final String resolvedSku) {
+                    return resolvedSku;
+                }
+            };
+        }
+    }
+}
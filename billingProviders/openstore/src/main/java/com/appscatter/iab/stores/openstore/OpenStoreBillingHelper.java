@@ -18,8 +18,9 @@
 package com.appscatter.iab.stores.openstore;
 
 import com.appscatter.iab.core.billing.AidlBillingHelper;
-import com.appscatter.iab.core.util.ASIabUtils;
+import com.appscatter.iab.core.billing.BinderBatcher;
 import com.appscatter.iab.stores.openstore.model.ItemType;
+import com.appscatter.iab.stores.openstore.model.OpenSkuDetails;
 import com.appscatter.iab.utils.ASLog;
 
 import org.onepf.oms.IOpenAppstore;
@@ -32,6 +33,7 @@ import android.os.RemoteException;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -50,6 +52,11 @@ public class OpenStoreBillingHelper {
     private final OpenInAppHelper openInAppHelper;
     @NonNull
     private final String packageName;
+    /**
+     * Sizes chunks of SKU details requests, limited by {@link #BATCH_SIZE}.
+     */
+    @NonNull
+    protected final BinderBatcher skuDetailsBatcher = new BinderBatcher(BATCH_SIZE);
 
     public OpenStoreBillingHelper(@NonNull final Context context,
             @Nullable final OpenStoreIntentMaker intentMaker) {
@@ -62,9 +69,15 @@ public class OpenStoreBillingHelper {
     @Nullable
     public String getAppstoreName() {
         final IOpenAppstore openAppstore = openAppstoreHelper.getService();
+        if (openAppstore == null) {
+            return null;
+        }
         try {
-            return openAppstore == null ? null : openAppstore.getAppstoreName();
+            final String result = openAppstore.getAppstoreName();
+            openAppstoreHelper.onServiceSuccess();
+            return result;
         } catch (RemoteException exception) {
+            openAppstoreHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return null;
@@ -72,9 +85,15 @@ public class OpenStoreBillingHelper {
 
     public boolean isPackageInstaller() {
         final IOpenAppstore openAppstore = openAppstoreHelper.getService();
+        if (openAppstore == null) {
+            return false;
+        }
         try {
-            return openAppstore != null && openAppstore.isPackageInstaller(packageName);
+            final boolean result = openAppstore.isPackageInstaller(packageName);
+            openAppstoreHelper.onServiceSuccess();
+            return result;
         } catch (RemoteException exception) {
+            openAppstoreHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return false;
@@ -82,9 +101,15 @@ public class OpenStoreBillingHelper {
 
     public boolean isBillingAvailable() {
         final IOpenAppstore openAppstore = openAppstoreHelper.getService();
+        if (openAppstore == null) {
+            return false;
+        }
         try {
-            return openAppstore != null && openAppstore.isBillingAvailable(packageName);
+            final boolean result = openAppstore.isBillingAvailable(packageName);
+            openAppstoreHelper.onServiceSuccess();
+            return result;
         } catch (RemoteException exception) {
+            openAppstoreHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return false;
@@ -93,9 +118,15 @@ public class OpenStoreBillingHelper {
     @Nullable
     public Intent getBillingServiceIntent() {
         final IOpenAppstore openAppstore = openAppstoreHelper.getService();
+        if (openAppstore == null) {
+            return null;
+        }
         try {
-            return openAppstore == null ? null : openAppstore.getBillingServiceIntent();
+            final Intent result = openAppstore.getBillingServiceIntent();
+            openAppstoreHelper.onServiceSuccess();
+            return result;
         } catch (RemoteException exception) {
+            openAppstoreHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return null;
@@ -104,9 +135,15 @@ public class OpenStoreBillingHelper {
     @Nullable
     public Intent getProductPageIntent() {
         final IOpenAppstore openAppstore = openAppstoreHelper.getService();
+        if (openAppstore == null) {
+            return null;
+        }
         try {
-            return openAppstore == null ? null : openAppstore.getProductPageIntent(packageName);
+            final Intent result = openAppstore.getProductPageIntent(packageName);
+            openAppstoreHelper.onServiceSuccess();
+            return result;
         } catch (RemoteException exception) {
+            openAppstoreHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return null;
@@ -115,9 +152,15 @@ public class OpenStoreBillingHelper {
     @Nullable
     public Intent getRateItPageIntent() {
         final IOpenAppstore openAppstore = openAppstoreHelper.getService();
+        if (openAppstore == null) {
+            return null;
+        }
         try {
-            return openAppstore == null ? null : openAppstore.getRateItPageIntent(packageName);
+            final Intent result = openAppstore.getRateItPageIntent(packageName);
+            openAppstoreHelper.onServiceSuccess();
+            return result;
         } catch (RemoteException exception) {
+            openAppstoreHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return null;
@@ -127,13 +170,15 @@ public class OpenStoreBillingHelper {
     public int isBillingSupported(@NonNull final ItemType itemType) {
         final IOpenInAppBillingService openInApp = openInAppHelper.getService();
         if (openInApp == null) {
-            return Response.UNKNOWN;
+            return Response.SERVICE_UNAVAILABLE;
         }
         try {
             final String type = itemType.toString();
             @Response final int response = openInApp.isBillingSupported(API, packageName, type);
+            openInAppHelper.onServiceSuccess();
             return response;
         } catch (RemoteException exception) {
+            openInAppHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return Response.UNKNOWN;
@@ -142,55 +187,71 @@ public class OpenStoreBillingHelper {
     public Bundle getBuyIntent(@NonNull final String sku,
             @NonNull final ItemType itemType) {
         final IOpenInAppBillingService openInApp = openInAppHelper.getService();
+        if (openInApp == null) {
+            return null;
+        }
         final String type = itemType.toString();
         try {
-            return openInApp == null
-                    ? null : openInApp.getBuyIntent(API, packageName, sku, type, null);
+            final Bundle result = openInApp.getBuyIntent(API, packageName, sku, type, null);
+            openInAppHelper.onServiceSuccess();
+            return result;
         } catch (RemoteException exception) {
+            openInAppHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return null;
     }
 
-    @Nullable
-    public Bundle getSkuDetails(@NonNull final Map<ItemType, Collection<String>> typeSkuMap) {
+    /**
+     * Loads details of the supplied SKUs in chunks sized by {@link #skuDetailsBatcher}.
+     *
+     * @param typeSkuMap SKUs to load details for, grouped by type.
+     * @param receiver   Receiver of the details loaded in each chunk.
+     * @return {@link Response#OK} if all details were loaded, first encountered error otherwise.
+     */
+    @Response
+    public int getSkuDetails(@NonNull final Map<ItemType, Collection<String>> typeSkuMap,
+            @NonNull final SkuDetailsReceiver receiver) {
         final IOpenInAppBillingService openInApp = openInAppHelper.getService();
         if (openInApp == null) {
-            return null;
+            return Response.SERVICE_UNAVAILABLE;
         }
         try {
-            Bundle result = null;
             for (final Map.Entry<ItemType, Collection<String>> entry : typeSkuMap.entrySet()) {
                 final String type = entry.getKey().toString();
-                final Collection<String> skus = entry.getValue();
-                for (final List<String> skuBatch : ASIabUtils.partition(skus, BATCH_SIZE)) {
-                    final Bundle skuBundle = OpenStoreUtils.putSkus(new Bundle(), skuBatch);
-                    final Bundle batch = openInApp.getSkuDetails(API, packageName, type, skuBundle);
-                    if (OpenStoreUtils.getResponse(batch) != Response.OK) {
-                        return batch;
-                    }
-                    if (result == null) {
-                        result = batch;
-                    } else {
-                        OpenStoreUtils.addSkuDetails(result, batch);
-                    }
+                final List<String> skus = new ArrayList<>(entry.getValue());
+                final SkuDetailsChunkReceiver chunkReceiver = new SkuDetailsChunkReceiver(receiver);
+                skuDetailsBatcher.execute(skus, chunk -> {
+                    final Bundle skuBundle = OpenStoreUtils.putSkus(new Bundle(), chunk);
+                    return openInApp.getSkuDetails(API, packageName, type, skuBundle);
+                }, chunkReceiver);
+                openInAppHelper.onServiceSuccess();
+                if (chunkReceiver.response != Response.OK) {
+                    return chunkReceiver.response;
                 }
             }
-            return result;
+            return Response.OK;
         } catch (RemoteException exception) {
+            openInAppHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
-        return null;
+        return Response.UNKNOWN;
     }
 
     public Bundle getPurchases(@NonNull final ItemType itemType,
             @Nullable final String continuationToken) {
         final IOpenInAppBillingService openInApp = openInAppHelper.getService();
+        if (openInApp == null) {
+            return null;
+        }
         final String type = itemType.toString();
         try {
-            return openInApp == null
-                    ? null : openInApp.getPurchases(API, packageName, type, continuationToken);
+            final Bundle result =
+                    openInApp.getPurchases(API, packageName, type, continuationToken);
+            openInAppHelper.onServiceSuccess();
+            return result;
         } catch (RemoteException exception) {
+            openInAppHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return null;
@@ -199,11 +260,16 @@ public class OpenStoreBillingHelper {
     @Response
     public int consumePurchase(@NonNull final String purchaseToken) {
         final IOpenInAppBillingService openInApp = openInAppHelper.getService();
+        if (openInApp == null) {
+            return Response.SERVICE_UNAVAILABLE;
+        }
         try {
-            @Response final int response = openInApp == null ? Response.UNKNOWN
-                    : openInApp.consumePurchase(API, packageName, purchaseToken);
+            @Response final int response =
+                    openInApp.consumePurchase(API, packageName, purchaseToken);
+            openInAppHelper.onServiceSuccess();
             return response;
         } catch (RemoteException exception) {
+            openInAppHelper.onServiceError(exception);
             ASLog.e("", exception);
         }
         return Response.UNKNOWN;
@@ -212,7 +278,7 @@ public class OpenStoreBillingHelper {
     protected class OpenAppstoreHelper extends AidlBillingHelper<IOpenAppstore> {
 
         public OpenAppstoreHelper(final Context context, final Class<IOpenAppstore> clazz) {
-            super(context, clazz);
+            super(context, clazz, IOpenAppstore.Stub::asInterface);
         }
 
         @Nullable
@@ -228,7 +294,7 @@ public class OpenStoreBillingHelper {
     protected class OpenInAppHelper extends AidlBillingHelper<IOpenInAppBillingService> {
 
         public OpenInAppHelper(final Context context, final Class<IOpenInAppBillingService> clazz) {
-            super(context, clazz);
+            super(context, clazz, IOpenInAppBillingService.Stub::asInterface);
         }
 
         @Nullable
@@ -237,4 +303,49 @@ public class OpenStoreBillingHelper {
             return getBillingServiceIntent();
         }
     }
+
+    /**
+     * Receiver of SKU details loaded by {@link #getSkuDetails(Map, SkuDetailsReceiver)}.
+     */
+    public interface SkuDetailsReceiver {
+
+        /**
+         * Handles details loaded in a single chunk.
+         *
+         * @param skusDetails Loaded SKU details.
+         */
+        void onSkuDetails(@NonNull final Collection<OpenSkuDetails> skusDetails);
+    }
+
+    /**
+     * Checks chunk replies and passes loaded details further.
+     */
+    private static final class SkuDetailsChunkReceiver implements BinderBatcher.Receiver<String> {
+
+        @NonNull
+        private final SkuDetailsReceiver receiver;
+        @Response
+        private int response = Response.OK;
+
+        SkuDetailsChunkReceiver(@NonNull final SkuDetailsReceiver receiver) {
+            this.receiver = receiver;
+        }
+
+        @Override
+        public boolean onReply(@NonNull final List<String> chunk, @Nullable final Bundle reply,
+                final long latency) {
+            response = OpenStoreUtils.getResponse(reply);
+            ASLog.d("SKUs: %s. Response: %s. Latency: %d ms.", chunk, response, latency);
+            if (response != Response.OK) {
+                return false;
+            }
+            final Collection<OpenSkuDetails> skusDetails = OpenStoreUtils.getSkusDetails(reply);
+            if (skusDetails == null) {
+                response = Response.UNKNOWN;
+                return false;
+            }
+            receiver.onSkuDetails(skusDetails);
+            return true;
+        }
+    }
 }
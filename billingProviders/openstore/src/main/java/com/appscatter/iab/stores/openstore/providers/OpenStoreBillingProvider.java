@@ -227,25 +227,22 @@ public class OpenStoreBillingProvider extends BaseBillingProvider<TypedSkuResolv
             }
             typeSkus.add(sku);
         }
-        final Bundle result = helper.getSkuDetails(typeSkuMap);
-        @Response final int response = OpenStoreUtils.getResponse(result);
+        final Collection<SkuDetails> skusDetails = new ArrayList<>();
+        final Collection<String> unresolvedSkus = new HashSet<>(skus);
+        // Convert every chunk as soon as it's loaded
+        @Response final int response = helper.getSkuDetails(typeSkuMap, openSkusDetails -> {
+            for (final OpenSkuDetails openSkuDetails : openSkusDetails) {
+                final String sku = openSkuDetails.getProductId();
+                @SkuType final int skuType = skuResolver.resolveType(sku);
+                skusDetails.add(OpenStoreUtils.convertSkuDetails(openSkuDetails, getName(),
+                        skuType));
+                unresolvedSkus.remove(sku);
+            }
+        });
         if (response != Response.OK) {
             postEmptyResponse(request, getStatus(response));
             return;
         }
-        final Collection<OpenSkuDetails> openSkusDetails = OpenStoreUtils.getSkusDetails(result);
-        if (openSkusDetails == null) {
-            postEmptyResponse(request, Status.UNKNOWN_ERROR);
-            return;
-        }
-        final Collection<SkuDetails> skusDetails = new ArrayList<>();
-        final Collection<String> unresolvedSkus = new HashSet<>(skus);
-        for (final OpenSkuDetails openSkuDetails : openSkusDetails) {
-            final String sku = openSkuDetails.getProductId();
-            @SkuType final int skuType = skuResolver.resolveType(sku);
-            skusDetails.add(OpenStoreUtils.convertSkuDetails(openSkuDetails, getName(), skuType));
-            unresolvedSkus.remove(sku);
-        }
         for (final String unresolvedSku : unresolvedSkus) {
             skusDetails.add(new SkuDetails(unresolvedSku));
         }
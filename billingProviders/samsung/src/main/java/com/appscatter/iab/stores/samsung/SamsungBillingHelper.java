@@ -45,7 +45,7 @@ public class SamsungBillingHelper extends AidlBillingHelper<IAPConnector> {
 
     public SamsungBillingHelper(@NonNull final Context context,
             @BillingMode final int billingMode) {
-        super(context, IAPConnector.class);
+        super(context, IAPConnector.class, IAPConnector.Stub::asInterface);
         this.billingMode = billingMode;
         this.packageName = context.getPackageName();
     }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.listener.BillingListener;
+import com.appscatter.iab.core.listener.BillingListenerCompositor;
+import com.appscatter.iab.core.listener.SimpleBillingListener;
+import com.appscatter.iab.core.model.event.billing.BillingEventType;
+import com.appscatter.iab.core.model.event.billing.BillingResponse;
+import com.appscatter.iab.core.model.event.billing.ConsumeResponse;
+import com.appscatter.iab.core.model.event.billing.InventoryResponse;
+import com.appscatter.iab.core.model.event.billing.PurchaseResponse;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.model.event.billing.Status;
+import com.appscatter.iab.utils.ASLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-response cost of {@link ResponseDispatchTable} with the switch based dispatch it
+ * replaced in {@link BillingEventDispatcher}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResponseDispatchBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int listeners;
+
+    private final BillingListenerCompositor compositor = new BillingListenerCompositor();
+    private final ResponseDispatchTable table = new ResponseDispatchTable();
+    private final BillingResponse response = new SkuDetailsResponse(Status.SUCCESS, null);
+
+    @Setup
+    public void setUp() {
+        final Object[] chain = new Object[listeners];
+        for (int i = 0; i < listeners; i++) {
+            final BillingListener listener = new SimpleBillingListener();
+            compositor.addBillingListener(listener);
+            chain[i] = listener;
+        }
+        table.rebuild(chain);
+    }
+
+    /**
+     * Dispatch before the table: eagerly built log message and a switch with casts per response.
+     */
+    @Benchmark
+    public void switchDispatch() {
+        ASLog.d("Handeling Response of BillingEventType : " + response.getType());
+        compositor.onResponse(response);
+        switch (response.getType()) {
+            case BillingEventType.PURCHASE:
+                compositor.onPurchase((PurchaseResponse) response);
+                break;
+            case BillingEventType.CONSUME:
+                compositor.onConsume((ConsumeResponse) response);
+                break;
+            case BillingEventType.INVENTORY:
+                compositor.onInventory((InventoryResponse) response);
+                break;
+            case BillingEventType.SKU_DETAILS:
+                compositor.onSkuDetails((SkuDetailsResponse) response);
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    @Benchmark
+    public void tableDispatch() {
+        ASLog.logMethod(response);
+        table.dispatch(response);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.RequestPriorityPolicy;
+import com.appscatter.iab.core.model.event.billing.BillingRequest;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares duplicate check of {@link BillingRequestScheduler} with the scan over every helper
+ * queue it replaced, for growing number of queued requests.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SchedulerDedupBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int queued;
+
+    private final BillingRequestScheduler scheduler = new BillingRequestScheduler();
+    private final Map<IabHelperImpl, PriorityQueue<ScheduledRequest>> queues = new HashMap<>();
+    private final IabHelperImpl helper1 = new IabHelperImpl();
+    private final IabHelperImpl helper2 = new IabHelperImpl();
+    private BillingRequest duplicate;
+
+    @Setup
+    public void setUp() {
+        queues.put(helper1, new PriorityQueue<ScheduledRequest>());
+        queues.put(helper2, new PriorityQueue<ScheduledRequest>());
+        for (int i = 0; i < queued; i++) {
+            final IabHelperImpl helper = i % 2 == 0 ? helper1 : helper2;
+            final BillingRequest request = skuDetails(i);
+            scheduler.schedule(helper, request, RequestPriorityPolicy.DEFAULT, 0);
+            queues.get(helper).add(new ScheduledRequest(request, RequestPriorityPolicy.DEFAULT, 0));
+        }
+        // Equal to the last queued request, so the scan has to reach it
+        duplicate = skuDetails(queued - 1);
+    }
+
+    /**
+     * Duplicate check before the index: every queued request is compared with the new one.
+     */
+    @Benchmark
+    public boolean scanQueues() {
+        for (final PriorityQueue<ScheduledRequest> requests : queues.values()) {
+            for (final ScheduledRequest scheduledRequest : requests) {
+                if (scheduledRequest.getRequest().equals(duplicate)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean indexedSchedule() {
+        return scheduler.schedule(helper1, duplicate, RequestPriorityPolicy.DEFAULT, 0);
+    }
+
+    private static SkuDetailsRequest skuDetails(final int index) {
+        return new SkuDetailsRequest(Collections.singleton("sku" + index));
+    }
+}
@@ -25,8 +25,10 @@ import com.appscatter.iab.core.billing.BillingProvider;
 import com.appscatter.iab.core.billing.Providers;
 import com.appscatter.iab.core.listener.DefaultBillingListener;
 import com.appscatter.iab.core.model.Configuration;
+import com.appscatter.iab.core.model.EventQueueGauge;
 import com.appscatter.iab.core.model.billing.IapProductList;
 import com.appscatter.iab.core.model.event.ASEvent;
+import com.appscatter.iab.core.model.event.billing.BillingResponse;
 import com.appscatter.iab.core.util.ASIabUtils;
 import com.appscatter.iab.utils.ASChecks;
 import com.appscatter.iab.utils.ASLog;
@@ -52,10 +54,11 @@ import android.support.v4.app.FragmentActivity;
 import android.support.v4.util.Pair;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Set;
 
 import io.reactivex.Observable;
-import io.reactivex.processors.PublishProcessor;
+import io.reactivex.Scheduler;
 import io.reactivex.schedulers.Schedulers;
 
 import static android.content.Context.DOWNLOAD_SERVICE;
@@ -70,7 +73,7 @@ public final class ASIab {
     private static Pair<String, String> providerInfo;
     private static IapProductList mProductList;
     private static boolean mPending = false;
-    private static PublishProcessor<ASEvent> mBus = PublishProcessor.create();
+    private static final EventBus mBus = new EventBus();
 
     private ASIab() {
         throw new UnsupportedOperationException();
@@ -84,12 +87,59 @@ public final class ASIab {
     }
 
     public static <T> Observable<T> getEvents(final Class<T> eventClass) {
-        return mBus
-                .filter(eventClass::isInstance)
-                .cast(eventClass)
-                .subscribeOn(Schedulers.io())
-                .observeOn(Schedulers.io())
-                .toObservable();
+        return getEvents(eventClass, Schedulers.io());
+    }
+
+    /**
+     * Same as {@link #getEvents(Class)} but delivers events on the supplied scheduler.
+     * <p>
+     * Prefer this to chaining {@link Observable#observeOn(Scheduler)}, otherwise events are
+     * buffered past the subscriber queue bounds set in {@link Configuration}.
+     *
+     * @param eventClass Type of events to receive.
+     * @param scheduler  Scheduler to deliver events on.
+     * @return Observable object emitting events of the supplied type.
+     */
+    public static <T> Observable<T> getEvents(final Class<T> eventClass,
+            @NonNull final Scheduler scheduler) {
+        return mBus.events(eventClass, scheduler);
+    }
+
+    /**
+     * Gets depth of every bounded event subscriber queue.
+     *
+     * @return Collection of queue gauges, empty if queues are not bounded.
+     * @see Configuration.Builder#setEventQueue(int, int)
+     */
+    @NonNull
+    public static Collection<EventQueueGauge> getEventQueueGauges() {
+        return mBus.getGauges();
+    }
+
+    /**
+     * Gets cache of SKU details loaded from billing provider.
+     * <p>
+     * Can be used to read cache hit and miss counters or to drop cached details.
+     *
+     * @return SkuDetailsCache object, can't be null.
+     * @see Configuration.Builder#setSkuDetailsCache(long, int)
+     */
+    @NonNull
+    public static SkuDetailsCache getSkuDetailsCache() {
+        return SkuDetailsCache.getInstance();
+    }
+
+    /**
+     * Gets local ledger of verified purchases owned by user.
+     * <p>
+     * Can be used to check entitlements without querying billing provider.
+     *
+     * @return PurchaseLedger object, can't be null.
+     * @see Configuration.Builder#setUsePurchaseLedger(boolean)
+     */
+    @NonNull
+    public static PurchaseLedger getPurchaseLedger() {
+        return PurchaseLedger.getInstance();
     }
 
     /**
@@ -100,7 +150,15 @@ public final class ASIab {
      * @return True if event was delivered, false if it was skipped due to the lack of subscribers.
      */
     public static void post(@NonNull final ASEvent event) {
-        mBus.onNext(event);
+        if (event instanceof BillingResponse) {
+            // Response has to be bound to its request first, late responses are dropped
+            BillingBase.getInstance().acceptResponse((BillingResponse) event);
+            return;
+        }
+        mBus.post(event);
+        if (event instanceof ResponseEvent) {
+            mBus.post(((ResponseEvent) event).getResponse());
+        }
     }
 
     /**
@@ -259,6 +317,7 @@ public final class ASIab {
     }
 
     private static void initialize(@NonNull final Application application, @NonNull final Configuration configuration) {
+        mBus.configure(configuration);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && configuration.getPermissionsConfig().handlePermissions()) {
             ASPermissions.init(application, configuration.getPermissionsConfig());
@@ -289,7 +348,19 @@ public final class ASIab {
         }
 
         scheduler.dropQueue();
-        billingBase.setConfiguration(configuration);
+        BillingEventDispatcher.getInstance().setBillingListener(configuration.getBillingListener());
+        final SkuDetailsStore skuDetailsStore = configuration.persistSkuDetails()
+                ? new SkuDetailsStore(mContext, configuration.getSkuDetailsCacheSize()) : null;
+        final PurchaseStore purchaseStore = configuration.usePurchaseLedger()
+                ? new PurchaseStore(mContext) : null;
+        final String catalogHash = mProductList == null ? null : mProductList.getHash();
+        BillingThread.execute(() -> {
+            final SkuDetailsCache skuDetailsCache = SkuDetailsCache.getInstance();
+            skuDetailsCache.setStore(skuDetailsStore);
+            PurchaseLedger.getInstance().setStore(purchaseStore, configuration.getProviders());
+            billingBase.setConfiguration(configuration);
+            skuDetailsCache.setCatalogHash(catalogHash);
+        });
 
         ASIab.mPending = false;
         ASIab.mApplication = null;
@@ -304,7 +375,9 @@ public final class ASIab {
      */
     public static void setup() {
         checkInit();
-        SetupManager.getInstance(mContext).startSetup(configuration);
+        final Configuration currentConfiguration = configuration;
+        final SetupManager setupManager = SetupManager.getInstance(mContext);
+        BillingThread.execute(() -> setupManager.startSetup(currentConfiguration));
     }
 
     /**
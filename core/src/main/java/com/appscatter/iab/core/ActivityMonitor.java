@@ -18,6 +18,7 @@
 package com.appscatter.iab.core;
 
 import com.appscatter.iab.core.android.ASIabActivity;
+import com.appscatter.iab.core.listener.CopyOnWriteListenerSet;
 import com.appscatter.iab.core.model.ComponentState;
 import com.appscatter.iab.core.model.event.ActivityResultRequest;
 import com.appscatter.iab.core.model.event.android.ActivityNewIntentEvent;
@@ -68,6 +69,12 @@ public final class ActivityMonitor implements Application.ActivityLifecycleCallb
 //    @SuppressFBWarnings({"PMB_POSSIBLE_MEMORY_BLOAT"})
     private static final Map<Activity, Integer> STATE_MAP =
             Collections.synchronizedMap(new WeakHashMap<Activity, Integer>());
+    private static final CopyOnWriteListenerSet<ForegroundListener> FOREGROUND_LISTENERS =
+            new CopyOnWriteListenerSet<>();
+    /**
+     * Number of started activities, modified only from the main thread.
+     */
+    private static volatile int startedCount;
     @Nullable
     private static ActivityMonitor instance;
     private final Context context;
@@ -132,6 +139,40 @@ public final class ActivityMonitor implements Application.ActivityLifecycleCallb
         return getState(activity) == DESTROY;
     }
 
+    /**
+     * Checks if application has at least one started activity.
+     *
+     * @return True if application is in foreground, false otherwise.
+     */
+    public static boolean isForeground() {
+        return startedCount > 0;
+    }
+
+    /**
+     * Registers listener to be notified when application enters or leaves foreground.
+     *
+     * @param listener Listener to add.
+     */
+    public static void addForegroundListener(@NonNull final ForegroundListener listener) {
+        FOREGROUND_LISTENERS.add(listener);
+    }
+
+    /**
+     * Unregisters previously added foreground listener.
+     *
+     * @param listener Listener to remove.
+     */
+    public static void removeForegroundListener(@NonNull final ForegroundListener listener) {
+        FOREGROUND_LISTENERS.remove(listener);
+    }
+
+    private static void onForegroundChanged(final boolean foreground) {
+        ASLog.d("Application foreground: %b", foreground);
+        for (final Object listener : FOREGROUND_LISTENERS.snapshot()) {
+            ((ForegroundListener) listener).onForegroundChanged(foreground);
+        }
+    }
+
     @Nullable
     private Activity getResultHandlingActivity(
             @NonNull final BillingRequest billingRequest) {
@@ -148,8 +189,8 @@ public final class ActivityMonitor implements Application.ActivityLifecycleCallb
 
     public void registerForEvents() {
         ASIab.getEvents(ActivityResultRequest.class).subscribe(this::onActivityResultRequestEvent);
-        ASIab.getEvents(ActivityNewIntentEvent.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onActivityNewIntentEvent);
-        ASIab.getEvents(ActivityResult.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onActivityResultEvent);
+        ASIab.getEvents(ActivityNewIntentEvent.class, AndroidSchedulers.mainThread()).subscribe(this::onActivityNewIntentEvent);
+        ASIab.getEvents(ActivityResult.class, AndroidSchedulers.mainThread()).subscribe(this::onActivityResultEvent);
     }
 
     private void onActivityResultRequestEvent(@NonNull final ActivityResultRequest resultRequest) {
@@ -205,6 +246,9 @@ public final class ActivityMonitor implements Application.ActivityLifecycleCallb
     @Override
     public void onActivityStarted(final Activity activity) {
         setState(activity, START);
+        if (startedCount++ == 0) {
+            onForegroundChanged(true);
+        }
     }
 
     @Override
@@ -220,6 +264,9 @@ public final class ActivityMonitor implements Application.ActivityLifecycleCallb
     @Override
     public void onActivityStopped(final Activity activity) {
         setState(activity, STOP);
+        if (startedCount > 0 && --startedCount == 0) {
+            onForegroundChanged(false);
+        }
     }
 
     @Override
@@ -231,4 +278,19 @@ public final class ActivityMonitor implements Application.ActivityLifecycleCallb
     public void onActivityDestroyed(final Activity activity) {
         setState(activity, DESTROY);
     }
+
+    /**
+     * Listener notified when application enters or leaves foreground.
+     * <p>
+     * Called on the main thread.
+     */
+    public interface ForegroundListener {
+
+        /**
+         * Called when first activity is started or last activity is stopped.
+         *
+         * @param foreground True if application entered foreground, false if it left it.
+         */
+        void onForegroundChanged(final boolean foreground);
+    }
 }
@@ -25,7 +25,9 @@ import com.appscatter.iab.core.listener.OnInventoryListener;
 import com.appscatter.iab.core.listener.OnPurchaseListener;
 import com.appscatter.iab.core.listener.OnSetupListener;
 import com.appscatter.iab.core.listener.OnSkuDetailsListener;
+import com.appscatter.iab.core.model.RequestWaitStats;
 import com.appscatter.iab.core.model.event.SetupResponse;
+import com.appscatter.iab.core.model.event.billing.BillingEventType;
 import com.appscatter.iab.core.model.event.billing.BillingRequest;
 import com.appscatter.iab.utils.ASChecks;
 
@@ -45,6 +47,12 @@ class AdvancedIabHelperImpl extends SimpleIabHelperImpl implements AdvancedIabHe
     private final BillingRequestScheduler scheduler = BillingRequestScheduler.getInstance();
     private final BillingEventDispatcher dispatcher = BillingEventDispatcher.getInstance();
     private final BillingListenerCompositor listenerCompositor = new BillingListenerCompositor();
+    private volatile int weight = 1;
+    /**
+     * Written only from {@link BillingThread}.
+     */
+    @NonNull
+    private volatile RequestWaitStats waitStats = RequestWaitStats.EMPTY;
 
     AdvancedIabHelperImpl() {
         super();
@@ -58,15 +66,15 @@ class AdvancedIabHelperImpl extends SimpleIabHelperImpl implements AdvancedIabHe
     }
 
     @Override
-    protected void postRequest(@NonNull final BillingRequest billingRequest) {
+    protected void executeRequest(@NonNull final BillingRequest billingRequest) {
         if (billingBase.getSetupResponse() == null) {
             // Lazy setup
             scheduler.schedule(this, billingRequest);
-            ASIab.setup();
-        } else if (!billingBase.isBusy()) {
+            SetupManager.getInstance().startSetup(billingBase.getConfiguration());
+        } else if (billingBase.canExecute(billingRequest)) {
             // No need to schedule anything
-            super.postRequest(billingRequest);
-        } else if (!billingRequest.equals(billingBase.getPendingRequest())) {
+            super.executeRequest(billingRequest);
+        } else if (!billingBase.isPending(billingRequest)) {
             // If request is not already being precessed, schedule it for later
             scheduler.schedule(this, billingRequest);
         }
@@ -132,4 +140,42 @@ class AdvancedIabHelperImpl extends SimpleIabHelperImpl implements AdvancedIabHe
     public void dropQueue() {
         scheduler.dropQueue(this);
     }
+
+    @Override
+    public void cancel(@BillingEventType final int type) {
+        BillingThread.execute(() -> {
+            scheduler.dropRequests(this, type);
+            billingBase.cancel(this, type);
+        });
+    }
+
+    @Override
+    public void setWeight(final int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight must be positive.");
+        }
+        this.weight = weight;
+    }
+
+    @NonNull
+    @Override
+    public RequestWaitStats getWaitStats() {
+        return waitStats;
+    }
+
+    @Override
+    int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Adds time one of this helper requests spent in queue to {@link #getWaitStats()}.
+     *
+     * @param wait Wait time in milliseconds.
+     */
+    @Override
+    void recordWait(final long wait) {
+        BillingThread.check();
+        waitStats = waitStats.add(wait);
+    }
 }
@@ -16,30 +16,69 @@
 
 package com.appscatter.iab.core;
 
+import com.appscatter.iab.core.billing.AidlBillingHelper;
 import com.appscatter.iab.core.billing.BillingProvider;
 import com.appscatter.iab.core.model.Configuration;
+import com.appscatter.iab.core.model.billing.SkuDetails;
 import com.appscatter.iab.core.model.event.RequestHandledEvent;
 import com.appscatter.iab.core.model.event.SetupResponse;
 import com.appscatter.iab.core.model.event.SetupStartedEvent;
+import com.appscatter.iab.core.model.event.billing.BillingEventType;
 import com.appscatter.iab.core.model.event.billing.BillingRequest;
 import com.appscatter.iab.core.model.event.billing.BillingResponse;
+import com.appscatter.iab.core.model.event.billing.ConsumeResponse;
+import com.appscatter.iab.core.model.event.billing.InventoryRequest;
+import com.appscatter.iab.core.model.event.billing.InventoryResponse;
+import com.appscatter.iab.core.model.event.billing.PurchaseResponse;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.model.event.billing.Status;
 import com.appscatter.iab.core.util.BillingUtils;
-import com.appscatter.iab.utils.ASChecks;
 import com.appscatter.iab.utils.ASLog;
 
 import android.app.Application;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import io.reactivex.android.schedulers.AndroidSchedulers;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
 
 import static com.appscatter.iab.core.model.event.billing.Status.BILLING_UNAVAILABLE;
 import static com.appscatter.iab.core.model.event.billing.Status.BUSY;
 import static com.appscatter.iab.core.model.event.billing.Status.NO_BILLING_PROVIDER;
+import static com.appscatter.iab.core.model.event.billing.Status.SUCCESS;
+import static com.appscatter.iab.core.model.event.billing.Status.TIMEOUT;
+import static com.appscatter.iab.core.model.event.billing.Status.USER_CANCELED;
 
 /**
  * This class is intended to be a single entry point for all {@link BillingRequest}s, it also holds
  * library state (current {@link BillingProvider}) and last {@link SetupResponse}.
+ * <p>
+ * State is owned by {@link BillingThread}, requests themselves are executed by billing provider
+ * on a background thread.
+ * <p>
+ * Purchase and consume requests are executed exclusively. Read-only requests may run concurrently
+ * up to {@link BillingProvider#getMaxConcurrentRequests()}, inventory is still loaded one request
+ * at a time since its pages continue each other.
+ * Request which isn't handled before its deadline releases its slot with
+ * {@link com.appscatter.iab.core.model.event.billing.Status#TIMEOUT}.
+ * <p>
+ * Every response is bound to the request it answers, see {@link #acceptResponse(BillingResponse)}.
+ * Request keeps its slot until it gets a response and provider returns from
+ * {@link BillingProvider#onBillingRequest(BillingRequest)}.
+ * <p>
+ * SKU details requests are checked against {@link SkuDetailsCache} first, provider only loads
+ * SKUs which are not cached or have to be revalidated. Inventory requests starting over are
+ * answered from {@link PurchaseLedger} once it was synced, ledger is then synced again in
+ * background.
  */
 final class BillingBase {
 
@@ -56,27 +95,44 @@ final class BillingBase {
      * @see ASIab#setup()
      */
     @Nullable
-    private SetupResponse setupResponse;
+    private volatile SetupResponse setupResponse;
     /**
      * Currently used billing provider.
      */
     @Nullable
     private BillingProvider currentProvider;
     /**
-     * Request being executed by {@link #currentProvider}.
+     * Requests being executed by {@link #currentProvider}.
      *
      * @see RequestHandledEvent
      */
+    private final RequestExecutions executions = new RequestExecutions();
+    /**
+     * Number of executions started so far, orders {@link #executions}.
+     */
+    private long executionCount;
+    private final SkuDetailsCache skuDetailsCache = SkuDetailsCache.getInstance();
+    private final PurchaseLedger purchaseLedger = PurchaseLedger.getInstance();
+    /**
+     * Background request currently syncing {@link #purchaseLedger}.
+     */
     @Nullable
-    private BillingRequest pendingRequest;
+    private InventorySyncRequest syncRequest;
+    /**
+     * Indicates whether {@link #syncRequest} has more pages to load.
+     */
+    private boolean syncHasMore;
+    /**
+     * Indicates whether ledger was changed since background sync was started.
+     */
+    private boolean syncChanged;
 
     private BillingBase() {
         super();
     }
 
-    @SuppressWarnings({"PMD.NonThreadSafeSingleton"})
-    static BillingBase getInstance() {
-        ASChecks.checkThread(true);
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    static synchronized BillingBase getInstance() {
         if (instance == null) {
             instance = new BillingBase();
         }
@@ -91,41 +147,88 @@ final class BillingBase {
      * @param configuration Current configuration object
      */
     void setConfiguration(@NonNull final Configuration configuration) {
+        BillingThread.check();
         this.configuration = configuration;
         this.setupResponse = null;
         this.currentProvider = null;
+        AidlBillingHelper.resetForegroundHelper();
+        skuDetailsCache.configure(configuration.getSkuDetailsTtl(),
+                configuration.getUnknownSkuTtl(), configuration.getSkuDetailsCacheSize());
+        skuDetailsCache.setProvider(null);
+        purchaseLedger.setProvider(null);
+    }
+
+    /**
+     * Gets configuration currently used by library.
+     *
+     * @return Configuration object.
+     */
+    @NonNull
+    Configuration getConfiguration() {
+        BillingThread.check();
+        return configuration;
     }
 
     /**
      * Gets last setup response.
+     * <p>
+     * Can be called from any thread.
      *
      * @return SetupResponse object if setup has finished at least once, null otherwise.
      */
     @Nullable
     SetupResponse getSetupResponse() {
-        ASChecks.checkThread(true);
         return setupResponse;
     }
 
     /**
-     * Gets request currently being executed.
+     * Checks whether supplied request is currently being executed.
+     * <p>
+     * Can be called from any thread.
      *
-     * @return BillingRequest object if there's one, null otherwise.
+     * @param billingRequest Request to check.
+     * @return True if equal request is being executed, false otherwise.
      */
-    @Nullable
-    BillingRequest getPendingRequest() {
-        ASChecks.checkThread(true);
-        return pendingRequest;
+    boolean isPending(@NonNull final BillingRequest billingRequest) {
+        return executions.contains(billingRequest);
     }
 
     /**
-     * Indicates whether current {@link BillingProvider} is busy executing request.
+     * Checks whether supplied request can be executed alongside requests currently in flight.
      *
-     * @return True is BillingProvider is busy, false otherwise.
+     * @param billingRequest Request to check.
+     * @return True if request can be executed right away, false if it has to wait.
      */
-    boolean isBusy() {
-        ASChecks.checkThread(true);
-        return getPendingRequest() != null;
+    boolean canExecute(@NonNull final BillingRequest billingRequest) {
+        BillingThread.check();
+        if (executions.isEmpty()) {
+            return true;
+        }
+        final BillingProvider billingProvider = currentProvider;
+        if (billingProvider == null || isExclusive(billingRequest)
+                || executions.size() >= billingProvider.getMaxConcurrentRequests()) {
+            return false;
+        }
+        final boolean inventory = billingRequest.getType() == BillingEventType.INVENTORY;
+        for (final RequestExecution execution : executions.values()) {
+            final BillingRequest request = execution.getRequest();
+            if (isExclusive(request)
+                    || inventory && request.getType() == BillingEventType.INVENTORY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether supplied request has to be executed with no other requests in flight.
+     *
+     * @param billingRequest Request to check.
+     * @return True for purchase and consume requests, false otherwise.
+     */
+    static boolean isExclusive(@NonNull final BillingRequest billingRequest) {
+        @BillingEventType final int type = billingRequest.getType();
+        return type == BillingEventType.PURCHASE || type == BillingEventType.CONSUME;
     }
 
     /**
@@ -134,41 +237,332 @@ final class BillingBase {
      * If current provider is unavailable or busy, supplied request will not be executed and
      * instead corresponding response will be send immediately.
      *
+     * @param helper         Helper sending the request, can be null.
      * @param billingRequest BillingRequest to execute.
-     * @see #isBusy()
+     * @see #canExecute(BillingRequest)
      */
-    void postRequest(@NonNull final BillingRequest billingRequest) {
-        ASChecks.checkThread(true);
+    void postRequest(@Nullable final IabHelperImpl helper,
+            @NonNull final BillingRequest billingRequest) {
+        BillingThread.check();
         final SetupResponse setupResponse;
-        if (isBusy()) {
-            // Library is busy with another request
-            ASIab.post(BillingUtils.emptyResponse(null, billingRequest, BUSY));
+        if (!canExecute(billingRequest)) {
+            // Library is busy with conflicting request
+            postEmptyResponse(billingRequest, BUSY);
         } else if ((setupResponse = getSetupResponse()) == null || !setupResponse.isSuccessful()) {
             // Setup was not started, is in progress or failed
-            ASIab.post(BillingUtils.emptyResponse(null, billingRequest, NO_BILLING_PROVIDER));
+            postEmptyResponse(billingRequest, NO_BILLING_PROVIDER);
         } else if (configuration.skipStaleRequests() && BillingUtils.isStale(billingRequest)) {
             // Request is no longer relevant, try next one
             ASLog.d("Skipping stale request: " + billingRequest);
             BillingRequestScheduler.getInstance().handleNext();
         } else {
-            pendingRequest = billingRequest;
-            // Send request to be handled by BillingProvider
-            ASIab.post(billingRequest);
+            final BillingRequest request = applyCache(billingRequest);
+            if (request == null) {
+                // Request was answered from cache, try next one
+                BillingRequestScheduler.getInstance().handleNext();
+                return;
+            }
+            execute(helper, request);
+        }
+    }
+
+    /**
+     * Sends supplied request to current billing provider, occupying execution slot until handled.
+     *
+     * @param helper  Helper sending the request, can be null.
+     * @param request BillingRequest to execute.
+     */
+    private void execute(@Nullable final IabHelperImpl helper,
+            @NonNull final BillingRequest request) {
+        final CoalescedSkuDetailsRequest coalescedRequest = getCoalesced(request);
+        final Collection<IabHelperImpl> helpers;
+        if (coalescedRequest != null) {
+            helpers = coalescedRequest.getHelpers();
+        } else if (helper != null) {
+            helpers = Collections.singletonList(helper);
+        } else {
+            helpers = Collections.emptyList();
+        }
+        final RequestExecution execution = new RequestExecution(request, helpers, ++executionCount);
+        executions.put(execution);
+        final long deadline = configuration.getRequestDeadline(request.getType());
+        if (deadline > 0) {
+            execution.setDeadline(BillingThread.scheduler().scheduleDirect(
+                    () -> finish(execution, TIMEOUT), deadline, TimeUnit.MILLISECONDS),
+                    SystemClock.elapsedRealtime() + deadline);
+        }
+        // Send request to be handled by BillingProvider
+        ASIab.post(request);
+    }
+
+    /**
+     * Gets request merged from several helpers requests, which supplied one is executed for.
+     *
+     * @param request Request to check.
+     * @return Merged request, null if supplied request doesn't belong to one.
+     */
+    @Nullable
+    private static CoalescedSkuDetailsRequest getCoalesced(@NonNull final BillingRequest request) {
+        final BillingRequest original = request instanceof PartialSkuDetailsRequest
+                ? ((PartialSkuDetailsRequest) request).getRequest() : request;
+        return original instanceof CoalescedSkuDetailsRequest
+                ? (CoalescedSkuDetailsRequest) original : null;
+    }
+
+    /**
+     * Looks up SKU details requested by supplied request in {@link SkuDetailsCache}.
+     * <p>
+     * If every SKU is cached, response is sent immediately. Stale details are still sent, but
+     * have to be revalidated with the provider.
+     *
+     * @param billingRequest Request about to be executed.
+     * @return Request which has to be sent to provider, null if request was answered from cache.
+     */
+    @Nullable
+    private BillingRequest applyCache(@NonNull final BillingRequest billingRequest) {
+        if (billingRequest.getType() == BillingEventType.INVENTORY) {
+            return applyLedger((InventoryRequest) billingRequest);
+        } else if (billingRequest.getType() != BillingEventType.SKU_DETAILS) {
+            return billingRequest;
+        }
+        final SkuDetailsRequest request = (SkuDetailsRequest) billingRequest;
+        final Collection<SkuDetails> cached = new ArrayList<>();
+        final Set<String> stale = new LinkedHashSet<>();
+        final Set<String> missing = skuDetailsCache.lookup(request.getSkus(), cached, stale);
+        if (cached.isEmpty()) {
+            return billingRequest;
+        } else if (!missing.isEmpty()) {
+            missing.addAll(stale);
+            ASLog.d("Loading %d of %d SKUs", missing.size(), request.getSkus().size());
+            return new PartialSkuDetailsRequest(request, missing, cached, false);
+        }
+        ASLog.d("Answering from cache: %s", billingRequest);
+        final String providerName = currentProvider == null ? null : currentProvider.getName();
+        final SkuDetailsResponse response =
+                new CachedSkuDetailsResponse(SUCCESS, providerName, cached);
+        if (request instanceof CoalescedSkuDetailsRequest) {
+            final CoalescedSkuDetailsRequest coalescedRequest =
+                    (CoalescedSkuDetailsRequest) request;
+            final List<SkuDetailsRequest> requests = coalescedRequest.getRequests();
+            final List<SkuDetailsResponse> responses = coalescedRequest.split(response);
+            for (int i = 0; i < requests.size(); i++) {
+                // Revalidation can't cancel requests which were already answered
+                coalescedRequest.answer(i);
+                ASIab.post(new ResponseEvent(requests.get(i), new CachedSkuDetailsResponse(
+                        SUCCESS, providerName, responses.get(i).getSkusDetails())));
+            }
+        } else {
+            ASIab.post(new ResponseEvent(request, response));
+        }
+        if (stale.isEmpty()) {
+            return null;
+        }
+        ASLog.d("Revalidating %d SKUs", stale.size());
+        return new PartialSkuDetailsRequest(request, stale, cached, true);
+    }
+
+    /**
+     * Answers supplied inventory request from {@link PurchaseLedger} if it was synced.
+     * <p>
+     * Ledger is then synced with the provider in background, listeners receive another response
+     * only if any purchase has changed.
+     *
+     * @param request Inventory request about to be executed.
+     * @return Request which has to be sent to provider, can't be null.
+     */
+    @NonNull
+    private BillingRequest applyLedger(@NonNull final InventoryRequest request) {
+        if (!request.startOver()) {
+            return request;
+        }
+        purchaseLedger.startSync();
+        final BillingProvider billingProvider = currentProvider;
+        if (billingProvider == null || !purchaseLedger.canAnswer(billingProvider.getName())) {
+            return request;
+        }
+        ASLog.d("Answering from purchase ledger: %s", request);
+        ASIab.post(new ResponseEvent(request, new CachedInventoryResponse(
+                billingProvider.getName(), purchaseLedger.getInventory())));
+        syncChanged = false;
+        syncHasMore = false;
+        syncRequest = new InventorySyncRequest(true);
+        return syncRequest;
+    }
+
+    /**
+     * Loads next inventory page for background sync.
+     * <p>
+     * If library is busy with other requests, page is deferred to {@link BillingRequestScheduler}
+     * which sends it once no helper has pending requests.
+     */
+    private void continueSync() {
+        final InventorySyncRequest request = new InventorySyncRequest(false);
+        syncRequest = request;
+        if (canExecute(request)) {
+            postSync(request);
+        } else {
+            BillingRequestScheduler.getInstance().scheduleSync(request);
+        }
+    }
+
+    /**
+     * Executes supplied background sync page, unless sync was interrupted meanwhile.
+     *
+     * @param request Sync request to execute.
+     */
+    void postSync(@NonNull final InventorySyncRequest request) {
+        BillingThread.check();
+        final SetupResponse setupResponse = getSetupResponse();
+        if (request != syncRequest || setupResponse == null || !setupResponse.isSuccessful()) {
+            ASLog.d("Purchase ledger sync interrupted");
+            if (request == syncRequest) {
+                syncRequest = null;
+            }
+            return;
+        }
+        execute(null, request);
+    }
+
+    /**
+     * Cancels requests of the supplied type being executed on behalf of the supplied helper.
+     * <p>
+     * Canceled request finishes with {@link com.appscatter.iab.core.model.event.billing.Status#USER_CANCELED}.
+     * If request was merged with requests of other helpers, only parts sent by the supplied helper
+     * are answered, merged request keeps executing until nobody waits for it.
+     *
+     * @param helper Helper which sent the request.
+     * @param type   Type of the requests to cancel.
+     */
+    void cancel(@NonNull final IabHelperImpl helper, @BillingEventType final int type) {
+        BillingThread.check();
+        for (final RequestExecution execution : executions.values()) {
+            final BillingRequest billingRequest = execution.getRequest();
+            if (billingRequest.getType() != type || !execution.isSentBy(helper)
+                    || execution.isFinished()) {
+                continue;
+            }
+            final CoalescedSkuDetailsRequest coalescedRequest = getCoalesced(billingRequest);
+            if (coalescedRequest != null) {
+                for (final SkuDetailsRequest request : coalescedRequest.cancel(helper)) {
+                    ASIab.post(new ResponseEvent(request,
+                            BillingUtils.emptyResponse(null, request, USER_CANCELED)));
+                }
+                if (!coalescedRequest.isAnswered()) {
+                    // Other helpers still wait for this request
+                    continue;
+                }
+            }
+            finish(execution, USER_CANCELED);
+        }
+    }
+
+    /**
+     * Finishes execution on behalf of the provider, releasing its slot.
+     *
+     * @param execution Execution to finish.
+     * @param status    Status of the response to send.
+     */
+    private void finish(@NonNull final RequestExecution execution, @Status final int status) {
+        if (!execution.finish()) {
+            // Provider has already answered this request
+            return;
+        }
+        final BillingRequest billingRequest = execution.getRequest();
+        ASLog.d("Finishing request %s with status: %d", billingRequest, status);
+        execution.interrupt();
+        // Merged request was already delivered to dispatcher, it will partition this response
+        ASIab.post(new ResponseEvent(billingRequest,
+                BillingUtils.emptyResponse(null, billingRequest, status)));
+        handle(execution);
+    }
+
+    /**
+     * Releases slot of supplied execution, unless it was released before.
+     *
+     * @param execution Execution to release.
+     */
+    private static void handle(@NonNull final RequestExecution execution) {
+        if (execution.handle()) {
+            ASIab.post(new RequestHandledEvent(execution.getRequest()));
+        }
+    }
+
+    /**
+     * Binds response posted by the provider to the request it answers.
+     * <p>
+     * Can be called from any thread. Response posted while provider executes the request is bound
+     * to that request. Response posted from any other thread, e.g. SDK callback or activity result,
+     * is bound to the oldest request of the same type still waiting for its response. Response is
+     * dropped if its request was already finished, e.g. canceled or timed out.
+     *
+     * @param billingResponse Response to accept.
+     * @see ResponseEvent
+     */
+    void acceptResponse(@NonNull final BillingResponse billingResponse) {
+        final RequestExecution current = RequestExecution.current();
+        RequestExecution execution = current;
+        while (execution == null || !execution.finish()) {
+            if (current != null || (execution = findWaiting(billingResponse)) == null) {
+                ASLog.d("Dropping late response: %s", billingResponse);
+                return;
+            }
+        }
+        ASIab.post(new ResponseEvent(execution.getRequest(), billingResponse));
+        if (execution.isReturned()) {
+            // Provider posted response after it was done with request
+            handle(execution);
+        }
+    }
+
+    @Nullable
+    private RequestExecution findWaiting(@NonNull final BillingResponse billingResponse) {
+        RequestExecution oldest = null;
+        for (final RequestExecution execution : executions.values()) {
+            if (!execution.isFinished()
+                    && execution.getRequest().getType() == billingResponse.getType()
+                    && (oldest == null || execution.getOrder() < oldest.getOrder())) {
+                oldest = execution;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Sends empty response to supplied request, or to every request merged into it.
+     *
+     * @param billingRequest Request that couldn't be executed.
+     * @param status         Status for the response.
+     */
+    private static void postEmptyResponse(@NonNull final BillingRequest billingRequest,
+            @Status final int status) {
+        if (billingRequest instanceof CoalescedSkuDetailsRequest) {
+            for (final BillingRequest request
+                    : ((CoalescedSkuDetailsRequest) billingRequest).getRequests()) {
+                ASIab.post(new ResponseEvent(request,
+                        BillingUtils.emptyResponse(null, request, status)));
+            }
+        } else {
+            ASIab.post(new ResponseEvent(billingRequest,
+                    BillingUtils.emptyResponse(null, billingRequest, status)));
         }
     }
 
     public void registerForEvents() {
-        ASIab.getEvents(SetupStartedEvent.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onSetupStartedEvent);
-        ASIab.getEvents(SetupResponse.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onSetupResponseEvent);
-        ASIab.getEvents(BillingRequest.class).subscribe(this::onBillingRequestEvent);
-        ASIab.getEvents(RequestHandledEvent.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onRequestHandledEvent);
-        ASIab.getEvents(BillingResponse.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onBillingResponseEvent);
+        ASIab.getEvents(SetupStartedEvent.class, BillingThread.scheduler()).subscribe(this::onSetupStartedEvent);
+        ASIab.getEvents(SetupResponse.class, BillingThread.scheduler()).subscribe(this::onSetupResponseEvent);
+        ASIab.getEvents(BillingRequest.class, BillingThread.scheduler()).subscribe(this::onBillingRequestEvent);
+        ASIab.getEvents(RequestHandledEvent.class, BillingThread.scheduler()).subscribe(this::onRequestHandledEvent);
+        ASIab.getEvents(ResponseEvent.class, BillingThread.scheduler()).subscribe(this::onResponseEvent);
     }
 
     private void onSetupStartedEvent(@NonNull final SetupStartedEvent event) {
-        ASChecks.checkThread(true);
         this.currentProvider = null;
+        // Provider might change, previous one shouldn't bind in advance anymore
+        AidlBillingHelper.resetForegroundHelper();
         this.setupResponse = null;
+        skuDetailsCache.setProvider(null);
+        purchaseLedger.setProvider(null);
+        syncRequest = null;
     }
 
     private void onSetupResponseEvent(@NonNull final SetupResponse setupResponse) {
@@ -177,25 +571,62 @@ final class BillingBase {
         if (setupResponse.isSuccessful()) {
             // Suitable provider was found
             currentProvider = setupResponse.getBillingProvider();
+            skuDetailsCache.setProvider(currentProvider);
+            purchaseLedger.setProvider(currentProvider);
         }
     }
 
     private void onBillingRequestEvent(@NonNull final BillingRequest billingRequest) {
-        final BillingProvider billingProvider = this.currentProvider;
-        if (billingProvider != null) {
-            billingProvider.onBillingRequest(billingRequest);
+        final RequestExecution execution = executions.get(billingRequest);
+        if (execution == null || execution.isFinished()) {
+            // Request was finished before it got to the provider
+            return;
         }
-        ASIab.post(new RequestHandledEvent(billingRequest));
+        final BillingProvider billingProvider = this.currentProvider;
+        // Every request gets its own worker so read-only requests don't wait for each other
+        execution.setTask(Schedulers.io().scheduleDirect(() -> {
+            execution.execute(billingProvider);
+            if (execution.isFinished()) {
+                handle(execution);
+            }
+            // Otherwise slot is released once response is posted or deadline is missed
+        }));
     }
 
     private void onRequestHandledEvent(@NonNull final RequestHandledEvent event) {
-        if (!event.getBillingRequest().equals(pendingRequest)) {
+        final RequestExecution execution = executions.remove(event.getBillingRequest());
+        if (execution == null) {
             throw new IllegalStateException();
         }
-        pendingRequest = null;
+        execution.cancelDeadline();
+        if (execution.getRequest() == syncRequest) {
+            syncRequest = null;
+            if (syncHasMore) {
+                continueSync();
+            }
+        }
     }
 
-    private void onBillingResponseEvent(@NonNull final BillingResponse billingResponse) {
+    private void onResponseEvent(@NonNull final ResponseEvent event) {
+        final BillingResponse billingResponse = event.getResponse();
+        switch (billingResponse.getType()) {
+            case BillingEventType.SKU_DETAILS:
+                skuDetailsCache.put((SkuDetailsResponse) billingResponse);
+                break;
+            case BillingEventType.INVENTORY:
+                if (!(billingResponse instanceof CachedInventoryResponse)) {
+                    onInventoryResponse(event.getRequest(), (InventoryResponse) billingResponse);
+                }
+                break;
+            case BillingEventType.PURCHASE:
+                purchaseLedger.add((PurchaseResponse) billingResponse);
+                break;
+            case BillingEventType.CONSUME:
+                purchaseLedger.remove((ConsumeResponse) billingResponse);
+                break;
+            default:
+                break;
+        }
         // Current provider is set but is not available
         if (currentProvider != null && billingResponse.getStatus() == BILLING_UNAVAILABLE
                 // However last setup attempt was successful
@@ -203,7 +634,22 @@ final class BillingBase {
                 // Auto-recovery is set
                 && configuration.autoRecover()) {
             // Attempt to pick new billing provider
-            ASIab.setup();
+            SetupManager.getInstance().startSetup(configuration);
+        }
+    }
+
+    private void onInventoryResponse(@NonNull final BillingRequest request,
+            @NonNull final InventoryResponse response) {
+        final boolean changed = purchaseLedger.apply(response);
+        if (request != syncRequest) {
+            return;
+        }
+        syncChanged |= changed;
+        syncHasMore = response.isSuccessful() && response.hasMore();
+        if (!syncHasMore && syncChanged) {
+            // Listeners have already received outdated inventory
+            ASIab.post(new ResponseEvent(request, new CachedInventoryResponse(
+                    response.getProviderName(), purchaseLedger.getInventory())));
         }
     }
 }
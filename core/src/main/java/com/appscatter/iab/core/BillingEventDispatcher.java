@@ -22,12 +22,9 @@ import com.appscatter.iab.core.listener.BillingListenerCompositor;
 import com.appscatter.iab.core.model.event.RequestHandledEvent;
 import com.appscatter.iab.core.model.event.SetupResponse;
 import com.appscatter.iab.core.model.event.SetupStartedEvent;
-import com.appscatter.iab.core.model.event.billing.BillingEventType;
 import com.appscatter.iab.core.model.event.billing.BillingRequest;
 import com.appscatter.iab.core.model.event.billing.BillingResponse;
-import com.appscatter.iab.core.model.event.billing.ConsumeResponse;
-import com.appscatter.iab.core.model.event.billing.InventoryResponse;
-import com.appscatter.iab.core.model.event.billing.PurchaseResponse;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
 import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
 import com.appscatter.iab.utils.ASChecks;
 import com.appscatter.iab.utils.ASLog;
@@ -36,7 +33,10 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 import io.reactivex.android.schedulers.AndroidSchedulers;
 
@@ -44,18 +44,29 @@ import io.reactivex.android.schedulers.AndroidSchedulers;
  * This class helps to deliver all billing events to appropriate listeners.
  * <p>
  * It's intended to exist as singleton and allow to add and remove corresponding listeners by
- * {@link #register(BillingListener)} and {@link #unregister(BillingListener)} methods.
+ * {@link #register(BillingListener)} and {@link #unregister(BillingListener)} methods. Responses
+ * are delivered through {@link ResponseDispatchTable} resolved on every listener change.
  */
 final class BillingEventDispatcher extends BillingListenerCompositor {
 
     @Nullable
     private static BillingEventDispatcher instance;
     /**
-     * Used to cache responses that are delivered while library is busy.
+     * Requests being executed, mapped to their responses held until request is handled. Otherwise
+     * listener reacting to response with new request would find library still busy.
      *
      * @see RequestHandledEvent
      */
-    private final Deque<BillingResponse> responseQueue = new LinkedList<>();
+    private final Map<BillingRequest, Deque<ResponseEvent>> executing = new IdentityHashMap<>();
+    /**
+     * Persistent listener from current configuration, notified before any registered listener.
+     */
+    @Nullable
+    private volatile BillingListener billingListener;
+    /**
+     * Response handler chains, rebuilt whenever listeners change.
+     */
+    private final ResponseDispatchTable dispatchTable = new ResponseDispatchTable();
 
     private BillingEventDispatcher() {
         super();
@@ -77,6 +88,7 @@ final class BillingEventDispatcher extends BillingListenerCompositor {
      */
     void register(@NonNull final BillingListener billingListener) {
         addBillingListener(billingListener);
+        rebuildDispatchTable();
     }
 
     /**
@@ -86,23 +98,42 @@ final class BillingEventDispatcher extends BillingListenerCompositor {
      */
     void unregister(@NonNull final BillingListener billingListener) {
         removeBillingListener(billingListener);
+        rebuildDispatchTable();
     }
 
-    protected void removeBillingListener(@NonNull final BillingListener billingListener) {
-        billingListeners.remove(billingListener);
-        setupListeners.remove(billingListener);
-        purchaseListeners.remove(billingListener);
-        consumeListeners.remove(billingListener);
-        inventoryListeners.remove(billingListener);
-        skuDetailsListeners.remove(billingListener);
+    /**
+     * Sets persistent listener from current configuration.
+     *
+     * @param billingListener Listener object, can be null.
+     * @see com.appscatter.iab.core.model.Configuration#getBillingListener()
+     */
+    void setBillingListener(@Nullable final BillingListener billingListener) {
+        this.billingListener = billingListener;
+        rebuildDispatchTable();
+    }
+
+    /**
+     * Resolves response handlers of the persistent listener followed by all registered ones.
+     */
+    private void rebuildDispatchTable() {
+        final BillingListener billingListener = this.billingListener;
+        final Object[] listeners = billingListeners.snapshot();
+        if (billingListener == null) {
+            dispatchTable.rebuild(listeners);
+            return;
+        }
+        final Object[] chain = new Object[listeners.length + 1];
+        chain[0] = billingListener;
+        System.arraycopy(listeners, 0, chain, 1, listeners.length);
+        dispatchTable.rebuild(chain);
     }
 
     public void registerForEvents() {
-        ASIab.getEvents(SetupStartedEvent.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onSetupStartedEvent);
-        ASIab.getEvents(SetupResponse.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onSetupResponseEvent);
-        ASIab.getEvents(BillingRequest.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onBillingRequestEvent);
-        ASIab.getEvents(BillingResponse.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onBillingResponseEvent);
-        ASIab.getEvents(RequestHandledEvent.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onRequestHandledEvent);
+        ASIab.getEvents(SetupStartedEvent.class, AndroidSchedulers.mainThread()).subscribe(this::onSetupStartedEvent);
+        ASIab.getEvents(SetupResponse.class, AndroidSchedulers.mainThread()).subscribe(this::onSetupResponseEvent);
+        ASIab.getEvents(BillingRequest.class, AndroidSchedulers.mainThread()).subscribe(this::onBillingRequestEvent);
+        ASIab.getEvents(ResponseEvent.class, AndroidSchedulers.mainThread()).subscribe(this::onResponseEvent);
+        ASIab.getEvents(RequestHandledEvent.class, AndroidSchedulers.mainThread()).subscribe(this::onRequestHandledEvent);
     }
 
     private void onSetupStartedEvent(@NonNull final SetupStartedEvent setupStartedEvent) {
@@ -113,71 +144,131 @@ final class BillingEventDispatcher extends BillingListenerCompositor {
         onSetupResponse(setupResponse);
     }
 
-    private void onBillingRequestEvent(@NonNull final BillingRequest billingRequest) {
-        onRequest(billingRequest);
+    private void onBillingRequestEvent(@NonNull final BillingRequest event) {
+        executing.put(event, new LinkedList<ResponseEvent>());
+        if (event instanceof InventorySyncRequest) {
+            // Listeners have already received inventory from purchase ledger
+            return;
+        }
+        final BillingRequest billingRequest;
+        boolean notify = true;
+        if (event instanceof PartialSkuDetailsRequest) {
+            final PartialSkuDetailsRequest partialRequest = (PartialSkuDetailsRequest) event;
+            billingRequest = partialRequest.getRequest();
+            // Listeners have already received response to revalidated request
+            notify = !partialRequest.isRevalidation();
+        } else {
+            billingRequest = event;
+        }
+        if (!notify) {
+            return;
+        }
+        if (billingRequest instanceof CoalescedSkuDetailsRequest) {
+            for (final SkuDetailsRequest request
+                    : ((CoalescedSkuDetailsRequest) billingRequest).getRequests()) {
+                onRequest(request);
+            }
+        } else {
+            onRequest(billingRequest);
+        }
     }
 
-    private void onBillingResponseEvent(@NonNull final BillingResponse billingResponse) {
-        // Store response in a queue to handle it later
-        if (BillingBase.getInstance().isBusy()) {
-            responseQueue.addLast(billingResponse);
+    private void onResponseEvent(@NonNull final ResponseEvent event) {
+        final BillingResponse billingResponse = event.getResponse();
+        final Deque<ResponseEvent> responses = executing.get(event.getRequest());
+        // Store response to handle it with its request, cached responses are never late
+        if (responses != null && !(billingResponse instanceof CachedSkuDetailsResponse)
+                && !(billingResponse instanceof CachedInventoryResponse)) {
+            responses.addLast(event);
         } else {
-            handleBillingResponse(billingResponse);
+            handleResponseEvent(event);
         }
     }
 
     private void onRequestHandledEvent(@NonNull final RequestHandledEvent event) {
-        while (!responseQueue.isEmpty()) {
-            handleBillingResponse(responseQueue.pollFirst());
+        final Deque<ResponseEvent> responses = executing.remove(event.getBillingRequest());
+        if (responses == null) {
+            return;
+        }
+        while (!responses.isEmpty()) {
+            handleResponseEvent(responses.pollFirst());
         }
     }
 
-    //    @SuppressFBWarnings({"BC_UNCONFIRMED_CAST"})
-    private void handleBillingResponse(@NonNull final BillingResponse billingResponse) {
-        ASLog.d("Handeling Response of BillingEventType : " + billingResponse.getType());
-        onResponse(billingResponse);
-        switch (billingResponse.getType()) {
-            case BillingEventType.PURCHASE:
-                onPurchase((PurchaseResponse) billingResponse);
-                break;
-            case BillingEventType.CONSUME:
-                onConsume((ConsumeResponse) billingResponse);
-                break;
-            case BillingEventType.INVENTORY:
-                onInventory((InventoryResponse) billingResponse);
-                break;
-            case BillingEventType.SKU_DETAILS:
-                onSkuDetails((SkuDetailsResponse) billingResponse);
-                break;
-            default:
-                throw new IllegalStateException();
+    /**
+     * Translates response to the request library has executed into responses to requests sent by
+     * listeners.
+     *
+     * @param event Response bound to its request.
+     */
+    private void handleResponseEvent(@NonNull final ResponseEvent event) {
+        final BillingRequest request = event.getRequest();
+        final BillingResponse billingResponse = event.getResponse();
+        if (billingResponse instanceof CachedSkuDetailsResponse
+                || billingResponse instanceof CachedInventoryResponse) {
+            // Responses answered from cache are already complete and partitioned
+            handleBillingResponse(billingResponse);
+        } else if (request instanceof InventorySyncRequest) {
+            ASLog.d("Purchase ledger sync response: %s", billingResponse);
+        } else if (request instanceof PartialSkuDetailsRequest) {
+            final PartialSkuDetailsRequest partialRequest = (PartialSkuDetailsRequest) request;
+            final SkuDetailsResponse response = (SkuDetailsResponse) billingResponse;
+            if (partialRequest.isRevalidation() && !partialRequest.isChanged(response)) {
+                ASLog.d("Revalidated SKU details are up to date");
+                return;
+            }
+            // Add SKU details taken from cache
+            handleResponse(partialRequest.getRequest(), partialRequest.merge(response),
+                    partialRequest.isRevalidation());
+        } else {
+            handleResponse(request, billingResponse, false);
         }
     }
 
+    /**
+     * Delivers response to supplied request, or to every request merged into it.
+     *
+     * @param request         Request to deliver response to.
+     * @param billingResponse Response to deliver.
+     * @param update          True if requests were already answered and response only updates
+     *                        them, false otherwise.
+     */
+    private void handleResponse(@NonNull final BillingRequest request,
+            @NonNull final BillingResponse billingResponse, final boolean update) {
+        if (!(request instanceof CoalescedSkuDetailsRequest)) {
+            handleBillingResponse(billingResponse);
+            return;
+        }
+        final CoalescedSkuDetailsRequest coalescedRequest = (CoalescedSkuDetailsRequest) request;
+        final List<SkuDetailsResponse> responses =
+                coalescedRequest.split((SkuDetailsResponse) billingResponse);
+        for (int i = 0; i < responses.size(); i++) {
+            // Requests canceled by their helpers were already answered
+            if (update || coalescedRequest.answer(i)) {
+                handleBillingResponse(responses.get(i));
+            }
+        }
+    }
+
+    private void handleBillingResponse(@NonNull final BillingResponse billingResponse) {
+        ASLog.logMethod(billingResponse);
+        dispatchTable.dispatch(billingResponse);
+    }
+
     @Override
     public void onRequest(@NonNull final BillingRequest billingRequest) {
         ASLog.logMethod(billingRequest);
-        final BillingListener billingListener = ASIab.getConfiguration().getBillingListener();
+        final BillingListener billingListener = this.billingListener;
         if (billingListener != null) {
             billingListener.onRequest(billingRequest);
         }
         super.onRequest(billingRequest);
     }
 
-    @Override
-    public void onResponse(@NonNull final BillingResponse billingResponse) {
-        ASLog.logMethod(billingResponse);
-        final BillingListener billingListener = ASIab.getConfiguration().getBillingListener();
-        if (billingListener != null) {
-            billingListener.onResponse(billingResponse);
-        }
-        super.onResponse(billingResponse);
-    }
-
     @Override
     public void onSetupStarted(@NonNull final SetupStartedEvent setupStartedEvent) {
         ASLog.logMethod(setupStartedEvent);
-        final BillingListener billingListener = ASIab.getConfiguration().getBillingListener();
+        final BillingListener billingListener = this.billingListener;
         if (billingListener != null) {
             billingListener.onSetupStarted(setupStartedEvent);
         }
@@ -187,46 +278,10 @@ final class BillingEventDispatcher extends BillingListenerCompositor {
     @Override
     public void onSetupResponse(@NonNull final SetupResponse setupResponse) {
         ASLog.logMethod(setupResponse);
-        final BillingListener billingListener = ASIab.getConfiguration().getBillingListener();
+        final BillingListener billingListener = this.billingListener;
         if (billingListener != null) {
             billingListener.onSetupResponse(setupResponse);
         }
         super.onSetupResponse(setupResponse);
     }
-
-    @Override
-    public void onPurchase(@NonNull final PurchaseResponse purchaseResponse) {
-        final BillingListener billingListener = ASIab.getConfiguration().getBillingListener();
-        if (billingListener != null) {
-            billingListener.onPurchase(purchaseResponse);
-        }
-        super.onPurchase(purchaseResponse);
-    }
-
-    @Override
-    public void onConsume(@NonNull final ConsumeResponse consumeResponse) {
-        final BillingListener billingListener = ASIab.getConfiguration().getBillingListener();
-        if (billingListener != null) {
-            billingListener.onConsume(consumeResponse);
-        }
-        super.onConsume(consumeResponse);
-    }
-
-    @Override
-    public void onInventory(@NonNull final InventoryResponse inventoryResponse) {
-        final BillingListener billingListener = ASIab.getConfiguration().getBillingListener();
-        if (billingListener != null) {
-            billingListener.onInventory(inventoryResponse);
-        }
-        super.onInventory(inventoryResponse);
-    }
-
-    @Override
-    public void onSkuDetails(@NonNull final SkuDetailsResponse skuDetailsResponse) {
-        final BillingListener billingListener = ASIab.getConfiguration().getBillingListener();
-        if (billingListener != null) {
-            billingListener.onSkuDetails(skuDetailsResponse);
-        }
-        super.onSkuDetails(skuDetailsResponse);
-    }
 }
@@ -17,45 +17,70 @@
 package com.appscatter.iab.core;
 
 import com.appscatter.iab.core.api.IabHelper;
+import com.appscatter.iab.core.model.RequestPriorityPolicy;
 import com.appscatter.iab.core.model.event.RequestHandledEvent;
 import com.appscatter.iab.core.model.event.SetupResponse;
+import com.appscatter.iab.core.model.event.billing.BillingEventType;
 import com.appscatter.iab.core.model.event.billing.BillingRequest;
-import com.appscatter.iab.core.util.ASIabUtils;
-import com.appscatter.iab.utils.ASChecks;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
 
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import java.util.Collection;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
-
-import io.reactivex.android.schedulers.AndroidSchedulers;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * This class is responsible for pending {@link BillingRequest}s execution. It monitors {@link
  * BillingBase} state changes and notifies known {@link IabHelper}s when next request can be
  * handled.
+ * <p>
+ * Helpers with pending requests are served in deficit round-robin order, each turn a helper gets
+ * to send as many requests as its weight. Within a single helper queue requests are ordered by
+ * {@link RequestPriorityPolicy} from current configuration. Purchase and consume requests wait
+ * for the user, so they are served out of turn, the most urgent one across all helpers first.
+ * Pending SKU details requests are merged into a single {@link CoalescedSkuDetailsRequest}.
+ * <p>
+ * Queues are owned by {@link BillingThread}.
  */
 final class BillingRequestScheduler {
 
     @Nullable
     private static BillingRequestScheduler instance;
     /**
-     * Collection of helpers potentially having pending requests.
+     * Helpers having pending requests.
+     */
+    private final Map<IabHelperImpl, HelperQueue> helpers = new HashMap<>();
+    /**
+     * Round-robin order of {@link #helpers}, current turn belongs to the first one.
      */
-    private final Map<IabHelperImpl, Collection<BillingRequest>> helpers = Collections
-            .synchronizedMap(new HashMap<IabHelperImpl, Collection<BillingRequest>>());
+    private final Deque<HelperQueue> turns = new ArrayDeque<>();
+    /**
+     * Index of all queued requests, used to skip duplicates without walking every queue.
+     */
+    private final Set<BillingRequest> pending = new HashSet<>();
+    /**
+     * Background sync page waiting for a free slot, sent only when no helper has pending requests.
+     */
+    @Nullable
+    private InventorySyncRequest syncRequest;
 
-    private BillingRequestScheduler() {
+    BillingRequestScheduler() {
         super();
     }
 
-    @SuppressWarnings({"PMD.NonThreadSafeSingleton"})
-    static BillingRequestScheduler getInstance() {
-        ASChecks.checkThread(true);
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    static synchronized BillingRequestScheduler getInstance() {
         if (instance == null) {
             instance = new BillingRequestScheduler();
         }
@@ -70,20 +95,46 @@ final class BillingRequestScheduler {
      * @param request Request object to try to add to queue.
      */
     void schedule(@NonNull final IabHelperImpl helper, @NonNull final BillingRequest request) {
-        for (final Collection<BillingRequest> requests : helpers.values()) {
-            if (requests.contains(request)) {
-                // Request is already in queue.
-                return;
-            }
-        }
+        BillingThread.check();
+        final RequestPriorityPolicy policy = helper.billingBase.getConfiguration()
+                .getRequestPriorityPolicy();
+        schedule(helper, request, policy, SystemClock.elapsedRealtime());
+    }
 
-        final Collection<BillingRequest> queue;
-        if (!helpers.containsKey(helper)) {
-            helpers.put(helper, queue = new ConcurrentLinkedQueue<>());
-        } else {
-            queue = helpers.get(helper);
+    /**
+     * Same as {@link #schedule(IabHelperImpl, BillingRequest)}, but doesn't check calling thread.
+     *
+     * @param helper     Helper initially responsible for supplied request.
+     * @param request    Request object to try to add to queue.
+     * @param policy     Policy to rank request with.
+     * @param enqueuedAt Time in {@link SystemClock#elapsedRealtime()} base.
+     * @return True if request was enqueued, false if equal request is already in queue.
+     */
+    boolean schedule(@NonNull final IabHelperImpl helper, @NonNull final BillingRequest request,
+            @NonNull final RequestPriorityPolicy policy, final long enqueuedAt) {
+        if (!pending.add(request)) {
+            // Request is already in queue.
+            return false;
+        }
+        HelperQueue queue = helpers.get(helper);
+        if (queue == null) {
+            helpers.put(helper, queue = new HelperQueue(helper));
+            turns.addLast(queue);
         }
-        queue.add(request);
+        queue.requests.add(new ScheduledRequest(request, policy, enqueuedAt));
+        return true;
+    }
+
+    /**
+     * Defers supplied background sync page until {@link BillingBase} is free.
+     * <p>
+     * Replaces previously deferred page, if any.
+     *
+     * @param request Sync request to execute later.
+     */
+    void scheduleSync(@NonNull final InventorySyncRequest request) {
+        BillingThread.check();
+        syncRequest = request;
     }
 
     /**
@@ -91,37 +142,214 @@ final class BillingRequestScheduler {
      *
      * @param iabHelper Helper which request queue should be dismissed.
      */
-    void dropQueue(@NonNull final AdvancedIabHelperImpl iabHelper) {
-        helpers.remove(iabHelper);
+    void dropQueue(@NonNull final IabHelperImpl iabHelper) {
+        BillingThread.execute(() -> removeQueue(iabHelper));
+    }
+
+    /**
+     * Same as {@link #dropQueue(IabHelperImpl)}, but runs on calling thread.
+     *
+     * @param iabHelper Helper which request queue should be dismissed.
+     */
+    void removeQueue(@NonNull final IabHelperImpl iabHelper) {
+        final HelperQueue queue = helpers.get(iabHelper);
+        if (queue != null) {
+            for (final ScheduledRequest scheduledRequest : queue.requests) {
+                pending.remove(scheduledRequest.getRequest());
+            }
+            remove(queue);
+        }
+    }
+
+    /**
+     * Dismisses pending requests of the supplied type associated with the supplied helper.
+     *
+     * @param iabHelper Helper which requests should be dismissed.
+     * @param type      Type of the requests to dismiss.
+     */
+    void dropRequests(@NonNull final IabHelperImpl iabHelper,
+            @BillingEventType final int type) {
+        BillingThread.check();
+        final HelperQueue queue = helpers.get(iabHelper);
+        if (queue == null) {
+            return;
+        }
+        final Iterator<ScheduledRequest> iterator = queue.requests.iterator();
+        while (iterator.hasNext()) {
+            final BillingRequest request = iterator.next().getRequest();
+            if (request.getType() == type) {
+                iterator.remove();
+                pending.remove(request);
+            }
+        }
+        if (queue.requests.isEmpty()) {
+            remove(queue);
+        }
     }
 
     /**
      * Dismisses all pending requests for all known helpers.
      */
     void dropQueue() {
+        BillingThread.execute(this::clear);
+    }
+
+    /**
+     * Same as {@link #dropQueue()}, but runs on calling thread.
+     */
+    void clear() {
         helpers.clear();
+        turns.clear();
+        pending.clear();
+        syncRequest = null;
     }
 
+    /**
+     * Sends pending requests for execution while {@link BillingBase} has free slots for them.
+     */
     void handleNext() {
-        // Iterate through registered helpers looking for pending request
-        for (final Map.Entry<IabHelperImpl, Collection<BillingRequest>> entry : helpers.entrySet()) {
-            final IabHelperImpl helper = entry.getKey();
-            if (helper.billingBase.isBusy()) {
-                // Library is busy, pending requests will have to wait some more.
+        BillingThread.check();
+        final BillingBase billingBase = BillingBase.getInstance();
+        while (true) {
+            final HelperQueue exclusive = findExclusive();
+            final HelperQueue next = exclusive == null ? turns.peekFirst() : exclusive;
+            if (next == null) {
+                handleSync(billingBase);
                 return;
             }
-            final BillingRequest request = ASIabUtils.poll(entry.getValue());
-            if (request != null) {
-                // Send request for execution
-                entry.getKey().postRequest(request);
+            if (!billingBase.canExecute(next.requests.peek().getRequest())) {
+                // Requests of other helpers must not overtake the one that has to wait.
                 return;
             }
+            final ScheduledRequest scheduledRequest;
+            if (exclusive != null) {
+                // Served out of turn, helper keeps its deficit
+                scheduledRequest = poll(next);
+            } else {
+                if (next.deficit <= 0) {
+                    // Helper starts a new turn
+                    next.deficit += next.helper.getWeight();
+                }
+                scheduledRequest = poll(next);
+                if (--next.deficit <= 0 && !next.requests.isEmpty()) {
+                    // Turn is over, pass it to the next helper
+                    turns.addLast(turns.pollFirst());
+                }
+            }
+            // Send request for execution
+            final BillingRequest request = coalesce(next.helper, scheduledRequest.getRequest());
+            next.helper.postRequest(request);
+            if (!billingBase.isPending(request)) {
+                // Request was rejected or skipped, wait for the next event
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends deferred background sync page, if there is a free slot for it.
+     *
+     * @param billingBase BillingBase object to send request to.
+     */
+    private void handleSync(@NonNull final BillingBase billingBase) {
+        final InventorySyncRequest request = syncRequest;
+        if (request != null && billingBase.canExecute(request)) {
+            syncRequest = null;
+            billingBase.postSync(request);
+        }
+    }
+
+    /**
+     * Finds queue starting with the most urgent purchase or consume request.
+     * <p>
+     * Helper flooding scheduler with such requests delays read-only requests of other helpers,
+     * which is preferred to keeping user waiting for a purchase behind someone else's turn.
+     *
+     * @return Queue to serve out of turn, null if no queue starts with exclusive request.
+     */
+    @Nullable
+    private HelperQueue findExclusive() {
+        HelperQueue exclusive = null;
+        for (final HelperQueue queue : turns) {
+            final ScheduledRequest head = queue.requests.peek();
+            if (BillingBase.isExclusive(head.getRequest())
+                    && (exclusive == null || head.compareTo(exclusive.requests.peek()) < 0)) {
+                exclusive = queue;
+            }
         }
+        return exclusive;
+    }
+
+    /**
+     * Removes the first request from supplied queue, records time it spent waiting.
+     *
+     * @param queue Queue to take request from.
+     * @return Removed request.
+     */
+    @NonNull
+    private ScheduledRequest poll(@NonNull final HelperQueue queue) {
+        final ScheduledRequest scheduledRequest = queue.requests.poll();
+        pending.remove(scheduledRequest.getRequest());
+        queue.helper.recordWait(SystemClock.elapsedRealtime() - scheduledRequest.getEnqueuedAt());
+        if (queue.requests.isEmpty()) {
+            remove(queue);
+        }
+        return scheduledRequest;
+    }
+
+    private void remove(@NonNull final HelperQueue queue) {
+        helpers.remove(queue.helper);
+        turns.remove(queue);
+    }
+
+    /**
+     * Removes all pending SKU details requests which can be merged with supplied one.
+     *
+     * @param helper  Helper which sent supplied request.
+     * @param request Request picked for execution.
+     * @return Request loading union of all merged SKUs or supplied request if nothing was merged.
+     */
+    @NonNull
+    private BillingRequest coalesce(@NonNull final IabHelperImpl helper,
+            @NonNull final BillingRequest request) {
+        if (!CoalescedSkuDetailsRequest.canCoalesce(request)) {
+            return request;
+        }
+        final List<SkuDetailsRequest> requests = new ArrayList<>();
+        final List<IabHelperImpl> sources = new ArrayList<>();
+        requests.add((SkuDetailsRequest) request);
+        sources.add(helper);
+        for (final HelperQueue queue : new ArrayList<>(turns)) {
+            final Iterator<ScheduledRequest> iterator = queue.requests.iterator();
+            final long now = SystemClock.elapsedRealtime();
+            while (iterator.hasNext()) {
+                final ScheduledRequest scheduledRequest = iterator.next();
+                final BillingRequest queued = scheduledRequest.getRequest();
+                if (CoalescedSkuDetailsRequest.canCoalesce(queued)) {
+                    requests.add((SkuDetailsRequest) queued);
+                    sources.add(queue.helper);
+                    iterator.remove();
+                    pending.remove(queued);
+                    queue.helper.recordWait(now - scheduledRequest.getEnqueuedAt());
+                }
+            }
+            if (queue.requests.isEmpty()) {
+                remove(queue);
+            }
+        }
+        if (requests.size() == 1) {
+            return request;
+        }
+        final Set<String> skus = new LinkedHashSet<>();
+        for (final SkuDetailsRequest skuDetailsRequest : requests) {
+            skus.addAll(skuDetailsRequest.getSkus());
+        }
+        return new CoalescedSkuDetailsRequest(skus, requests, sources);
     }
 
     public void registerForEvents() {
-        ASIab.getEvents(RequestHandledEvent.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onRequestHandledEvent);
-        ASIab.getEvents(SetupResponse.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onSetupResponseEvent);
+        ASIab.getEvents(RequestHandledEvent.class, BillingThread.scheduler()).subscribe(this::onRequestHandledEvent);
+        ASIab.getEvents(SetupResponse.class, BillingThread.scheduler()).subscribe(this::onSetupResponseEvent);
     }
 
     private void onRequestHandledEvent(@NonNull final RequestHandledEvent event) {
@@ -131,4 +359,22 @@ final class BillingRequestScheduler {
     private void onSetupResponseEvent(@NonNull final SetupResponse setupResponse) {
         handleNext();
     }
+
+    /**
+     * Pending requests of a single helper.
+     */
+    private static final class HelperQueue {
+
+        @NonNull
+        private final IabHelperImpl helper;
+        private final PriorityQueue<ScheduledRequest> requests = new PriorityQueue<>();
+        /**
+         * Number of requests helper can still send during current turn.
+         */
+        private int deficit;
+
+        HelperQueue(@NonNull final IabHelperImpl helper) {
+            this.helper = helper;
+        }
+    }
 }
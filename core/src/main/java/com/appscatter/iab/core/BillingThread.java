@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+
+/**
+ * Single serialized thread owning library state.
+ * <p>
+ * {@link BillingBase}, {@link SetupManager} and {@link BillingRequestScheduler} are only accessed
+ * from this thread. Main thread is left for listener delivery and activity launches, blocking
+ * provider calls are executed on {@link io.reactivex.schedulers.Schedulers#io()}.
+ */
+final class BillingThread {
+
+    private static final String NAME = "ASIabBillingThread";
+
+    private static final HandlerThread THREAD = new HandlerThread(NAME,
+            Process.THREAD_PRIORITY_BACKGROUND);
+    private static final Handler HANDLER;
+    private static final Scheduler SCHEDULER;
+
+    static {
+        THREAD.start();
+        final Looper looper = THREAD.getLooper();
+        HANDLER = new Handler(looper);
+        SCHEDULER = AndroidSchedulers.from(looper);
+    }
+
+    private BillingThread() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Gets scheduler delivering events on billing thread.
+     *
+     * @return Scheduler object, can't be null.
+     */
+    @NonNull
+    static Scheduler scheduler() {
+        return SCHEDULER;
+    }
+
+    /**
+     * Indicates whether current thread is billing thread.
+     *
+     * @return True if called from billing thread, false otherwise.
+     */
+    static boolean isCurrent() {
+        return Thread.currentThread() == THREAD;
+    }
+
+    /**
+     * Throws {@link IllegalStateException} if called from any thread but billing thread.
+     */
+    static void check() {
+        if (!isCurrent()) {
+            throw new IllegalStateException("Must be called from billing thread.");
+        }
+    }
+
+    /**
+     * Runs supplied task on billing thread.
+     * <p>
+     * If called from billing thread task is executed immediately.
+     *
+     * @param runnable Task to run.
+     */
+    static void execute(@NonNull final Runnable runnable) {
+        if (isCurrent()) {
+            runnable.run();
+        } else {
+            HANDLER.post(runnable);
+        }
+    }
+}
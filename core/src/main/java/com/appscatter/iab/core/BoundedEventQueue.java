@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.EventKeySelector;
+import com.appscatter.iab.core.model.EventOverflowPolicy;
+import com.appscatter.iab.core.model.EventQueueGauge;
+import com.appscatter.iab.core.model.event.ASEvent;
+import com.appscatter.iab.utils.ASLog;
+import com.appscatter.iab.utils.ASUtils;
+
+import android.support.annotation.NonNull;
+
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Emitter;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Bounded queue standing between {@link EventBus} and a single subscriber.
+ * <p>
+ * Events are offered on the posting thread and drained one by one on the subscriber
+ * {@link Scheduler}. What happens when the queue is full is defined by {@link EventOverflowPolicy}.
+ * <p>
+ * With {@link EventOverflowPolicy#BLOCK} only threads outside of the library wait for space. Main
+ * thread, billing thread and any thread draining one of the queues drop the oldest event instead,
+ * otherwise two subscribers posting to each other's full queues would deadlock.
+ *
+ * @param <T> Type of the delivered events.
+ */
+final class BoundedEventQueue<T> implements Consumer<T>, Runnable {
+
+    /**
+     * Set while current thread is draining any queue.
+     */
+    private static final ThreadLocal<Boolean> DRAINING = new ThreadLocal<>();
+
+    @NonNull
+    private final Class<T> eventClass;
+    @EventOverflowPolicy
+    private final int policy;
+    private final int capacity;
+    @NonNull
+    private final EventKeySelector keySelector;
+    @NonNull
+    private final Emitter<T> emitter;
+    @NonNull
+    private final Scheduler.Worker worker;
+    private final LinkedList<T> queue = new LinkedList<>();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean disposed;
+    private int maxDepth;
+    private long dropped;
+
+    BoundedEventQueue(@NonNull final Class<T> eventClass,
+            @EventOverflowPolicy final int policy,
+            final int capacity,
+            @NonNull final EventKeySelector keySelector,
+            @NonNull final Emitter<T> emitter,
+            @NonNull final Scheduler.Worker worker) {
+        this.eventClass = eventClass;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.keySelector = keySelector;
+        this.emitter = emitter;
+        this.worker = worker;
+    }
+
+    @Override
+    public void accept(final T event) {
+        synchronized (queue) {
+            if (queue.size() < capacity) {
+                queue.addLast(event);
+            } else if (!overflow(event)) {
+                return;
+            }
+            maxDepth = Math.max(maxDepth, queue.size());
+        }
+        if (wip.getAndIncrement() == 0) {
+            worker.schedule(this);
+        }
+    }
+
+    /**
+     * Handles the new event when queue is full.
+     *
+     * @return True if something was put in a queue, false otherwise.
+     */
+    @SuppressWarnings("PMD.AvoidDeeplyNestedIfStmts")
+    private boolean overflow(final T event) {
+        switch (policy) {
+            case EventOverflowPolicy.BLOCK:
+                if (mayBlock()) {
+                    awaitSpace();
+                    if (disposed) {
+                        return false;
+                    }
+                    if (queue.size() < capacity) {
+                        queue.addLast(event);
+                        return true;
+                    }
+                }
+                break;
+            case EventOverflowPolicy.COALESCE:
+                final Object key = keySelector.getKey((ASEvent) event);
+                final ListIterator<T> iterator = queue.listIterator(queue.size());
+                while (iterator.hasPrevious()) {
+                    if (key.equals(keySelector.getKey((ASEvent) iterator.previous()))) {
+                        iterator.set(event);
+                        dropped++;
+                        return true;
+                    }
+                }
+                break;
+            case EventOverflowPolicy.FAIL_FAST:
+                dropped++;
+                ASLog.e("Event queue overflow, rejected: %s", event);
+                return false;
+            default:
+                break;
+        }
+        queue.pollFirst();
+        queue.addLast(event);
+        dropped++;
+        ASLog.w("Event queue overflow, dropped oldest %s", eventClass.getSimpleName());
+        return true;
+    }
+
+    /**
+     * Checks whether current thread can wait for space in a full queue.
+     *
+     * @return False for main thread, billing thread and any thread draining a queue.
+     */
+    private static boolean mayBlock() {
+        return DRAINING.get() == null && !BillingThread.isCurrent() && !ASUtils.isMainThread();
+    }
+
+    private void awaitSpace() {
+        while (!disposed && queue.size() >= capacity) {
+            try {
+                queue.wait();
+            } catch (InterruptedException exception) {
+                ASLog.e("", exception);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        final Boolean draining = DRAINING.get();
+        DRAINING.set(Boolean.TRUE);
+        try {
+            drain();
+        } finally {
+            if (draining == null) {
+                DRAINING.remove();
+            }
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        while (!disposed) {
+            final T event;
+            synchronized (queue) {
+                event = queue.pollFirst();
+                queue.notifyAll();
+            }
+            if (event != null) {
+                emitter.onNext(event);
+                continue;
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Stops delivery and releases all threads blocked in {@link #accept(Object)}.
+     */
+    void dispose() {
+        disposed = true;
+        worker.dispose();
+        synchronized (queue) {
+            queue.clear();
+            queue.notifyAll();
+        }
+    }
+
+    @NonNull
+    EventQueueGauge getGauge() {
+        synchronized (queue) {
+            return new EventQueueGauge(eventClass, queue.size(), maxDepth, dropped);
+        }
+    }
+}
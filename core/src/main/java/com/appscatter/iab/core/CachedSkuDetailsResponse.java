@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.billing.SkuDetails;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.model.event.billing.Status;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collection;
+
+/**
+ * {@link SkuDetailsResponse} answered from {@link SkuDetailsCache} without asking provider.
+ * <p>
+ * Such response is delivered to listeners right away, even if library is busy with other requests,
+ * and is never put back in cache.
+ */
+final class CachedSkuDetailsResponse extends SkuDetailsResponse {
+
+    CachedSkuDetailsResponse(@Status final int status,
+            @Nullable final String providerName,
+            @NonNull final Collection<SkuDetails> skusDetails) {
+        super(status, providerName, skusDetails);
+    }
+}
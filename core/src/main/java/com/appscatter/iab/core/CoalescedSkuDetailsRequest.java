@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.billing.SkuDetails;
+import com.appscatter.iab.core.model.event.billing.BillingEventType;
+import com.appscatter.iab.core.model.event.billing.BillingRequest;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * {@link SkuDetailsRequest} loading union of SKUs from several pending requests in a single
+ * provider round-trip.
+ * <p>
+ * Listeners never see this request, instead {@link BillingEventDispatcher} delivers each original
+ * request and a response partitioned with {@link #split(SkuDetailsResponse)}.
+ * <p>
+ * Every original request is answered once, helper can cancel its own requests with
+ * {@link #cancel(IabHelperImpl)} while others still wait for the merged response.
+ *
+ * @see BillingRequestScheduler
+ */
+final class CoalescedSkuDetailsRequest extends SkuDetailsRequest {
+
+    @NonNull
+    private final transient List<SkuDetailsRequest> requests;
+    @NonNull
+    private final transient List<IabHelperImpl> helpers;
+    /**
+     * Non-zero for every original request which was already answered.
+     */
+    @NonNull
+    private final transient AtomicIntegerArray answered;
+
+    /**
+     * Creates new merged request.
+     *
+     * @param skus     Union of SKUs from all original requests.
+     * @param requests Original requests.
+     * @param helpers  Helpers which sent original requests, in the same order.
+     */
+    CoalescedSkuDetailsRequest(@NonNull final Set<String> skus,
+            @NonNull final List<SkuDetailsRequest> requests,
+            @NonNull final List<IabHelperImpl> helpers) {
+        super(skus);
+        if (requests.size() != helpers.size()) {
+            throw new IllegalArgumentException("Every request must have its helper.");
+        }
+        this.requests = Collections.unmodifiableList(requests);
+        this.helpers = Collections.unmodifiableList(helpers);
+        this.answered = new AtomicIntegerArray(requests.size());
+    }
+
+    /**
+     * Checks whether supplied request can be merged with other SKU details requests.
+     *
+     * @param request Request to check.
+     * @return True if request loads SKU details and is not bound to any activity.
+     */
+    static boolean canCoalesce(@NonNull final BillingRequest request) {
+        return request.getType() == BillingEventType.SKU_DETAILS
+                && !(request instanceof CoalescedSkuDetailsRequest)
+                && request.getActivity() == null;
+    }
+
+    /**
+     * Gets requests merged into this one.
+     *
+     * @return List of original requests, can't be null.
+     */
+    @NonNull
+    List<SkuDetailsRequest> getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets helpers which sent original requests.
+     *
+     * @return List of helpers, one for each of {@link #getRequests()}.
+     */
+    @NonNull
+    List<IabHelperImpl> getHelpers() {
+        return helpers;
+    }
+
+    /**
+     * Marks original request as answered.
+     * <p>
+     * Can be called from any thread.
+     *
+     * @param index Index of the request in {@link #getRequests()}.
+     * @return True if this call answered the request, false if it was answered before.
+     */
+    boolean answer(final int index) {
+        return answered.compareAndSet(index, 0, 1);
+    }
+
+    /**
+     * Indicates whether every original request was already answered.
+     *
+     * @return True if nobody waits for response to this request, false otherwise.
+     */
+    boolean isAnswered() {
+        for (int i = 0; i < answered.length(); i++) {
+            if (answered.get(i) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cancels original requests sent by supplied helper which were not answered yet.
+     *
+     * @param helper Helper canceling its requests.
+     * @return List of canceled requests, each has to be answered by the caller.
+     */
+    @NonNull
+    List<SkuDetailsRequest> cancel(@NonNull final IabHelperImpl helper) {
+        final List<SkuDetailsRequest> canceled = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (helpers.get(i) == helper && answer(i)) {
+                canceled.add(requests.get(i));
+            }
+        }
+        return canceled;
+    }
+
+    /**
+     * Partitions response to this request into responses to original requests.
+     *
+     * @param response Response to this request.
+     * @return List of responses, one for each of {@link #getRequests()}.
+     */
+    @NonNull
+    List<SkuDetailsResponse> split(@NonNull final SkuDetailsResponse response) {
+        final Collection<SkuDetails> skusDetails = response.getSkusDetails();
+        final List<SkuDetailsResponse> responses = new ArrayList<>(requests.size());
+        for (final SkuDetailsRequest request : requests) {
+            final Set<String> skus = request.getSkus();
+            final Collection<SkuDetails> details = new ArrayList<>(skus.size());
+            for (final SkuDetails skuDetails : skusDetails) {
+                if (skus.contains(skuDetails.getSku())) {
+                    details.add(skuDetails);
+                }
+            }
+            responses.add(new SkuDetailsResponse(response.getStatus(), response.getProviderName(),
+                    details));
+        }
+        return responses;
+    }
+}
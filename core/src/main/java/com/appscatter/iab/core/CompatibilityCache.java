@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.billing.BillingProvider;
+import com.appscatter.iab.core.model.billing.Compatibility;
+import com.appscatter.iab.utils.ASLog;
+import com.appscatter.iab.utils.ASPackageIndex;
+import com.appscatter.iab.utils.ASPreferences;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persisted {@link Compatibility} verdicts of billing providers.
+ * <p>
+ * Verdicts expire after {@link #TTL} and are all dropped as soon as any package is installed,
+ * removed or updated, since that's what store availability depends on.
+ */
+final class CompatibilityCache {
+
+    private static final String NAME = "compatibility";
+    private static final String SUFFIX_TIME = ".time";
+    private static final long TTL = TimeUnit.DAYS.toMillis(1);
+
+    @NonNull
+    private final ASPreferences preferences;
+
+    CompatibilityCache(@NonNull final Context context) {
+        preferences = new ASPreferences(context, NAME);
+        ASPackageIndex.getInstance(context).addListener(
+                new ASPackageIndex.OnPackageChangeListener() {
+                    @Override
+                    public void onPackageChanged(@NonNull final String packageName) {
+                        ASLog.d("Package change, dropping compatibility cache: %s",
+                                packageName);
+                        preferences.clear();
+                    }
+                });
+    }
+
+    /**
+     * Gets cached verdict for the supplied provider.
+     *
+     * @param provider Provider to get verdict for.
+     * @return Compatibility of the provider, null if it's unknown or expired.
+     */
+    @Nullable
+    Integer get(@NonNull final BillingProvider provider) {
+        final String name = provider.getName();
+        final Long time = preferences.getLong(name + SUFFIX_TIME);
+        if (time == null) {
+            return null;
+        }
+        final long age = System.currentTimeMillis() - time;
+        if (age < 0 || age > TTL) {
+            return null;
+        }
+        return preferences.getInt(name);
+    }
+
+    /**
+     * Stores verdict for the supplied provider.
+     *
+     * @param provider      Provider which was checked.
+     * @param compatibility Compatibility of the provider.
+     */
+    void put(@NonNull final BillingProvider provider, @Compatibility final int compatibility) {
+        final String name = provider.getName();
+        preferences.put(name, compatibility);
+        preferences.put(name + SUFFIX_TIME, System.currentTimeMillis());
+    }
+}
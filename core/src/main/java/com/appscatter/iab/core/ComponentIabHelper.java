@@ -155,8 +155,8 @@ abstract class ComponentIabHelper extends AdvancedIabHelperImpl {
             }
         };
 
-        ASIab.getEvents(FragmentLifecycleEvent.class).observeOn(AndroidSchedulers.mainThread()).subscribe(mFragmentLifecycleEventObserver);
-        ASIab.getEvents(SupportFragmentLifecycleEvent.class).observeOn(AndroidSchedulers.mainThread()).subscribe(mSupportFragmentLifecycleEvent);
+        ASIab.getEvents(FragmentLifecycleEvent.class, AndroidSchedulers.mainThread()).subscribe(mFragmentLifecycleEventObserver);
+        ASIab.getEvents(SupportFragmentLifecycleEvent.class, AndroidSchedulers.mainThread()).subscribe(mSupportFragmentLifecycleEvent);
     }
 
     public void unregisterEvents() {
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.Configuration;
+import com.appscatter.iab.core.model.EventKeySelector;
+import com.appscatter.iab.core.model.EventOverflowPolicy;
+import com.appscatter.iab.core.model.EventQueueGauge;
+import com.appscatter.iab.core.model.event.ASEvent;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+
+/**
+ * Event bus which keeps a separate processor for every event type somebody subscribed to.
+ * <p>
+ * Posted event is delivered only to processors registered for its class or any of its supertypes,
+ * so the cost of {@link #post(ASEvent)} doesn't depend on the total number of subscribers.
+ * Resolved processors are cached per posted class and the cache is dropped whenever new event
+ * type is registered.
+ * <p>
+ * Subscriber queues are either unbounded or bounded according to {@link EventOverflowPolicy}
+ * supplied in {@link Configuration}.
+ */
+final class EventBus {
+
+    private static final FlowableProcessor<?>[] EMPTY = new FlowableProcessor<?>[0];
+
+    /**
+     * Processors indexed by subscribed event type.
+     */
+    private final Map<Class<?>, FlowableProcessor<?>> processors = new ConcurrentHashMap<>();
+    /**
+     * Processors interested in a posted event class, resolved on first post.
+     */
+    private final Map<Class<?>, FlowableProcessor<?>[]> dispatchCache = new ConcurrentHashMap<>();
+    /**
+     * Currently existing bounded subscriber queues.
+     */
+    private final Set<BoundedEventQueue<?>> queues =
+            Collections.newSetFromMap(new ConcurrentHashMap<BoundedEventQueue<?>, Boolean>());
+    private final Object lock = new Object();
+
+    @EventOverflowPolicy
+    private volatile int policy = EventOverflowPolicy.UNBOUNDED;
+    private volatile int capacity = Integer.MAX_VALUE;
+    @NonNull
+    private volatile EventKeySelector keySelector = EventKeySelector.DEFAULT;
+
+    /**
+     * Applies subscriber queue settings from supplied configuration.
+     * <p>
+     * Only subscriptions made after this call are affected.
+     *
+     * @param configuration Configuration object to take settings from.
+     */
+    void configure(@NonNull final Configuration configuration) {
+        this.keySelector = configuration.getEventKeySelector();
+        this.capacity = configuration.getEventQueueCapacity();
+        this.policy = configuration.getEventOverflowPolicy();
+    }
+
+    /**
+     * Gets stream of events of the supplied type delivered on the supplied scheduler.
+     *
+     * @param eventClass Type of events to receive.
+     * @param scheduler  Scheduler to deliver events on.
+     * @return Observable object, can't be null.
+     */
+    @NonNull
+    <T> Observable<T> events(@NonNull final Class<T> eventClass,
+            @NonNull final Scheduler scheduler) {
+        final FlowableProcessor<T> processor = processor(eventClass);
+        @EventOverflowPolicy final int policy = this.policy;
+        if (policy == EventOverflowPolicy.UNBOUNDED) {
+            return processor.toObservable().observeOn(scheduler);
+        }
+        final int capacity = this.capacity;
+        final EventKeySelector keySelector = this.keySelector;
+        return Observable.create(emitter -> {
+            final BoundedEventQueue<T> queue = new BoundedEventQueue<>(eventClass, policy,
+                    capacity, keySelector, emitter, scheduler.createWorker());
+            final Disposable disposable = processor.subscribe(queue);
+            queues.add(queue);
+            emitter.setCancellable(() -> {
+                disposable.dispose();
+                queue.dispose();
+                queues.remove(queue);
+            });
+        });
+    }
+
+    /**
+     * Gets state of all bounded subscriber queues.
+     *
+     * @return Collection of queue gauges, empty if queues are not bounded.
+     */
+    @NonNull
+    Collection<EventQueueGauge> getGauges() {
+        final Collection<EventQueueGauge> gauges = new ArrayList<>();
+        for (final BoundedEventQueue<?> queue : queues) {
+            gauges.add(queue.getGauge());
+        }
+        return gauges;
+    }
+
+    /**
+     * Gets processor delivering events of the supplied type, including all of its subtypes.
+     *
+     * @param eventClass Type of events to receive.
+     * @return Processor object, can't be null.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    <T> FlowableProcessor<T> processor(@NonNull final Class<T> eventClass) {
+        final FlowableProcessor<?> processor = processors.get(eventClass);
+        if (processor != null) {
+            return (FlowableProcessor<T>) processor;
+        }
+        synchronized (lock) {
+            FlowableProcessor<?> newProcessor = processors.get(eventClass);
+            if (newProcessor == null) {
+                newProcessor = PublishProcessor.<T>create().toSerialized();
+                processors.put(eventClass, newProcessor);
+                // New type might be a supertype of already resolved classes
+                dispatchCache.clear();
+            }
+            return (FlowableProcessor<T>) newProcessor;
+        }
+    }
+
+    /**
+     * Delivers supplied event to all processors interested in its type.
+     *
+     * @param event Event object to deliver.
+     */
+    @SuppressWarnings("unchecked")
+    void post(@NonNull final ASEvent event) {
+        for (final FlowableProcessor<?> processor : resolve(event.getClass())) {
+            ((FlowableProcessor<Object>) processor).onNext(event);
+        }
+    }
+
+    @NonNull
+    private FlowableProcessor<?>[] resolve(@NonNull final Class<?> eventClass) {
+        final FlowableProcessor<?>[] cached = dispatchCache.get(eventClass);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (lock) {
+            final List<FlowableProcessor<?>> resolved = new ArrayList<>();
+            for (final Class<?> type : getTypes(eventClass)) {
+                final FlowableProcessor<?> processor = processors.get(type);
+                if (processor != null) {
+                    resolved.add(processor);
+                }
+            }
+            final FlowableProcessor<?>[] array = resolved.isEmpty()
+                    ? EMPTY : resolved.toArray(new FlowableProcessor<?>[resolved.size()]);
+            dispatchCache.put(eventClass, array);
+            return array;
+        }
+    }
+
+    /**
+     * Collects supplied class, all its superclasses and all implemented interfaces.
+     */
+    @NonNull
+    private static Collection<Class<?>> getTypes(@NonNull final Class<?> eventClass) {
+        final Collection<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> clazz = eventClass; clazz != null; clazz = clazz.getSuperclass()) {
+            addWithInterfaces(types, clazz);
+        }
+        return types;
+    }
+
+    private static void addWithInterfaces(@NonNull final Collection<Class<?>> types,
+            @NonNull final Class<?> clazz) {
+        if (types.add(clazz)) {
+            for (final Class<?> interfaceClass : clazz.getInterfaces()) {
+                addWithInterfaces(types, interfaceClass);
+            }
+        }
+    }
+}
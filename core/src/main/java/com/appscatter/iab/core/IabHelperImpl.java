@@ -50,7 +50,37 @@ class IabHelperImpl implements IabHelper {
      * @see BillingBase
      */
     protected void postRequest(@NonNull final BillingRequest billingRequest) {
-        billingBase.postRequest(billingRequest);
+        BillingThread.execute(() -> executeRequest(billingRequest));
+    }
+
+    /**
+     * Gets number of requests this helper can send during a single {@link BillingRequestScheduler}
+     * turn.
+     *
+     * @return Weight of this helper.
+     */
+    int getWeight() {
+        return 1;
+    }
+
+    /**
+     * Called when one of this helper requests leaves {@link BillingRequestScheduler} queue.
+     *
+     * @param wait Time request spent in queue, in milliseconds.
+     */
+    void recordWait(final long wait) {
+        // Only helpers which schedule requests keep wait stats
+    }
+
+    /**
+     * Hands supplied billing request to {@link BillingBase}.
+     * <p>
+     * Always called from {@link BillingThread}.
+     *
+     * @param billingRequest BillingRequest to execute.
+     */
+    protected void executeRequest(@NonNull final BillingRequest billingRequest) {
+        billingBase.postRequest(this, billingRequest);
     }
 
     @Override
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.event.billing.InventoryRequest;
+
+/**
+ * {@link InventoryRequest} syncing {@link PurchaseLedger} with provider in background.
+ * <p>
+ * Listeners are not notified about this request and never receive its responses directly, they
+ * get {@link CachedInventoryResponse} instead if ledger has changed.
+ */
+final class InventorySyncRequest extends InventoryRequest {
+
+    InventorySyncRequest(final boolean startOver) {
+        super(startOver);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.billing.SkuDetails;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.util.BillingUtils;
+
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link SkuDetailsRequest} loading only SKUs which are missing from {@link SkuDetailsCache} or
+ * have to be revalidated.
+ * <p>
+ * Listeners never see this request, instead {@link BillingEventDispatcher} delivers the original
+ * request and a response completed with {@link #merge(SkuDetailsResponse)}. If original request
+ * was already answered from cache, this one is a revalidation and its response is delivered only
+ * if it changes any price.
+ *
+ * @see BillingBase
+ */
+final class PartialSkuDetailsRequest extends SkuDetailsRequest {
+
+    @NonNull
+    private final transient SkuDetailsRequest request;
+    @NonNull
+    private final transient Collection<SkuDetails> cached;
+    private final boolean revalidation;
+
+    PartialSkuDetailsRequest(@NonNull final SkuDetailsRequest request,
+            @NonNull final Set<String> skus,
+            @NonNull final Collection<SkuDetails> cached,
+            final boolean revalidation) {
+        super(BillingUtils.getActivity(request), request.isActivityHandlesResult(), skus);
+        this.request = request;
+        this.cached = Collections.unmodifiableCollection(cached);
+        this.revalidation = revalidation;
+    }
+
+    /**
+     * Gets request this one was reduced from.
+     *
+     * @return Original request, can't be null.
+     */
+    @NonNull
+    SkuDetailsRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Indicates whether original request was already answered with cached SKU details.
+     *
+     * @return True if this request only refreshes stale details, false otherwise.
+     */
+    boolean isRevalidation() {
+        return revalidation;
+    }
+
+    /**
+     * Checks whether supplied response changes any price already delivered to listeners.
+     *
+     * @param response Response to this request.
+     * @return True if any loaded price differs from cached one, false otherwise.
+     */
+    boolean isChanged(@NonNull final SkuDetailsResponse response) {
+        if (!response.isSuccessful()) {
+            return false;
+        }
+        final Map<String, SkuDetails> details = index(cached);
+        for (final SkuDetails loaded : response.getSkusDetails()) {
+            final SkuDetails skuDetails = details.get(loaded.getSku());
+            if (skuDetails == null || !TextUtils.equals(skuDetails.getPrice(), loaded.getPrice())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Completes response to this request with cached SKU details.
+     * <p>
+     * Loaded details replace cached ones of the same SKU.
+     *
+     * @param response Response to this request.
+     * @return Response to the original request, or supplied response if it's not successful.
+     */
+    @NonNull
+    SkuDetailsResponse merge(@NonNull final SkuDetailsResponse response) {
+        if (!response.isSuccessful()) {
+            return response;
+        }
+        final Map<String, SkuDetails> details = index(cached);
+        details.putAll(index(response.getSkusDetails()));
+        return new SkuDetailsResponse(response.getStatus(), response.getProviderName(),
+                details.values());
+    }
+
+    @NonNull
+    private static Map<String, SkuDetails> index(@NonNull final Collection<SkuDetails> details) {
+        final Map<String, SkuDetails> map = new LinkedHashMap<>();
+        for (final SkuDetails skuDetails : details) {
+            map.put(skuDetails.getSku(), skuDetails);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.billing.BillingProvider;
+import com.appscatter.iab.core.model.billing.Purchase;
+import com.appscatter.iab.core.model.event.billing.ConsumeResponse;
+import com.appscatter.iab.core.model.event.billing.InventoryResponse;
+import com.appscatter.iab.core.model.event.billing.PurchaseResponse;
+import com.appscatter.iab.core.verification.VerificationResult;
+import com.appscatter.iab.utils.ASLog;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local copy of verified purchases owned by user.
+ * <p>
+ * Ledger is updated from every successful inventory, purchase and consume response and is
+ * persisted in {@link PurchaseStore}. Purchases of the provider picked by the last setup are
+ * restored on initialization, so entitlements can be checked before setup is finished. Store is a
+ * plain preferences file, so restored purchases are verified again with
+ * {@link BillingProvider#verifyPurchase(Purchase)} and only those passing are used.
+ * <p>
+ * Once provider was synced completely, inventory requests starting over are answered from ledger
+ * right away while the provider is synced page by page in background. Ledger state is owned by
+ * {@link BillingThread}, purchases can be read from any thread.
+ *
+ * @see com.appscatter.iab.core.model.Configuration.Builder#setUsePurchaseLedger(boolean)
+ * @see ASIab#getPurchaseLedger()
+ */
+public final class PurchaseLedger {
+
+    private static PurchaseLedger instance;
+
+    @Nullable
+    private PurchaseStore store;
+    /**
+     * Providers from current configuration, used to verify restored purchases.
+     */
+    @NonNull
+    private Collection<BillingProvider> providers = Collections.emptyList();
+    @Nullable
+    private String providerName;
+    /**
+     * Owned purchases mapped by SKU, replaced on every change.
+     */
+    @NonNull
+    private volatile Map<String, Purchase> purchases = Collections.emptyMap();
+    private volatile boolean synced;
+    /**
+     * SKUs reported by provider since current sync was started, null if no sync is in progress.
+     */
+    @Nullable
+    private Set<String> seen;
+    /**
+     * SKUs of restored purchases which couldn't be verified, kept in store until next sync.
+     */
+    @NonNull
+    private Set<String> unverified = Collections.emptySet();
+
+    private PurchaseLedger() {
+        super();
+    }
+
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    static synchronized PurchaseLedger getInstance() {
+        if (instance == null) {
+            instance = new PurchaseLedger();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets storage used to persist purchases and restores purchases of the last used provider.
+     *
+     * @param store     PurchaseStore object, null to disable ledger.
+     * @param providers Providers from current configuration.
+     */
+    void setStore(@Nullable final PurchaseStore store,
+            @NonNull final Collection<BillingProvider> providers) {
+        BillingThread.check();
+        this.store = store;
+        this.providers = providers;
+        load(store == null ? null : find(store.getLastProvider()));
+    }
+
+    @Nullable
+    private BillingProvider find(@Nullable final String providerName) {
+        for (final BillingProvider billingProvider : providers) {
+            if (billingProvider.getName().equals(providerName)) {
+                return billingProvider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets provider which purchases are tracked.
+     * <p>
+     * Purchases of the last used provider are kept while setup is in progress. Restored purchases
+     * which couldn't be verified before are verified again.
+     *
+     * @param billingProvider Current billing provider, null if setup is not finished.
+     */
+    void setProvider(@Nullable final BillingProvider billingProvider) {
+        BillingThread.check();
+        seen = null;
+        final PurchaseStore store = this.store;
+        if (store == null || billingProvider == null) {
+            return;
+        }
+        final String name = billingProvider.getName();
+        if (!name.equals(providerName)) {
+            store.setLastProvider(name);
+            load(billingProvider);
+        } else if (!unverified.isEmpty()) {
+            // Provider might not have been initialized when purchases were restored
+            load(billingProvider);
+        }
+    }
+
+    /**
+     * Restores persisted purchases of the supplied provider, verifying each of them.
+     * <p>
+     * Purchases which failed verification are removed from store. Those which couldn't be
+     * verified are kept there, but ledger isn't considered synced until provider reports them.
+     *
+     * @param billingProvider Provider to restore purchases of, null to reset ledger.
+     */
+    private void load(@Nullable final BillingProvider billingProvider) {
+        final String providerName = billingProvider == null ? null : billingProvider.getName();
+        this.providerName = providerName;
+        seen = null;
+        unverified = Collections.emptySet();
+        final PurchaseStore store = this.store;
+        if (store == null || providerName == null) {
+            purchases = Collections.emptyMap();
+            synced = false;
+            return;
+        }
+        final Map<String, Purchase> map = new HashMap<>();
+        final Set<String> unverified = new HashSet<>();
+        for (final Purchase purchase : store.load(providerName)) {
+            final String sku = purchase.getSku();
+            @VerificationResult final int result = billingProvider.verifyPurchase(purchase);
+            if (result == VerificationResult.SUCCESS) {
+                map.put(sku, purchase);
+            } else if (result == VerificationResult.FAILED) {
+                ASLog.e("Restored purchase failed verification: " + sku);
+                store.remove(providerName, sku);
+            } else {
+                unverified.add(sku);
+            }
+        }
+        purchases = Collections.unmodifiableMap(map);
+        this.unverified = unverified;
+        synced = unverified.isEmpty() && store.isSynced(providerName);
+    }
+
+    /**
+     * Checks whether inventory of the supplied provider can be answered from ledger.
+     *
+     * @param providerName Name of the current provider.
+     * @return True if provider was synced completely at least once, false otherwise.
+     */
+    boolean canAnswer(@NonNull final String providerName) {
+        BillingThread.check();
+        return store != null && synced && providerName.equals(this.providerName);
+    }
+
+    /**
+     * Gets owned purchases along with their verification results.
+     * <p>
+     * Every purchase in ledger was verified either by provider or on restore.
+     *
+     * @return Inventory map, can't be null.
+     */
+    @NonNull
+    Map<Purchase, Integer> getInventory() {
+        final Map<String, Purchase> purchases = this.purchases;
+        final Map<Purchase, Integer> inventory = new HashMap<>(purchases.size() * 2);
+        for (final Purchase purchase : purchases.values()) {
+            inventory.put(purchase, VerificationResult.SUCCESS);
+        }
+        return inventory;
+    }
+
+    /**
+     * Starts sync, purchases not reported by provider until the last page are removed.
+     */
+    void startSync() {
+        BillingThread.check();
+        if (store != null && providerName != null) {
+            seen = new HashSet<>();
+        }
+    }
+
+    /**
+     * Applies single page of inventory loaded from provider.
+     * <p>
+     * Failed response stops current sync.
+     *
+     * @param response Inventory response from provider.
+     * @return True if ledger was changed, false otherwise.
+     */
+    boolean apply(@NonNull final InventoryResponse response) {
+        BillingThread.check();
+        final PurchaseStore store = this.store;
+        final String providerName = this.providerName;
+        if (store == null || providerName == null
+                || !providerName.equals(response.getProviderName())) {
+            return false;
+        }
+        if (!response.isSuccessful()) {
+            seen = null;
+            return false;
+        }
+        final Map<String, Purchase> map = new HashMap<>(purchases);
+        boolean changed = false;
+        for (final Map.Entry<Purchase, Integer> entry : response.getInventory().entrySet()) {
+            final Purchase purchase = entry.getKey();
+            final String sku = purchase.getSku();
+            final Integer verificationResult = entry.getValue();
+            if (verificationResult == null || verificationResult != VerificationResult.SUCCESS) {
+                if (map.remove(sku) != null) {
+                    store.remove(providerName, sku);
+                    changed = true;
+                }
+                continue;
+            }
+            if (seen != null) {
+                seen.add(sku);
+            }
+            if (!purchase.equals(map.put(sku, purchase))) {
+                store.put(providerName, purchase);
+                changed = true;
+            }
+        }
+        if (seen != null && !response.hasMore()) {
+            final Iterator<String> iterator = map.keySet().iterator();
+            while (iterator.hasNext()) {
+                final String sku = iterator.next();
+                if (!seen.contains(sku)) {
+                    iterator.remove();
+                    store.remove(providerName, sku);
+                    changed = true;
+                }
+            }
+            for (final String sku : unverified) {
+                if (!seen.contains(sku)) {
+                    store.remove(providerName, sku);
+                }
+            }
+            unverified = Collections.emptySet();
+            seen = null;
+            synced = true;
+            store.setSynced(providerName);
+            ASLog.d("Purchase ledger synced: %d purchases", map.size());
+        }
+        if (changed) {
+            purchases = Collections.unmodifiableMap(map);
+        }
+        return changed;
+    }
+
+    /**
+     * Adds purchase from successful and verified purchase response.
+     *
+     * @param response Purchase response from provider.
+     */
+    void add(@NonNull final PurchaseResponse response) {
+        BillingThread.check();
+        final Purchase purchase = response.getPurchase();
+        if (purchase == null || !response.isSuccessful()
+                || !isCurrent(response.getProviderName())) {
+            return;
+        }
+        final Map<String, Purchase> map = new HashMap<>(purchases);
+        map.put(purchase.getSku(), purchase);
+        purchases = Collections.unmodifiableMap(map);
+        // noinspection ConstantConditions
+        store.put(providerName, purchase);
+    }
+
+    /**
+     * Removes purchase consumed with successful consume response.
+     *
+     * @param response Consume response from provider.
+     */
+    void remove(@NonNull final ConsumeResponse response) {
+        BillingThread.check();
+        final String sku = response.getPurchase().getSku();
+        if (!response.isSuccessful() || !isCurrent(response.getProviderName())
+                || !purchases.containsKey(sku)) {
+            return;
+        }
+        final Map<String, Purchase> map = new HashMap<>(purchases);
+        map.remove(sku);
+        purchases = Collections.unmodifiableMap(map);
+        // noinspection ConstantConditions
+        store.remove(providerName, sku);
+    }
+
+    private boolean isCurrent(@Nullable final String providerName) {
+        return store != null && this.providerName != null && this.providerName.equals(providerName);
+    }
+
+    /**
+     * Checks whether user owns supplied SKU.
+     * <p>
+     * Can be called from any thread, doesn't involve billing provider.
+     *
+     * @param sku SKU to check.
+     * @return True if verified purchase of the SKU is in ledger, false otherwise.
+     */
+    public boolean isPurchased(@NonNull final String sku) {
+        return purchases.containsKey(sku);
+    }
+
+    /**
+     * Gets all purchases owned by user.
+     * <p>
+     * Can be called from any thread, doesn't involve billing provider.
+     *
+     * @return Unmodifiable collection of verified purchases, can't be null.
+     */
+    @NonNull
+    public Collection<Purchase> getPurchases() {
+        return purchases.values();
+    }
+
+    /**
+     * Indicates whether ledger was synced with current provider completely at least once.
+     *
+     * @return True if ledger holds complete inventory, false if some purchases might be missing.
+     */
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * Removes all purchases, next inventory requests are sent to provider until it's synced again.
+     */
+    public void clear() {
+        BillingThread.execute(() -> {
+            purchases = Collections.emptyMap();
+            synced = false;
+            seen = null;
+            unverified = Collections.emptySet();
+            if (store != null) {
+                store.clear();
+                if (providerName != null) {
+                    store.setLastProvider(providerName);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.billing.Purchase;
+import com.appscatter.iab.core.model.billing.SignedPurchase;
+import com.appscatter.iab.utils.ASLog;
+import com.appscatter.iab.utils.ASPreferences;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Persisted verified {@link Purchase}s of every billing provider.
+ * <p>
+ * Every record is keyed by provider name and SKU. Store also remembers which providers were synced
+ * completely at least once and which provider was picked by the last setup.
+ *
+ * @see PurchaseLedger
+ */
+final class PurchaseStore {
+
+    private static final String NAME = "purchase_ledger";
+    private static final char KEY_SEPARATOR = '/';
+    private static final String KEY_LAST_PROVIDER = "last_provider";
+    private static final String KEY_SYNCED = "synced:";
+    private static final String NAME_TYPE = "type";
+    private static final String NAME_ORIGINAL_JSON = "original_json";
+    private static final String NAME_TOKEN = "token";
+    private static final String NAME_PURCHASE_TIME = "purchase_time";
+    private static final String NAME_CANCELED = "canceled";
+    private static final String NAME_SIGNATURE = "signature";
+
+    @NonNull
+    private final ASPreferences preferences;
+
+    PurchaseStore(@NonNull final Context context) {
+        preferences = new ASPreferences(context, NAME);
+    }
+
+    /**
+     * Loads all purchases of the supplied provider.
+     * <p>
+     * Malformed records are removed.
+     *
+     * @param providerName Name of the provider purchases were made with.
+     * @return Collection of purchases, can't be null.
+     */
+    @NonNull
+    Collection<Purchase> load(@NonNull final String providerName) {
+        final String prefix = providerName + KEY_SEPARATOR;
+        final Collection<Purchase> purchases = new ArrayList<>();
+        for (final Map.Entry<String, ?> entry : preferences.getPreferences().getAll().entrySet()) {
+            final String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            final String sku = key.substring(prefix.length());
+            final Purchase purchase = parse(providerName, sku, String.valueOf(entry.getValue()));
+            if (purchase == null) {
+                preferences.remove(key);
+            } else {
+                purchases.add(purchase);
+            }
+        }
+        ASLog.d("Loaded %d persisted purchases of %s", purchases.size(), providerName);
+        return purchases;
+    }
+
+    /**
+     * Stores supplied purchase, replacing previous record of the same SKU.
+     *
+     * @param providerName Name of the provider purchase was made with.
+     * @param purchase     Verified purchase.
+     */
+    void put(@NonNull final String providerName, @NonNull final Purchase purchase) {
+        final JSONObject jsonObject = new JSONObject();
+        try {
+            jsonObject.put(NAME_TYPE, purchase.getType());
+            jsonObject.putOpt(NAME_ORIGINAL_JSON, purchase.getOriginalJson());
+            jsonObject.putOpt(NAME_TOKEN, purchase.getToken());
+            jsonObject.put(NAME_PURCHASE_TIME, purchase.getPurchaseTime());
+            jsonObject.put(NAME_CANCELED, purchase.isCanceled());
+            if (purchase instanceof SignedPurchase) {
+                jsonObject.putOpt(NAME_SIGNATURE, ((SignedPurchase) purchase).getSignature());
+            }
+        } catch (JSONException exception) {
+            ASLog.e("", exception);
+            return;
+        }
+        preferences.put(providerName + KEY_SEPARATOR + purchase.getSku(), jsonObject.toString());
+    }
+
+    /**
+     * Removes record of the supplied SKU.
+     *
+     * @param providerName Name of the provider purchase was made with.
+     * @param sku          SKU of the purchase to remove.
+     */
+    void remove(@NonNull final String providerName, @NonNull final String sku) {
+        preferences.remove(providerName + KEY_SEPARATOR + sku);
+    }
+
+    /**
+     * Indicates whether purchases of the supplied provider were synced completely at least once.
+     *
+     * @param providerName Name of the provider to check.
+     * @return True if provider was synced, false otherwise.
+     */
+    boolean isSynced(@NonNull final String providerName) {
+        return preferences.getBoolean(KEY_SYNCED + providerName, false);
+    }
+
+    /**
+     * Marks purchases of the supplied provider as synced completely.
+     *
+     * @param providerName Name of the synced provider.
+     */
+    void setSynced(@NonNull final String providerName) {
+        preferences.put(KEY_SYNCED + providerName, true);
+    }
+
+    /**
+     * Gets name of the provider picked by the last setup.
+     *
+     * @return Provider name, null if setup has never succeeded.
+     */
+    @Nullable
+    String getLastProvider() {
+        return preferences.getString(KEY_LAST_PROVIDER);
+    }
+
+    /**
+     * Remembers name of the provider picked by setup.
+     *
+     * @param providerName Name of the current provider.
+     */
+    void setLastProvider(@NonNull final String providerName) {
+        preferences.put(KEY_LAST_PROVIDER, providerName);
+    }
+
+    /**
+     * Removes all records.
+     */
+    void clear() {
+        preferences.clear();
+    }
+
+    @Nullable
+    private static Purchase parse(@NonNull final String providerName,
+            @NonNull final String sku,
+            @NonNull final String json) {
+        try {
+            final JSONObject jsonObject = new JSONObject(json);
+            final String signature = jsonObject.optString(NAME_SIGNATURE, null);
+            if (signature == null) {
+                return new Purchase.Builder(sku)
+                        .setType(jsonObject.getInt(NAME_TYPE))
+                        .setProviderName(providerName)
+                        .setOriginalJson(jsonObject.optString(NAME_ORIGINAL_JSON, null))
+                        .setToken(jsonObject.optString(NAME_TOKEN, null))
+                        .setPurchaseTime(jsonObject.getLong(NAME_PURCHASE_TIME))
+                        .setCanceled(jsonObject.getBoolean(NAME_CANCELED))
+                        .build();
+            }
+            return new SignedPurchase.Builder(sku)
+                    .setSignature(signature)
+                    .setType(jsonObject.getInt(NAME_TYPE))
+                    .setProviderName(providerName)
+                    .setOriginalJson(jsonObject.optString(NAME_ORIGINAL_JSON, null))
+                    .setToken(jsonObject.optString(NAME_TOKEN, null))
+                    .setPurchaseTime(jsonObject.getLong(NAME_PURCHASE_TIME))
+                    .setCanceled(jsonObject.getBoolean(NAME_CANCELED))
+                    .build();
+        } catch (JSONException exception) {
+            ASLog.e("", exception);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.billing.BillingProvider;
+import com.appscatter.iab.core.billing.RequestDeadline;
+import com.appscatter.iab.core.model.event.billing.BillingRequest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Single {@link BillingRequest} being executed by {@link BillingProvider}.
+ * <p>
+ * Execution is finished exactly once, either by the first response bound to it or by
+ * {@link BillingBase} when request is canceled or misses its deadline. Any response bound to
+ * finished execution is late and gets dropped.
+ */
+final class RequestExecution {
+
+    private static final ThreadLocal<RequestExecution> CURRENT = new ThreadLocal<>();
+
+    @NonNull
+    private final BillingRequest request;
+    @NonNull
+    private final Collection<IabHelperImpl> helpers;
+    private final long order;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final AtomicBoolean handled = new AtomicBoolean();
+    private volatile boolean returned;
+    @Nullable
+    private volatile Disposable task;
+    @Nullable
+    private Disposable deadline;
+    /**
+     * Time request has to be handled by in {@link android.os.SystemClock#elapsedRealtime()} base,
+     * 0 if request has no deadline.
+     */
+    private volatile long deadlineAt;
+
+    /**
+     * Creates new execution.
+     *
+     * @param request Request to execute.
+     * @param helpers Helpers which sent the request, several if it was merged from their requests.
+     * @param order   Position of this execution among all started ones.
+     */
+    RequestExecution(@NonNull final BillingRequest request,
+            @NonNull final Collection<IabHelperImpl> helpers, final long order) {
+        this.request = request;
+        this.helpers = helpers;
+        this.order = order;
+    }
+
+    /**
+     * Gets execution current thread is handling on behalf of the provider.
+     *
+     * @return RequestExecution object, null if current thread doesn't execute any request.
+     */
+    @Nullable
+    static RequestExecution current() {
+        return CURRENT.get();
+    }
+
+    @NonNull
+    BillingRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Checks whether supplied helper sent the request, alone or as a part of merged request.
+     *
+     * @param helper Helper to check.
+     * @return True if request is executed on behalf of supplied helper, false otherwise.
+     */
+    boolean isSentBy(@NonNull final IabHelperImpl helper) {
+        return helpers.contains(helper);
+    }
+
+    /**
+     * Gets position of this execution among all executions started by {@link BillingBase}.
+     *
+     * @return Number growing with every started execution.
+     */
+    long getOrder() {
+        return order;
+    }
+
+    /**
+     * Hands request to supplied provider, blocks until provider is done with it.
+     *
+     * @param billingProvider Provider to execute request with, can be null.
+     */
+    void execute(@Nullable final BillingProvider billingProvider) {
+        CURRENT.set(this);
+        RequestDeadline.set(deadlineAt);
+        try {
+            if (billingProvider != null) {
+                billingProvider.onBillingRequest(request);
+            }
+        } finally {
+            CURRENT.remove();
+            RequestDeadline.clear();
+            returned = true;
+        }
+    }
+
+    /**
+     * Marks execution as finished.
+     *
+     * @return True if this call finished execution, false if it was finished before.
+     */
+    boolean finish() {
+        return finished.compareAndSet(false, true);
+    }
+
+    boolean isFinished() {
+        return finished.get();
+    }
+
+    /**
+     * Indicates whether provider has returned from {@link #execute(BillingProvider)}.
+     *
+     * @return True if provider is done with the request, false otherwise.
+     */
+    boolean isReturned() {
+        return returned;
+    }
+
+    /**
+     * Marks execution as handled, releasing its slot.
+     *
+     * @return True if this call handled execution, false if it was handled before.
+     */
+    boolean handle() {
+        return handled.compareAndSet(false, true);
+    }
+
+    void setTask(@NonNull final Disposable task) {
+        this.task = task;
+    }
+
+    /**
+     * Sets pending deadline check.
+     *
+     * @param deadline   Task finishing execution once deadline is missed.
+     * @param deadlineAt Time of the deadline in {@link android.os.SystemClock#elapsedRealtime()}
+     *                   base.
+     */
+    void setDeadline(@NonNull final Disposable deadline, final long deadlineAt) {
+        this.deadline = deadline;
+        this.deadlineAt = deadlineAt;
+    }
+
+    /**
+     * Cancels pending deadline check.
+     */
+    void cancelDeadline() {
+        if (deadline != null) {
+            deadline.dispose();
+        }
+    }
+
+    /**
+     * Interrupts provider thread if it's still busy with the request.
+     */
+    void interrupt() {
+        final Disposable task = this.task;
+        if (task != null) {
+            task.dispose();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.event.billing.BillingRequest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * {@link RequestExecution}s in flight, keyed by identity of their requests.
+ * <p>
+ * Equal requests, e.g. SKU details of the same SKUs sent by different helpers, can be executed
+ * concurrently and each of them keeps its own execution. Modified only from {@link BillingThread},
+ * can be read from any thread.
+ */
+final class RequestExecutions {
+
+    /**
+     * Executions mapped by request, replaced on every change.
+     */
+    @NonNull
+    private volatile Map<BillingRequest, RequestExecution> executions = Collections.emptyMap();
+
+    /**
+     * Adds supplied execution, keyed by its request.
+     *
+     * @param execution Execution to add.
+     */
+    void put(@NonNull final RequestExecution execution) {
+        final Map<BillingRequest, RequestExecution> map = new IdentityHashMap<>(executions);
+        map.put(execution.getRequest(), execution);
+        executions = map;
+    }
+
+    /**
+     * Gets execution of the supplied request.
+     *
+     * @param billingRequest Exactly the request which is executed.
+     * @return RequestExecution object, null if supplied request is not executed.
+     */
+    @Nullable
+    RequestExecution get(@NonNull final BillingRequest billingRequest) {
+        return executions.get(billingRequest);
+    }
+
+    /**
+     * Removes execution of the supplied request.
+     *
+     * @param billingRequest Exactly the request which is executed.
+     * @return Removed execution, null if supplied request was not executed.
+     */
+    @Nullable
+    RequestExecution remove(@NonNull final BillingRequest billingRequest) {
+        final Map<BillingRequest, RequestExecution> executions = this.executions;
+        if (!executions.containsKey(billingRequest)) {
+            return null;
+        }
+        final Map<BillingRequest, RequestExecution> map = new IdentityHashMap<>(executions);
+        final RequestExecution execution = map.remove(billingRequest);
+        this.executions = map;
+        return execution;
+    }
+
+    /**
+     * Checks whether request equal to the supplied one is being executed.
+     *
+     * @param billingRequest Request to check.
+     * @return True if equal request, or partial request loading it, is executed, false otherwise.
+     */
+    boolean contains(@NonNull final BillingRequest billingRequest) {
+        for (final BillingRequest request : executions.keySet()) {
+            if (request.equals(billingRequest) || request instanceof PartialSkuDetailsRequest
+                    && ((PartialSkuDetailsRequest) request).getRequest().equals(billingRequest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets all executions in flight.
+     *
+     * @return Unmodifiable snapshot of executions, can't be null.
+     */
+    @NonNull
+    Collection<RequestExecution> values() {
+        return Collections.unmodifiableCollection(executions.values());
+    }
+
+    int size() {
+        return executions.size();
+    }
+
+    boolean isEmpty() {
+        return executions.isEmpty();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.listener.BillingListener;
+import com.appscatter.iab.core.model.event.billing.BillingEventType;
+import com.appscatter.iab.core.model.event.billing.BillingResponse;
+import com.appscatter.iab.core.model.event.billing.ConsumeResponse;
+import com.appscatter.iab.core.model.event.billing.InventoryResponse;
+import com.appscatter.iab.core.model.event.billing.PurchaseResponse;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Handler chains of every {@link BillingResponse} type.
+ * <p>
+ * Chains are rebuilt only when listeners change. Every chain first calls
+ * {@link BillingListener#onResponse(BillingResponse)} of all listeners and then their typed
+ * callback, dispatch itself doesn't resolve, cast listeners or allocate anything.
+ */
+final class ResponseDispatchTable {
+
+    private static final int RESPONSE_TYPES = 4;
+    private static final ResponseHandler[] EMPTY = new ResponseHandler[0];
+
+    @NonNull
+    private volatile ResponseHandler[][] chains = {EMPTY, EMPTY, EMPTY, EMPTY};
+
+    /**
+     * Rebuilds handler chains for the supplied listeners.
+     *
+     * @param listeners Listeners in delivery order, every element is a {@link BillingListener}.
+     */
+    void rebuild(@NonNull final Object[] listeners) {
+        final int count = listeners.length;
+        final ResponseHandler[][] chains = new ResponseHandler[RESPONSE_TYPES][count * 2];
+        for (int i = 0; i < count; i++) {
+            final BillingListener listener = (BillingListener) listeners[i];
+            final ResponseHandler onResponse = listener::onResponse;
+            for (int type = 0; type < RESPONSE_TYPES; type++) {
+                chains[type][i] = onResponse;
+            }
+            chains[BillingEventType.CONSUME][count + i] =
+                    response -> listener.onConsume((ConsumeResponse) response);
+            chains[BillingEventType.PURCHASE][count + i] =
+                    response -> listener.onPurchase((PurchaseResponse) response);
+            chains[BillingEventType.SKU_DETAILS][count + i] =
+                    response -> listener.onSkuDetails((SkuDetailsResponse) response);
+            chains[BillingEventType.INVENTORY][count + i] =
+                    response -> listener.onInventory((InventoryResponse) response);
+        }
+        this.chains = chains;
+    }
+
+    /**
+     * Delivers supplied response to its handler chain.
+     *
+     * @param billingResponse Response to deliver.
+     */
+    void dispatch(@NonNull final BillingResponse billingResponse) {
+        @BillingEventType final int type = billingResponse.getType();
+        final ResponseHandler[][] chains = this.chains;
+        if (type < 0 || type >= chains.length) {
+            throw new IllegalStateException();
+        }
+        final ResponseHandler[] chain = chains[type];
+        for (int i = 0; i < chain.length; i++) {
+            chain[i].handle(billingResponse);
+        }
+    }
+
+    /**
+     * Single step of response delivery.
+     */
+    private interface ResponseHandler {
+
+        void handle(@NonNull final BillingResponse billingResponse);
+    }
+}
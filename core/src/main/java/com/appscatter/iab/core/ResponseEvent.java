@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.event.ASEvent;
+import com.appscatter.iab.core.model.event.billing.BillingRequest;
+import com.appscatter.iab.core.model.event.billing.BillingResponse;
+
+import android.support.annotation.NonNull;
+
+/**
+ * {@link BillingResponse} bound to the {@link BillingRequest} it answers.
+ * <p>
+ * Intended for internal usage. {@link BillingBase} posts one for every response it accepts, plain
+ * response is published right after it.
+ *
+ * @see ASIab#post(ASEvent)
+ */
+final class ResponseEvent implements ASEvent {
+
+    @NonNull
+    private final BillingRequest request;
+    @NonNull
+    private final BillingResponse response;
+
+    ResponseEvent(@NonNull final BillingRequest request, @NonNull final BillingResponse response) {
+        this.request = request;
+        this.response = response;
+    }
+
+    /**
+     * Gets request supplied response answers.
+     *
+     * @return BillingRequest object, as it was posted by {@link BillingBase}.
+     */
+    @NonNull
+    BillingRequest getRequest() {
+        return request;
+    }
+
+    @NonNull
+    BillingResponse getResponse() {
+        return response;
+    }
+}
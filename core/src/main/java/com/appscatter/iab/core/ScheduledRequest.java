@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.RequestPriorityPolicy;
+import com.appscatter.iab.core.model.event.billing.BillingRequest;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+/**
+ * Pending {@link BillingRequest} waiting in {@link BillingRequestScheduler}.
+ * <p>
+ * Rank is resolved once when request is scheduled. Since every waiting request ages at the same
+ * rate, comparing priority scaled by aging period minus enqueue time gives the same order as
+ * comparing aged priorities at any later moment.
+ */
+final class ScheduledRequest implements Comparable<ScheduledRequest> {
+
+    private static long counter;
+
+    @NonNull
+    private final BillingRequest request;
+    private final long enqueuedAt;
+    private final long rank;
+    private final long sequence;
+
+    /**
+     * Creates scheduled request enqueued at the supplied time.
+     *
+     * @param request    Request waiting for execution.
+     * @param policy     Policy to rank request with.
+     * @param enqueuedAt Time in {@link SystemClock#elapsedRealtime()} base.
+     */
+    ScheduledRequest(@NonNull final BillingRequest request,
+            @NonNull final RequestPriorityPolicy policy,
+            final long enqueuedAt) {
+        this.request = request;
+        this.enqueuedAt = enqueuedAt;
+        this.sequence = counter++;
+        final int priority = policy.getPriority(request);
+        final long agingPeriod = policy.getAgingPeriod();
+        this.rank = agingPeriod > 0 ? priority * agingPeriod - enqueuedAt : priority;
+    }
+
+    @NonNull
+    BillingRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Gets time when request was scheduled.
+     *
+     * @return Time in {@link SystemClock#elapsedRealtime()} base.
+     */
+    long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    @Override
+    public int compareTo(@NonNull final ScheduledRequest other) {
+        if (rank != other.rank) {
+            return rank > other.rank ? -1 : 1;
+        }
+        return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+    }
+
+    @Override
+    public String toString() {
+        return request.toString();
+    }
+}
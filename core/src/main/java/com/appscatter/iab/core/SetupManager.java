@@ -18,24 +18,30 @@
 package com.appscatter.iab.core;
 
 import com.appscatter.iab.core.billing.BillingProvider;
+import com.appscatter.iab.core.billing.RequestDeadline;
 import com.appscatter.iab.core.model.Configuration;
 import com.appscatter.iab.core.model.billing.Compatibility;
 import com.appscatter.iab.core.model.event.SetupResponse;
 import com.appscatter.iab.core.model.event.SetupStartedEvent;
-import com.appscatter.iab.utils.ASChecks;
 import com.appscatter.iab.utils.ASLog;
 import com.appscatter.iab.utils.ASPreferences;
 import com.appscatter.iab.utils.permissions.ASPermissions;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import java.util.Collection;
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
 
 import static com.appscatter.iab.core.model.event.SetupResponse.Status.FAILED;
 import static com.appscatter.iab.core.model.event.SetupResponse.Status.PROVIDER_CHANGED;
@@ -45,6 +51,10 @@ import static com.appscatter.iab.core.model.event.SetupResponse.Status.SUCCESS;
  * This class tries to pick one {@link BillingProvider} from those available from
  * {@link Configuration#getProviders()}.
  * <p>
+ * All providers are probed concurrently, setup is bounded by
+ * {@link Configuration#getSetupDeadline()}. If cached verdicts are enough to pick a provider,
+ * setup finishes right away and providers are probed again in background.
+ * <p>
  * Providers are picked according to this priority rules:
  * <ul>
  * <li> Only available providers will be considered, according to {@link BillingProvider#isAvailable()}.
@@ -59,9 +69,26 @@ import static com.appscatter.iab.core.model.event.SetupResponse.Status.SUCCESS;
 final class SetupManager {
 
     private static final String KEY_LAST_PROVIDER = "last_provider";
+    /**
+     * Verdict of a provider which wasn't probed yet.
+     */
+    static final int UNKNOWN = -1;
+    /**
+     * Result of {@link #pick(int[], int, boolean)} when no provider is suitable.
+     */
+    static final int NONE = -2;
+    /**
+     * Result of {@link #pick(int[], int, boolean)} when more verdicts are required.
+     */
+    static final int UNDECIDED = -3;
 
     private static SetupManager instance;
     private final ASPreferences preferences;
+    private final CompatibilityCache compatibilityCache;
+    /**
+     * Incremented on every setup, used to discard outdated background revalidation.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
     /**
      * Flag indicating whether setup process is happening at the moment.
      */
@@ -77,11 +104,11 @@ final class SetupManager {
     private SetupManager(@NonNull final Context context) {
         super();
         preferences = new ASPreferences(context);
+        compatibilityCache = new CompatibilityCache(context);
     }
 
-    @SuppressWarnings({"PMD.NonThreadSafeSingleton"})
-    static SetupManager getInstance(@NonNull final Context context) {
-        ASChecks.checkThread(true);
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    static synchronized SetupManager getInstance(@NonNull final Context context) {
         if (instance == null) {
             instance = new SetupManager(context);
         }
@@ -89,70 +116,217 @@ final class SetupManager {
     }
 
     /**
-     * Filters out unavailable {@link BillingProvider}s.
+     * Gets already created instance.
      *
-     * @param providers Providers to filter.
-     * @return Collection of available providers.
+     * @see #getInstance(Context)
      */
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
     @NonNull
-    public Iterable<BillingProvider> getAvailable(
-            @NonNull final Iterable<BillingProvider> providers) {
-        final Collection<BillingProvider> availableProviders = new LinkedHashSet<>();
-        for (final BillingProvider provider : providers) {
+    static synchronized SetupManager getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("SetupManager is not created yet.");
+        }
+        return instance;
+    }
+
+    /**
+     * Checks whether supplied provider can be used.
+     * <p>
+     * Called on a background thread, concurrently for all providers.
+     *
+     * @param provider Provider to check.
+     * @param deadline Setup deadline in {@link SystemClock#elapsedRealtime()} base, blocking calls
+     *                 made by the provider don't wait past it.
+     * @return Compatibility of the provider, {@link Compatibility#INCOMPATIBLE} if it's unavailable.
+     */
+    @Compatibility
+    private int probe(@NonNull final BillingProvider provider, final long deadline) {
+        @Compatibility final int compatibility;
+        RequestDeadline.set(deadline);
+        try {
             if (provider.isAvailable()) {
-                availableProviders.add(provider);
+                compatibility = provider.checkCompatibility();
+            } else {
+                compatibility = Compatibility.INCOMPATIBLE;
             }
+        } finally {
+            RequestDeadline.clear();
         }
-        return availableProviders;
+        ASLog.d("Checking provider: %s, compatibility: %s", provider.getName(), compatibility);
+        compatibilityCache.put(provider, compatibility);
+        return compatibility;
     }
 
-    @SuppressWarnings({"PMD.NPathComplexity", "PMD.AvoidDeeplyNestedIfStmts"})
-    @NonNull
-    private SetupResponse newResponse(@NonNull final SetupStartedEvent setupStartedEvent) {
-        ASLog.logMethod(setupStartedEvent);
-
-        final Configuration configuration = setupStartedEvent.getConfiguration();
-        final Iterable<BillingProvider> providers = configuration.getProviders();
-        final Iterable<BillingProvider> availableProviders = getAvailable(providers);
-
-        final boolean hadProvider = preferences.contains(KEY_LAST_PROVIDER);
-        if (hadProvider) {
-            // Try previously used provider
-            final String lastProvider = preferences.getString(KEY_LAST_PROVIDER, "");
-            ASLog.d("Previous provider: %s", lastProvider);
-            for (final BillingProvider provider : availableProviders) {
-                if (lastProvider.equals(provider.getName())) {
-                    // Use last provider if it's compatible.
-                    if (provider.checkCompatibility() != Compatibility.INCOMPATIBLE) {
-                        return new SetupResponse(configuration, SUCCESS, provider);
-                    }
-                    break;
+    /**
+     * Picks provider according to priority rules, using verdicts known so far.
+     *
+     * @param verdicts  Compatibility of every provider or {@link #UNKNOWN} if it's not probed yet.
+     * @param lastIndex Index of previously used provider, -1 if there's none.
+     * @param complete  True if no more verdicts are expected, unknown are treated as incompatible.
+     * @return Index of picked provider, {@link #UNDECIDED} if more verdicts are required or
+     * {@link #NONE} if no provider is suitable.
+     */
+    static int pick(@NonNull final int[] verdicts, final int lastIndex,
+            final boolean complete) {
+        if (lastIndex >= 0) {
+            final int verdict = verdicts[lastIndex];
+            if (verdict == UNKNOWN && !complete) {
+                return UNDECIDED;
+            }
+            if (verdict != UNKNOWN && verdict != Compatibility.INCOMPATIBLE) {
+                // Use last provider if it's compatible.
+                return lastIndex;
+            }
+        }
+        int compatibleIndex = NONE;
+        for (int i = 0; i < verdicts.length; i++) {
+            final int verdict = verdicts[i];
+            if (verdict == UNKNOWN) {
+                if (!complete) {
+                    // This one still might be preferred
+                    return UNDECIDED;
                 }
+            } else if (verdict == Compatibility.PREFERRED) {
+                return i;
+            } else if (verdict == Compatibility.COMPATIBLE && compatibleIndex == NONE) {
+                compatibleIndex = i;
             }
         }
+        return compatibleIndex;
+    }
 
-        // Use appropriate success status
-        final SetupResponse.Status successStatus = hadProvider ? PROVIDER_CHANGED : SUCCESS;
-
-        BillingProvider compatibleProvider = null;
-        for (final BillingProvider provider : availableProviders) {
-            @Compatibility final int compatibility = provider.checkCompatibility();
-            ASLog.d("Checking provider: %s, compatibility: %s", provider.getName(), compatibility);
-            if (compatibility == Compatibility.PREFERRED) {
-                // Pick preferred provider
-                return new SetupResponse(configuration, successStatus, provider);
-            } else if (compatibility == Compatibility.COMPATIBLE && compatibleProvider == null) {
-                compatibleProvider = provider;
+    /**
+     * Gets index of previously used provider.
+     *
+     * @param providers Configured providers.
+     * @return Index of the last used provider, -1 if there's none.
+     */
+    private int getLastIndex(@NonNull final List<BillingProvider> providers) {
+        if (!preferences.contains(KEY_LAST_PROVIDER)) {
+            return -1;
+        }
+        final String lastProvider = preferences.getString(KEY_LAST_PROVIDER, "");
+        ASLog.d("Previous provider: %s", lastProvider);
+        for (int i = 0; i < providers.size(); i++) {
+            if (lastProvider.equals(providers.get(i).getName())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Picks provider using only cached verdicts.
+     *
+     * @return Index of picked provider, {@link #NONE} or {@link #UNDECIDED} if cache is not enough.
+     */
+    private int pickCached(@NonNull final List<BillingProvider> providers, final int lastIndex) {
+        final int size = providers.size();
+        final int[] verdicts = new int[size];
+        for (int i = 0; i < size; i++) {
+            final Integer verdict = compatibilityCache.get(providers.get(i));
+            verdicts[i] = verdict == null ? UNKNOWN : verdict;
+        }
+        return pick(verdicts, lastIndex, false);
+    }
+
+    /**
+     * Probes all providers at once, setup takes as long as the slowest relevant probe.
+     *
+     * @param verdicts Array to collect verdicts to, providers not probed in time are left
+     *                 {@link #UNKNOWN}.
+     * @return Index of picked provider or {@link #NONE}.
+     */
+    private int pickProbed(@NonNull final Configuration configuration,
+            @NonNull final List<BillingProvider> providers,
+            final int lastIndex,
+            @NonNull final int[] verdicts) {
+        final int size = providers.size();
+        Arrays.fill(verdicts, UNKNOWN);
+        final BlockingQueue<int[]> results = new LinkedBlockingQueue<>();
+        final long deadline = SystemClock.elapsedRealtime() + configuration.getSetupDeadline();
+        for (int i = 0; i < size; i++) {
+            final int index = i;
+            final BillingProvider provider = providers.get(i);
+            Schedulers.io().scheduleDirect(() ->
+                    results.add(new int[]{index, probe(provider, deadline)}));
+        }
+
+        int pending = size;
+        int index;
+        while ((index = pick(verdicts, lastIndex, pending == 0)) == UNDECIDED) {
+            final long timeout = deadline - SystemClock.elapsedRealtime();
+            int[] result = null;
+            try {
+                result = timeout > 0 ? results.poll(timeout, TimeUnit.MILLISECONDS) : null;
+            } catch (InterruptedException exception) {
+                ASLog.e("", exception);
+                Thread.currentThread().interrupt();
+            }
+            if (result == null) {
+                ASLog.e("Setup deadline passed, %d providers weren't probed.", pending);
+                return pick(verdicts, lastIndex, true);
             }
+            verdicts[result[0]] = result[1];
+            pending--;
         }
+        return index;
+    }
+
+    @NonNull
+    private static SetupResponse newResponse(@NonNull final Configuration configuration,
+            @NonNull final List<BillingProvider> providers,
+            final int lastIndex,
+            final int index,
+            final boolean hadProvider) {
+        if (index == NONE) {
+            // No suitable provider was found
+            return new SetupResponse(configuration, FAILED, null);
+        }
+        // Use appropriate success status
+        final SetupResponse.Status status = index == lastIndex || !hadProvider
+                ? SUCCESS : PROVIDER_CHANGED;
+        return new SetupResponse(configuration, status, providers.get(index));
+    }
 
-        // Pick first compatible provider
-        if (compatibleProvider != null) {
-            return new SetupResponse(configuration, successStatus, compatibleProvider);
+    /**
+     * Probes providers again after setup was finished from cache.
+     * <p>
+     * Setup is started again only if a different compatible provider is picked while the one in
+     * use, if any, was still found compatible. Probe that failed or missed the deadline keeps
+     * current provider, if it's really gone its requests fail and trigger auto-recovery instead.
+     */
+    private void revalidate(@NonNull final Configuration configuration,
+            @NonNull final List<BillingProvider> providers,
+            final int lastIndex,
+            final int cachedIndex,
+            final int setupGeneration) {
+        final int[] verdicts = new int[providers.size()];
+        final int index = pickProbed(configuration, providers, lastIndex, verdicts);
+        if (index == cachedIndex || setupGeneration != generation.get()) {
+            return;
         }
+        final int verdict = cachedIndex == NONE ? Compatibility.COMPATIBLE : verdicts[cachedIndex];
+        if (index == NONE || verdict == UNKNOWN || verdict == Compatibility.INCOMPATIBLE) {
+            ASLog.d("Provider revalidation inconclusive, keeping current setup.");
+            return;
+        }
+        ASLog.d("Cached compatibility is outdated, starting setup again.");
+        // Probes have refreshed the cache, so new setup is decided from it right away
+        BillingThread.execute(() -> {
+            if (setupGeneration == generation.get()) {
+                startSetup(configuration);
+            }
+        });
+    }
 
-        // No suitable provider was found
-        return new SetupResponse(configuration, FAILED, null);
+    private void post(@NonNull final SetupResponse setupResponse) {
+        if (setupResponse.isSuccessful()) {
+            // Suitable provider successfully picked, save it for next setup.
+            //noinspection ConstantConditions
+            preferences.put(KEY_LAST_PROVIDER, setupResponse.getBillingProvider().getName());
+        }
+        ASIab.post(setupResponse);
     }
 
     /**
@@ -160,12 +334,14 @@ final class SetupManager {
      * <p>
      * If setup is already in progress, new configuration object is stored and used after
      * current setup is finished.
+     * <p>
+     * Must be called from {@link BillingThread}.
      *
      * @param configuration Configuration object to perform setup for.
      * @see ASIab#setup()
      */
     void startSetup(@NonNull final Configuration configuration) {
-        ASChecks.checkThread(true);
+        BillingThread.check();
         lastConfiguration = configuration;
         if (setupInProgress) {
             return;
@@ -176,7 +352,7 @@ final class SetupManager {
     }
 
     public void registerForEvents() {
-        ASIab.getEvents(SetupResponse.class).observeOn(AndroidSchedulers.mainThread()).subscribe(this::onSetupResponseEvent);
+        ASIab.getEvents(SetupResponse.class, BillingThread.scheduler()).subscribe(this::onSetupResponseEvent);
         ASIab.getEvents(SetupStartedEvent.class).subscribe(this::onSetupStartedEvent);
     }
 
@@ -190,22 +366,35 @@ final class SetupManager {
         }
 
         if (setupResponse.getBillingProvider() != null) {
-            List<String> permissions = setupResponse.getBillingProvider().getPermissionsList();
+            final List<String> permissions = setupResponse.getBillingProvider().getPermissionsList();
             if (permissions == null || permissions.isEmpty()) {
                 return;
             } else {
-                ASPermissions.requestPermissions(setupResponse.getBillingProvider().getPermissionsList());
+                // Permissions are requested through UI
+                AndroidSchedulers.mainThread().scheduleDirect(
+                        () -> ASPermissions.requestPermissions(permissions));
             }
         }
     }
 
     private void onSetupStartedEvent(@NonNull final SetupStartedEvent setupStartedEvent) {
-        final SetupResponse setupResponse = newResponse(setupStartedEvent);
-        if (setupResponse.isSuccessful()) {
-            // Suitable provider successfully picked, save it for next setup.
-            //noinspection ConstantConditions
-            preferences.put(KEY_LAST_PROVIDER, setupResponse.getBillingProvider().getName());
+        ASLog.logMethod(setupStartedEvent);
+        final int setupGeneration = generation.incrementAndGet();
+        final Configuration configuration = setupStartedEvent.getConfiguration();
+        final List<BillingProvider> providers = new ArrayList<>(configuration.getProviders());
+        final int lastIndex = getLastIndex(providers);
+        final boolean hadProvider = preferences.contains(KEY_LAST_PROVIDER);
+
+        final int cachedIndex = pickCached(providers, lastIndex);
+        if (cachedIndex == UNDECIDED) {
+            final int index = pickProbed(configuration, providers, lastIndex,
+                    new int[providers.size()]);
+            post(newResponse(configuration, providers, lastIndex, index, hadProvider));
+            return;
         }
-        ASIab.post(setupResponse);
+        // Finish setup right away, make sure cached verdicts are still relevant afterwards
+        post(newResponse(configuration, providers, lastIndex, cachedIndex, hadProvider));
+        Schedulers.io().scheduleDirect(() -> revalidate(configuration, providers, lastIndex,
+                cachedIndex, setupGeneration));
     }
 }
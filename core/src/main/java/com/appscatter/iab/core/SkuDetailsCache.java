@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.billing.BaseBillingProvider;
+import com.appscatter.iab.core.billing.BillingProvider;
+import com.appscatter.iab.core.model.billing.SkuDetails;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.sku.SkuResolver;
+import com.appscatter.iab.utils.ASLog;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * In-memory cache of SKU details loaded from billing provider.
+ * <p>
+ * Details are keyed by provider name and SKU resolved for this provider. Every entry is kept for
+ * configured time, when cache is full least recently used entries are evicted. Cache state is owned
+ * by {@link BillingThread}, counters can be read from any thread.
+ * <p>
+ * If {@link SkuDetailsStore} is set, loaded details are also persisted and restored in background
+ * once setup picks their provider. Details older than configured time are still served until
+ * {@link SkuDetailsStore#MAX_AGE}, but every such hit has to be revalidated with the provider.
+ * <p>
+ * SKUs provider didn't recognize are remembered separately for a shorter time, they are answered
+ * with empty {@link SkuDetails} and are not requested again until their entry expires or product
+ * catalog changes.
+ *
+ * @see com.appscatter.iab.core.model.Configuration.Builder#setSkuDetailsCache(long, int)
+ * @see ASIab#getSkuDetailsCache()
+ */
+public final class SkuDetailsCache {
+
+    private static final char KEY_SEPARATOR = '/';
+    private static final Clock SYSTEM_CLOCK = SystemClock::elapsedRealtime;
+
+    private static SkuDetailsCache instance;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    /**
+     * Entries in access order, eldest is evicted first.
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    /**
+     * Times SKUs unknown to provider were reported at, in insertion order.
+     */
+    private final Map<String, Long> unknown = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    private long ttl;
+    private long unknownTtl;
+    private int maxEntries = Integer.MAX_VALUE;
+    @Nullable
+    private String providerName;
+    @NonNull
+    private SkuResolver skuResolver = SkuResolver.DEFAULT;
+    @Nullable
+    private SkuDetailsStore store;
+    @Nullable
+    private String catalogHash;
+    /**
+     * Incremented whenever results of pending restore become irrelevant.
+     */
+    private int restoreGeneration;
+    private volatile int size;
+    @NonNull
+    private final Clock clock;
+    /**
+     * Whether cache state may be touched only from {@link BillingThread}.
+     */
+    private final boolean confined;
+
+    private SkuDetailsCache() {
+        this(SYSTEM_CLOCK, true);
+    }
+
+    /**
+     * Creates cache not confined to {@link BillingThread}, intended for tests.
+     *
+     * @param clock Clock to measure age of entries with.
+     */
+    SkuDetailsCache(@NonNull final Clock clock) {
+        this(clock, false);
+    }
+
+    private SkuDetailsCache(@NonNull final Clock clock, final boolean confined) {
+        super();
+        this.clock = clock;
+        this.confined = confined;
+    }
+
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    static synchronized SkuDetailsCache getInstance() {
+        if (instance == null) {
+            instance = new SkuDetailsCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Applies cache settings from current configuration.
+     *
+     * @param ttl        Time to live in milliseconds, not positive to disable caching.
+     * @param unknownTtl Time to remember unknown SKUs for, not positive to always request them.
+     * @param maxEntries Max number of cached SKU details.
+     */
+    void configure(final long ttl, final long unknownTtl, final int maxEntries) {
+        checkThread();
+        this.ttl = ttl;
+        this.unknownTtl = unknownTtl;
+        this.maxEntries = maxEntries;
+        if (ttl <= 0) {
+            entries.clear();
+        }
+        unknown.clear();
+        final Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        size = entries.size();
+    }
+
+    /**
+     * Sets storage used to persist SKU details.
+     *
+     * @param store SkuDetailsStore object, null to keep details only in memory.
+     */
+    void setStore(@Nullable final SkuDetailsStore store) {
+        checkThread();
+        this.store = store;
+        ++restoreGeneration;
+    }
+
+    /**
+     * Sets hash of the current product catalog.
+     * <p>
+     * Unknown SKUs are forgotten when catalog changes, since they might have been added to it.
+     *
+     * @param catalogHash Hash of {@link com.appscatter.iab.core.model.billing.IapProductList},
+     *                    null if there's no catalog.
+     * @see com.appscatter.iab.core.model.billing.IapProductList#getHash()
+     */
+    void setCatalogHash(@Nullable final String catalogHash) {
+        checkThread();
+        if (!TextUtils.equals(this.catalogHash, catalogHash)) {
+            ASLog.d("Product catalog changed, forgetting %d unknown SKUs", unknown.size());
+            this.catalogHash = catalogHash;
+            unknown.clear();
+        }
+    }
+
+    /**
+     * Sets provider which loads SKU details.
+     * <p>
+     * Details of this provider persisted in {@link SkuDetailsStore} are restored in background.
+     *
+     * @param billingProvider Current billing provider, null if setup is not finished.
+     */
+    void setProvider(@Nullable final BillingProvider billingProvider) {
+        if (billingProvider == null) {
+            setProvider(null, SkuResolver.DEFAULT);
+        } else {
+            setProvider(billingProvider.getName(), billingProvider instanceof BaseBillingProvider
+                    ? ((BaseBillingProvider<?, ?>) billingProvider).getSkuResolver()
+                    : SkuResolver.DEFAULT);
+        }
+    }
+
+    /**
+     * Same as {@link #setProvider(BillingProvider)}, taking provider's name and resolver.
+     *
+     * @param providerName Name of current billing provider, null if setup is not finished.
+     * @param skuResolver  Resolver of current billing provider.
+     */
+    void setProvider(@Nullable final String providerName, @NonNull final SkuResolver skuResolver) {
+        checkThread();
+        this.providerName = providerName;
+        this.skuResolver = skuResolver;
+        ++restoreGeneration;
+        if (providerName != null) {
+            restore();
+        }
+    }
+
+    private void restore() {
+        final SkuDetailsStore store = this.store;
+        final String providerName = this.providerName;
+        if (store == null || ttl <= 0 || providerName == null) {
+            return;
+        }
+        final int generation = restoreGeneration;
+        // Reading persisted details might block on disk
+        Schedulers.io().scheduleDirect(() -> {
+            final Collection<SkuDetailsStore.Record> records = store.load(providerName);
+            BillingThread.execute(() -> {
+                if (generation == restoreGeneration && ttl > 0) {
+                    restore(records);
+                }
+            });
+        });
+    }
+
+    private void restore(@NonNull final Collection<SkuDetailsStore.Record> records) {
+        final long now = clock.now();
+        final long time = System.currentTimeMillis();
+        for (final SkuDetailsStore.Record record : records) {
+            final SkuDetails skuDetails = record.getSkuDetails();
+            final String key = key(skuDetails.getSku());
+            if (!entries.containsKey(key)) {
+                entries.put(key, new Entry(skuDetails, now - (time - record.getFetchedAt())));
+            }
+        }
+        size = entries.size();
+    }
+
+    /**
+     * Looks up details of supplied SKUs.
+     *
+     * @param skus   SKUs to look for.
+     * @param cached Collection to put found details into.
+     * @param stale  Collection to put SKUs which were found, but have to be revalidated.
+     * @return SKUs which have to be loaded from billing provider.
+     */
+    @NonNull
+    Set<String> lookup(@NonNull final Collection<String> skus,
+            @NonNull final Collection<SkuDetails> cached,
+            @NonNull final Collection<String> stale) {
+        checkThread();
+        final Set<String> missing = new LinkedHashSet<>();
+        if (ttl <= 0 && unknownTtl <= 0 || providerName == null) {
+            missing.addAll(skus);
+            return missing;
+        }
+        final long now = clock.now();
+        for (final String sku : skus) {
+            final String key = key(sku);
+            if (isUnknown(key, now)) {
+                cached.add(new SkuDetails(sku));
+                continue;
+            }
+            final Entry entry = entries.get(key);
+            final long age = entry == null ? -1 : now - entry.loadedAt;
+            if (age >= 0 && (age < ttl || store != null && age < SkuDetailsStore.MAX_AGE)) {
+                final SkuDetails skuDetails = entry.skuDetails;
+                // Several SKUs might be resolved to the same one
+                cached.add(sku.equals(skuDetails.getSku())
+                        ? skuDetails : skuDetails.copyWithSku(sku));
+                if (age >= ttl) {
+                    stale.add(sku);
+                }
+                continue;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            missing.add(sku);
+        }
+        hits.addAndGet(skus.size() - missing.size());
+        misses.addAndGet(missing.size());
+        size = entries.size();
+        return missing;
+    }
+
+    private boolean isUnknown(@NonNull final String key, final long now) {
+        final Long reportedAt = unknown.get(key);
+        if (reportedAt == null) {
+            return false;
+        } else if (now - reportedAt < unknownTtl) {
+            return true;
+        }
+        unknown.remove(key);
+        return false;
+    }
+
+    /**
+     * Remembers SKU details from supplied response.
+     * <p>
+     * Empty details of unrecognized SKUs are remembered as unknown.
+     *
+     * @param response Response from current billing provider.
+     */
+    void put(@NonNull final SkuDetailsResponse response) {
+        checkThread();
+        if (!response.isSuccessful() || providerName == null
+                || response instanceof CachedSkuDetailsResponse
+                || !providerName.equals(response.getProviderName())) {
+            return;
+        }
+        final long now = clock.now();
+        final Collection<SkuDetails> loaded = new ArrayList<>();
+        for (final SkuDetails skuDetails : response.getSkusDetails()) {
+            final String key = key(skuDetails.getSku());
+            if (skuDetails.isEmpty()) {
+                if (unknownTtl > 0) {
+                    unknown.put(key, now);
+                }
+                continue;
+            }
+            unknown.remove(key);
+            if (ttl <= 0) {
+                continue;
+            }
+            final Entry entry = entries.get(key);
+            // Same SKUs might have been loaded by a request sent before the first response
+            if (entry == null || now - entry.loadedAt >= ttl) {
+                entries.put(key, new Entry(skuDetails, now));
+                loaded.add(skuDetails);
+            }
+        }
+        size = entries.size();
+        if (store != null && !loaded.isEmpty()) {
+            store.put(loaded, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Drops all cached SKU details, including persisted ones.
+     * <p>
+     * Can be called from any thread.
+     */
+    public void clear() {
+        BillingThread.execute(() -> {
+            entries.clear();
+            unknown.clear();
+            size = 0;
+            ++restoreGeneration;
+            if (store != null) {
+                store.clear();
+            }
+        });
+    }
+
+    /**
+     * Gets number of SKUs which details were taken from cache.
+     *
+     * @return Hit count.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets number of SKUs which details had to be loaded from billing provider.
+     *
+     * @return Miss count.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets number of currently cached SKU details, including expired ones.
+     *
+     * @return Cache size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    private void checkThread() {
+        if (confined) {
+            BillingThread.check();
+        }
+    }
+
+    @NonNull
+    private String key(@NonNull final String sku) {
+        return providerName + KEY_SEPARATOR + skuResolver.resolve(sku);
+    }
+
+    /**
+     * SKU details along with the time they were loaded at.
+     */
+    private static final class Entry {
+
+        @NonNull
+        private final SkuDetails skuDetails;
+        private final long loadedAt;
+
+        Entry(@NonNull final SkuDetails skuDetails, final long loadedAt) {
+            this.skuDetails = skuDetails;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Source of time in {@link SystemClock#elapsedRealtime()} base.
+     */
+    interface Clock {
+
+        long now();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.billing.SkuDetails;
+import com.appscatter.iab.utils.ASLog;
+import com.appscatter.iab.utils.ASPreferences;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persisted {@link SkuDetails} loaded from billing providers.
+ * <p>
+ * Every record is keyed by provider name and SKU and holds original JSON returned by the provider
+ * along with the time details were fetched at. Records older than {@link #MAX_AGE} are dropped,
+ * when there are more than configured number of records, the oldest ones are dropped as well.
+ * <p>
+ * Records are read in {@link #load(String)} which might block on disk and has to be called off
+ * {@link BillingThread}, writes are applied asynchronously.
+ *
+ * @see SkuDetailsCache
+ */
+final class SkuDetailsStore {
+
+    /**
+     * Max time persisted details can be shown to the user while they are being refreshed.
+     */
+    static final long MAX_AGE = TimeUnit.DAYS.toMillis(7);
+
+    private static final String NAME = "sku_details";
+    private static final char KEY_SEPARATOR = '/';
+    private static final String NAME_TYPE = "type";
+    private static final String NAME_ORIGINAL_JSON = "original_json";
+    private static final String NAME_PRICE = "price";
+    private static final String NAME_TITLE = "title";
+    private static final String NAME_DESCRIPTION = "description";
+    private static final String NAME_FETCHED_AT = "fetched_at";
+
+    /**
+     * Orders entries of {@link #fetchTimes} from the oldest.
+     */
+    private static final Comparator<Map.Entry<String, Long>> OLDEST_FIRST =
+            (first, second) -> first.getValue() < second.getValue() ? -1
+                    : first.getValue().equals(second.getValue()) ? 0 : 1;
+
+    @NonNull
+    private final ASPreferences preferences;
+    private final int maxEntries;
+    /**
+     * Fetch times of persisted records by key, complete once records were loaded.
+     */
+    private final Map<String, Long> fetchTimes = new HashMap<>();
+
+    /**
+     * Creates new store.
+     *
+     * @param context    Context object.
+     * @param maxEntries Max number of persisted SKU details, across all providers.
+     */
+    SkuDetailsStore(@NonNull final Context context, final int maxEntries) {
+        preferences = new ASPreferences(context, NAME);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Loads all records of the supplied provider.
+     * <p>
+     * Expired and malformed records are removed, store is trimmed to max number of records.
+     * Must not be called from {@link BillingThread}.
+     *
+     * @param providerName Name of the provider which loaded details.
+     * @return Collection of records, can't be null.
+     */
+    @NonNull
+    Collection<Record> load(@NonNull final String providerName) {
+        final String prefix = providerName + KEY_SEPARATOR;
+        final long now = System.currentTimeMillis();
+        final Map<String, Record> records = new HashMap<>();
+        final Collection<String> dropped = new ArrayList<>();
+        for (final Map.Entry<String, ?> entry : preferences.getPreferences().getAll().entrySet()) {
+            final String key = entry.getKey();
+            final int index = key.indexOf(KEY_SEPARATOR);
+            final Record record = index < 0 ? null : parse(key.substring(0, index),
+                    key.substring(index + 1), String.valueOf(entry.getValue()));
+            final long age = record == null ? -1 : now - record.fetchedAt;
+            if (age < 0 || age > MAX_AGE) {
+                dropped.add(key);
+            } else {
+                records.put(key, record);
+            }
+        }
+
+        final Collection<Record> loaded = new ArrayList<>();
+        synchronized (fetchTimes) {
+            final SharedPreferences.Editor editor = preferences.getPreferences().edit();
+            // Records written since preferences were read are newer, keep them
+            for (final String key : dropped) {
+                if (!fetchTimes.containsKey(key)) {
+                    editor.remove(key);
+                }
+            }
+            for (final Map.Entry<String, Record> entry : records.entrySet()) {
+                if (!fetchTimes.containsKey(entry.getKey())) {
+                    fetchTimes.put(entry.getKey(), entry.getValue().fetchedAt);
+                }
+            }
+            trim(editor);
+            editor.apply();
+            for (final Map.Entry<String, Record> entry : records.entrySet()) {
+                final Long time = fetchTimes.get(entry.getKey());
+                if (entry.getKey().startsWith(prefix) && time != null
+                        && time == entry.getValue().fetchedAt) {
+                    loaded.add(entry.getValue());
+                }
+            }
+        }
+        ASLog.d("Loaded %d persisted SKU details of %s", loaded.size(), providerName);
+        return loaded;
+    }
+
+    /**
+     * Stores supplied details, replacing previous records of the same SKUs.
+     * <p>
+     * All details are written at once, the oldest records are dropped if store is full.
+     *
+     * @param skusDetails Details loaded from provider.
+     * @param fetchedAt   Time details were loaded at, in milliseconds since epoch.
+     */
+    void put(@NonNull final Collection<SkuDetails> skusDetails, final long fetchedAt) {
+        synchronized (fetchTimes) {
+            final SharedPreferences.Editor editor = preferences.getPreferences().edit();
+            for (final SkuDetails skuDetails : skusDetails) {
+                final String providerName = skuDetails.getProviderName();
+                final String json = toJson(skuDetails, fetchedAt);
+                if (providerName != null && json != null) {
+                    final String key = providerName + KEY_SEPARATOR + skuDetails.getSku();
+                    editor.putString(key, json);
+                    fetchTimes.put(key, fetchedAt);
+                }
+            }
+            trim(editor);
+            editor.apply();
+        }
+    }
+
+    /**
+     * Removes all records.
+     */
+    void clear() {
+        synchronized (fetchTimes) {
+            fetchTimes.clear();
+            preferences.clear();
+        }
+    }
+
+    /**
+     * Removes the oldest known records until there are at most max number of them.
+     *
+     * @param editor Editor to remove records with.
+     */
+    private void trim(@NonNull final SharedPreferences.Editor editor) {
+        final int excess = fetchTimes.size() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>(fetchTimes.entrySet());
+        Collections.sort(entries, OLDEST_FIRST);
+        for (final Map.Entry<String, Long> entry : entries.subList(0, excess)) {
+            editor.remove(entry.getKey());
+            fetchTimes.remove(entry.getKey());
+        }
+        ASLog.d("Dropped %d oldest persisted SKU details", excess);
+    }
+
+    @Nullable
+    private static String toJson(@NonNull final SkuDetails skuDetails, final long fetchedAt) {
+        final JSONObject jsonObject = new JSONObject();
+        try {
+            jsonObject.put(NAME_TYPE, skuDetails.getType());
+            jsonObject.putOpt(NAME_ORIGINAL_JSON, skuDetails.getOriginalJson());
+            jsonObject.putOpt(NAME_PRICE, skuDetails.getPrice());
+            jsonObject.putOpt(NAME_TITLE, skuDetails.getTitle());
+            jsonObject.putOpt(NAME_DESCRIPTION, skuDetails.getDescription());
+            jsonObject.put(NAME_FETCHED_AT, fetchedAt);
+        } catch (JSONException exception) {
+            ASLog.e("", exception);
+            return null;
+        }
+        return jsonObject.toString();
+    }
+
+    @Nullable
+    private static Record parse(@NonNull final String providerName,
+            @NonNull final String sku,
+            @NonNull final String json) {
+        try {
+            final JSONObject jsonObject = new JSONObject(json);
+            final SkuDetails skuDetails = new SkuDetails.Builder(sku)
+                    .setType(jsonObject.getInt(NAME_TYPE))
+                    .setProviderName(providerName)
+                    .setOriginalJson(jsonObject.optString(NAME_ORIGINAL_JSON, null))
+                    .setPrice(jsonObject.optString(NAME_PRICE, null))
+                    .setTitle(jsonObject.optString(NAME_TITLE, null))
+                    .setDescription(jsonObject.optString(NAME_DESCRIPTION, null))
+                    .build();
+            return new Record(skuDetails, jsonObject.getLong(NAME_FETCHED_AT));
+        } catch (JSONException exception) {
+            ASLog.e("", exception);
+            return null;
+        }
+    }
+
+    /**
+     * Persisted SKU details along with the time they were fetched at.
+     */
+    static final class Record {
+
+        @NonNull
+        private final SkuDetails skuDetails;
+        private final long fetchedAt;
+
+        Record(@NonNull final SkuDetails skuDetails, final long fetchedAt) {
+            this.skuDetails = skuDetails;
+            this.fetchedAt = fetchedAt;
+        }
+
+        @NonNull
+        SkuDetails getSkuDetails() {
+            return skuDetails;
+        }
+
+        /**
+         * Gets time details were fetched at.
+         *
+         * @return Time in milliseconds since epoch.
+         */
+        long getFetchedAt() {
+            return fetchedAt;
+        }
+    }
+}
@@ -24,12 +24,15 @@ import com.appscatter.iab.core.listener.OnInventoryListener;
 import com.appscatter.iab.core.listener.OnPurchaseListener;
 import com.appscatter.iab.core.listener.OnSetupListener;
 import com.appscatter.iab.core.listener.OnSkuDetailsListener;
+import com.appscatter.iab.core.model.RequestWaitStats;
+import com.appscatter.iab.core.model.event.billing.BillingEventType;
 import com.appscatter.iab.core.model.event.billing.BillingRequest;
 import com.appscatter.iab.core.model.event.billing.BillingResponse;
 
 import android.app.Activity;
 import android.app.Fragment;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
@@ -77,4 +80,34 @@ public interface AdvancedIabHelper extends SimpleIabHelper, ListenersSupport {
     void unregister();
 
     void dropQueue();
+
+    /**
+     * Cancels requests of the supplied type sent by this helper.
+     * <p>
+     * Queued requests are dropped. Request already being executed is finished with
+     * {@link com.appscatter.iab.core.model.event.billing.Status#USER_CANCELED}, response from
+     * {@link BillingProvider} is ignored if it arrives later.
+     *
+     * @param type Type of the requests to cancel.
+     */
+    void cancel(@BillingEventType final int type);
+
+    /**
+     * Sets share of library throughput this helper gets while other helpers have pending requests
+     * too.
+     * <p>
+     * Helper with weight 2 gets two requests executed for every request of a helper with weight 1.
+     * Default weight is 1.
+     *
+     * @param weight Positive weight of this helper.
+     */
+    void setWeight(final int weight);
+
+    /**
+     * Gets statistics of time requests from this helper spent waiting in queue.
+     *
+     * @return RequestWaitStats object, can't be null.
+     */
+    @NonNull
+    RequestWaitStats getWaitStats();
 }
\ No newline at end of file
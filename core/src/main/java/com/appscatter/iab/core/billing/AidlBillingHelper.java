@@ -16,6 +16,8 @@
 
 package com.appscatter.iab.core.billing;
 
+import com.appscatter.iab.core.ActivityMonitor;
+import com.appscatter.iab.core.model.ServiceBindStats;
 import com.appscatter.iab.utils.ASLog;
 import com.appscatter.iab.utils.ASUtils;
 
@@ -30,6 +32,8 @@ import android.os.Handler;
 import android.os.IBinder;
 import android.os.IInterface;
 import android.os.Looper;
+import android.os.RemoteException;
+import android.os.SystemClock;
 import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -37,31 +41,92 @@ import android.support.annotation.Nullable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Helper class intended to simplify interaction with {@link Service} declared using Android
  * Interface Definition Language (AIDL).
+ * <p>
+ * Connection is kept alive between calls for a period adapted to how often service is used and
+ * whether application is in foreground. Helper which served the last billing request, thus
+ * belonging to the current provider, binds to its service in advance once application returns to
+ * foreground. Helpers used only to probe providers during setup never do.
  *
  * @param <AIDL> AIDL class to bind to.
  */
 public abstract class AidlBillingHelper<AIDL extends IInterface> implements ServiceConnection {
 
     private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+    /**
+     * Helper of the current provider, the only one notified about foreground changes.
+     */
+    private static final AtomicReference<AidlBillingHelper<?>> FOREGROUND_HELPER =
+            new AtomicReference<>();
+    /**
+     * Set while current thread handles billing request in {@link BaseBillingProvider}.
+     */
+    private static final ThreadLocal<Boolean> IN_REQUEST = new ThreadLocal<>();
     /**
      * Timeout to wait before giving up on connecting to service.
      */
     private static final long CONNECTION_TIMEOUT = Long.parseLong("30000");
     /**
      * Automatically disconnect from service after this delay since last usage.
+     * <p>
+     * Used until usage pattern of the service is known.
      */
     private static final long DISCONNECT_DELAY = Long.parseLong("60000");
+    private static final long MIN_DISCONNECT_DELAY = Long.parseLong("15000");
+    private static final long MAX_DISCONNECT_DELAY = Long.parseLong("300000");
+    /**
+     * Keep connection while application is in background no longer than this.
+     */
+    private static final long BACKGROUND_DISCONNECT_DELAY = Long.parseLong("15000");
+    /**
+     * Calls closer to each other than this are considered part of the same request.
+     */
+    private static final long MIN_USAGE_INTERVAL = Long.parseLong("1000");
+    /**
+     * Connection is kept alive for this many average intervals between usages.
+     */
+    private static final int KEEP_ALIVE_FACTOR = 2;
 
+    static {
+        // Single listener for all helpers, so replaced helpers aren't held
+        ActivityMonitor.addForegroundListener(new ActivityMonitor.ForegroundListener() {
+            @Override
+            public void onForegroundChanged(final boolean foreground) {
+                final AidlBillingHelper<?> helper = FOREGROUND_HELPER.get();
+                if (helper != null) {
+                    helper.onForegroundChanged(foreground);
+                }
+            }
+        });
+    }
+
+    /**
+     * Guards {@link #binding}, so concurrent callers share a single connection attempt.
+     */
+    private final Object bindLock = new Object();
     /**
-     * Used to block library thread and wait for service to connect.
+     * Guards {@link #lastUsage} and {@link #usageInterval}.
      */
-    private final Semaphore serviceSemaphore = new Semaphore(0);
+    private final Object usageLock = new Object();
+    /**
+     * Task to be used to give up on connection attempt in progress.
+     */
+    private final Runnable bindTimeout = new Runnable() {
+        @Override
+        public void run() {
+            final ServiceFuture<AIDL> future = takeBinding(false);
+            if (future != null) {
+                ASLog.e("AIDL service connection timeout: %s", clazz);
+                unbind();
+                onFailure();
+                future.complete(null);
+            }
+        }
+    };
     /**
      * Task to be used to disconnect from service.
      */
@@ -69,7 +134,7 @@ public abstract class AidlBillingHelper<AIDL extends IInterface> implements Serv
         @Override
         public void run() {
             if (service != null) {
-                context.unbindService(AidlBillingHelper.this);
+                unbind();
                 service = null;
             }
         }
@@ -77,28 +142,63 @@ public abstract class AidlBillingHelper<AIDL extends IInterface> implements Serv
     @NonNull
     protected final Context context;
     /**
-     * Method that is used to connect to the service.
+     * AIDL class used to identify the service in logs.
+     */
+    @NonNull
+    private final Class<AIDL> clazz;
+    /**
+     * Factory that is used to connect to the service.
      */
     @NonNull
-    private final Method asInterface;
+    private final StubFactory<AIDL> stubFactory;
+    @NonNull
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
     @Nullable
     private volatile AIDL service;
+    /**
+     * Connection attempt in progress, guarded by {@link #bindLock}.
+     */
+    @Nullable
+    private ServiceFuture<AIDL> binding;
+    private long bindStartedAt;
+    @NonNull
+    private volatile ServiceBindStats bindStats = ServiceBindStats.EMPTY;
+    /**
+     * Time of the last usage in {@link SystemClock#elapsedRealtime()} base, 0 if never used.
+     */
+    private volatile long lastUsage;
+    /**
+     * Moving average of time between usages, 0 if unknown.
+     */
+    private volatile long usageInterval;
 
-    protected AidlBillingHelper(@NonNull final Context context, @NonNull final Class<AIDL> clazz) {
+    /**
+     * Constructs helper using supplied factory to wrap service binder.
+     *
+     * @param context     Context object used to bind to service.
+     * @param clazz       AIDL class to bind to.
+     * @param stubFactory Factory wrapping binder into AIDL interface, usually
+     *                    {@code Stub::asInterface}.
+     */
+    protected AidlBillingHelper(@NonNull final Context context,
+            @NonNull final Class<AIDL> clazz,
+            @NonNull final StubFactory<AIDL> stubFactory) {
         this.context = context.getApplicationContext();
-        final Class<?>[] classes = clazz.getDeclaredClasses();
-        for (final Class<?> declaredClass : classes) {
-            if ("Stub".equals(declaredClass.getSimpleName())
-                    && clazz.isAssignableFrom(declaredClass)) {
-                try {
-                    asInterface = declaredClass.getDeclaredMethod("asInterface", IBinder.class);
-                    return;
-                } catch (NoSuchMethodException e) {
-                    throw new IllegalStateException(e);
-                }
-            }
-        }
-        throw new IllegalStateException("Couldn't extract Stub implementation from AIDL class.");
+        this.clazz = clazz;
+        this.stubFactory = stubFactory;
+    }
+
+    /**
+     * Constructs helper which looks up {@code Stub.asInterface} method using reflection.
+     * <p>
+     * Prefer {@link #AidlBillingHelper(Context, Class, StubFactory)}, this one is kept as a
+     * fallback for AIDL classes without generated sources at hand.
+     *
+     * @param context Context object used to bind to service.
+     * @param clazz   AIDL class to bind to.
+     */
+    protected AidlBillingHelper(@NonNull final Context context, @NonNull final Class<AIDL> clazz) {
+        this(context, clazz, new ReflectiveStubFactory<>(clazz));
     }
 
     /**
@@ -117,76 +217,332 @@ public abstract class AidlBillingHelper<AIDL extends IInterface> implements Serv
     @Nullable
     protected abstract Intent getServiceIntent();
 
+    /**
+     * Gets delay since last usage after which service is disconnected.
+     * <p>
+     * Delay is proportional to average time between usages and is shortened while application is
+     * in background.
+     *
+     * @return Delay in milliseconds.
+     */
     protected long getDisconnectDelay() {
-        return DISCONNECT_DELAY;
+        final long interval = usageInterval;
+        final long delay = interval == 0 ? DISCONNECT_DELAY : Math.max(MIN_DISCONNECT_DELAY,
+                Math.min(MAX_DISCONNECT_DELAY, interval * KEEP_ALIVE_FACTOR));
+        if (ActivityMonitor.isForeground()) {
+            return delay;
+        }
+        return Math.min(delay, BACKGROUND_DISCONNECT_DELAY);
     }
 
     /**
-     * Blocking call to retrieve {@link IInterface} instance to interact with {@link Service}.
+     * Gets statistics of binding to the service.
      *
-     * @return {@link IInterface} instance if {@link Service} connection was successful, null otherwise.
+     * @return Bind statistics, can't be null.
      */
-    @Nullable
-    public AIDL getService(final long timeout) {
+    @NonNull
+    public ServiceBindStats getBindStats() {
+        return bindStats;
+    }
+
+    private void recordUsage() {
+        final long now = SystemClock.elapsedRealtime();
+        synchronized (usageLock) {
+            final long interval = now - lastUsage;
+            if (lastUsage != 0 && interval >= MIN_USAGE_INTERVAL) {
+                final long average = usageInterval;
+                usageInterval = average == 0 ? interval : (average * 3 + interval) / 4;
+            }
+            if (lastUsage == 0 || interval >= MIN_USAGE_INTERVAL) {
+                lastUsage = now;
+            }
+        }
+    }
+
+    /**
+     * Non-blocking call to retrieve {@link IInterface} instance to interact with {@link Service}.
+     * <p>
+     * All callers arriving while connection is in progress share the same attempt. They are
+     * notified together once service is connected, or once connection fails, times out or service
+     * gets disconnected.
+     *
+     * @return Future of the connection attempt, can't be null.
+     */
+    @NonNull
+    public ServiceFuture<AIDL> getServiceAsync() {
+        recordUsage();
+        if (IN_REQUEST.get() != null) {
+            // Only current provider handles billing requests
+            FOREGROUND_HELPER.set(this);
+        }
+        return connect();
+    }
+
+    /**
+     * Marks current thread as handling billing request, until {@link #onRequestHandled()}.
+     */
+    static void onRequestStarted() {
+        IN_REQUEST.set(Boolean.TRUE);
+    }
+
+    /**
+     * Clears mark set by {@link #onRequestStarted()}.
+     */
+    static void onRequestHandled() {
+        IN_REQUEST.remove();
+    }
+
+    /**
+     * Stops binding in advance for any helper, until one serves next billing request.
+     * <p>
+     * Intended to be called whenever current provider is about to change.
+     */
+    public static void resetForegroundHelper() {
+        FOREGROUND_HELPER.set(null);
+    }
+
+    @NonNull
+    private ServiceFuture<AIDL> connect() {
+        if (!circuitBreaker.allowRequest()) {
+            ASLog.d("Service is unavailable for %d ms: %s",
+                    circuitBreaker.getRemainingBackoff(), clazz);
+            return new ServiceFuture<>(null);
+        }
         final AIDL service = this.service;
         if (service != null) {
             scheduleDisconnect();
-            return service;
+            return new ServiceFuture<>(service);
         }
+        synchronized (bindLock) {
+            final AIDL boundService = this.service;
+            if (boundService != null) {
+                // Connected while waiting for another caller
+                scheduleDisconnect();
+                return new ServiceFuture<>(boundService);
+            }
+            if (binding == null) {
+                if (!bindService()) {
+                    bindStats = bindStats.addFailure();
+                    onFailure();
+                    return new ServiceFuture<>(null);
+                }
+                bindStartedAt = SystemClock.elapsedRealtime();
+                binding = new ServiceFuture<>();
+                HANDLER.postDelayed(bindTimeout, CONNECTION_TIMEOUT);
+            }
+            return binding;
+        }
+    }
 
+    /**
+     * Same as {@link #getServiceAsync()} but notifies supplied callback.
+     *
+     * @param callback Callback to notify when connection attempt is finished.
+     */
+    public void getServiceAsync(@NonNull final ServiceFuture.Callback<AIDL> callback) {
+        getServiceAsync().addCallback(callback);
+    }
+
+    /**
+     * Blocking call to retrieve {@link IInterface} instance to interact with {@link Service}.
+     * <p>
+     * Waits on {@link #getServiceAsync()}, giving up after timeout doesn't cancel connection
+     * attempt for other callers.
+     *
+     * @return {@link IInterface} instance if {@link Service} connection was successful, null otherwise.
+     */
+    @Nullable
+    public AIDL getService(final long timeout) {
+        return getServiceAsync().get(timeout);
+    }
+
+    /**
+     * Same as {@link #getService(long)} but with default timeout, limited by the deadline of the
+     * request current thread executes.
+     *
+     * @see #CONNECTION_TIMEOUT
+     * @see RequestDeadline
+     */
+    @Nullable
+    public AIDL getService() {
+        return getService(RequestDeadline.limit(CONNECTION_TIMEOUT));
+    }
+
+    private boolean bindService() {
         final Intent serviceIntent = getServiceIntent();
         if (serviceIntent == null) {
-            return null;
+            return false;
         }
         final PackageManager packageManager = context.getPackageManager();
         final Collection<ResolveInfo> infos = packageManager.queryIntentServices(serviceIntent, 0);
-        serviceSemaphore.drainPermits();
         if (infos == null || infos.isEmpty()
                 || !context.bindService(serviceIntent, this, Context.BIND_AUTO_CREATE)) {
-            ASLog.d("Can't bind to service: %s", asInterface.getDeclaringClass());
-            return null;
+            ASLog.d("Can't bind to service: %s", ASUtils.toString(serviceIntent));
+            return false;
         }
+        return true;
+    }
+
+    private void unbind() {
         try {
-            if (serviceSemaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
-                return this.service;
-            }
-            ASLog.e("AIDL service connection timeout: %s", ASUtils.toString(serviceIntent));
-        } catch (InterruptedException exception) {
-            ASLog.d("", exception);
+            context.unbindService(this);
+        } catch (IllegalArgumentException exception) {
+            ASLog.d("Service is not bound.", exception);
         }
-        return null;
     }
 
     /**
-     * Same as {@link #getService(long)} but with default timeout.
+     * Reports failed call to the service.
+     * <p>
+     * Repeated failures make service unavailable for a backoff period, during which all requests
+     * fail immediately instead of waiting for connection.
      *
-     * @see #CONNECTION_TIMEOUT
+     * @param exception Exception thrown by the call.
+     */
+    public void onServiceError(@NonNull final RemoteException exception) {
+        ASLog.d("Service call failed: %s, %s", clazz, exception);
+        onFailure();
+    }
+
+    /**
+     * Reports successful call to the service.
+     * <p>
+     * Closes circuit if service was suspended, lets all requests through again.
+     */
+    public void onServiceSuccess() {
+        circuitBreaker.onSuccess();
+    }
+
+    private void onFailure() {
+        if (circuitBreaker.onFailure()) {
+            ASLog.e("Service is failing, suspended for %d ms: %s",
+                    circuitBreaker.getRemainingBackoff(), clazz);
+            // Drop current connection, it will be established again after backoff
+            HANDLER.removeCallbacks(disconnect);
+            HANDLER.post(disconnect);
+        }
+    }
+
+    /**
+     * Takes connection attempt in progress and records its outcome.
+     *
+     * @param connected True if service was connected, false if attempt failed.
+     * @return Connection attempt future, null if there was no attempt in progress.
      */
     @Nullable
-    public AIDL getService() {
-        return getService(CONNECTION_TIMEOUT);
+    private ServiceFuture<AIDL> takeBinding(final boolean connected) {
+        synchronized (bindLock) {
+            final ServiceFuture<AIDL> future = binding;
+            if (future == null) {
+                return null;
+            }
+            binding = null;
+            if (connected) {
+                final long latency = SystemClock.elapsedRealtime() - bindStartedAt;
+                bindStats = bindStats.addBind(latency);
+                ASLog.d("Service connected in %d ms: %s", latency, clazz);
+            } else {
+                bindStats = bindStats.addFailure();
+            }
+            return future;
+        }
+    }
+
+    private void onForegroundChanged(final boolean foreground) {
+        if (foreground) {
+            if (lastUsage != 0 && service == null && circuitBreaker.isClosed()) {
+                // Service was used before, bind in advance to have it ready for the next call
+                connect();
+            }
+        } else if (service != null) {
+            // Shorten keep-alive period
+            scheduleDisconnect();
+        }
     }
 
     @CallSuper
     @Override
     public void onServiceConnected(final ComponentName name, final IBinder service) {
-        //https://code.google.com/p/android/issues/detail?id=153406
-        //noinspection TryWithIdenticalCatches
-        try {
-            //noinspection unchecked
-            this.service = (AIDL) asInterface.invoke(null, service);
-        } catch (IllegalAccessException exception) {
-            ASLog.e("", exception);
-        } catch (InvocationTargetException exception) {
-            ASLog.e("", exception);
-        }
+        this.service = stubFactory.asInterface(service);
         scheduleDisconnect();
-        serviceSemaphore.release();
+        HANDLER.removeCallbacks(bindTimeout);
+        final ServiceFuture<AIDL> future = takeBinding(this.service != null);
+        if (future != null) {
+            future.complete(this.service);
+        }
     }
 
     @CallSuper
     @Override
     public void onServiceDisconnected(final ComponentName name) {
         service = null;
+        final ServiceFuture<AIDL> future = takeBinding(false);
+        if (future != null) {
+            // Service process died while connecting
+            HANDLER.removeCallbacks(bindTimeout);
+            onFailure();
+            future.complete(null);
+        }
+        // Otherwise calls in flight report their own errors, lost connection alone isn't one
+    }
+
+    /**
+     * Wraps service binder into AIDL interface.
+     *
+     * @param <AIDL> AIDL class to wrap binder into.
+     */
+    public interface StubFactory<AIDL extends IInterface> {
+
+        /**
+         * Wraps supplied binder, same as generated {@code Stub.asInterface(IBinder)}.
+         *
+         * @param binder Binder received from connected service.
+         * @return AIDL interface object, null if binder couldn't be wrapped.
+         */
+        @Nullable
+        AIDL asInterface(@Nullable final IBinder binder);
+    }
+
+    /**
+     * Factory invoking {@code Stub.asInterface} through reflection.
+     */
+    private static final class ReflectiveStubFactory<AIDL extends IInterface>
+            implements StubFactory<AIDL> {
+
+        @NonNull
+        private final Method asInterface;
+
+        ReflectiveStubFactory(@NonNull final Class<AIDL> clazz) {
+            for (final Class<?> declaredClass : clazz.getDeclaredClasses()) {
+                if ("Stub".equals(declaredClass.getSimpleName())
+                        && clazz.isAssignableFrom(declaredClass)) {
+                    try {
+                        asInterface = declaredClass.getDeclaredMethod("asInterface",
+                                IBinder.class);
+                        return;
+                    } catch (NoSuchMethodException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            throw new IllegalStateException(
+                    "Couldn't extract Stub implementation from AIDL class.");
+        }
+
+        @Nullable
+        @Override
+        public AIDL asInterface(@Nullable final IBinder binder) {
+            //https://code.google.com/p/android/issues/detail?id=153406
+            //noinspection TryWithIdenticalCatches
+            try {
+                //noinspection unchecked
+                return (AIDL) asInterface.invoke(null, binder);
+            } catch (IllegalAccessException exception) {
+                ASLog.e("", exception);
+            } catch (InvocationTargetException exception) {
+                ASLog.e("", exception);
+            }
+            return null;
+        }
     }
 }
@@ -35,6 +35,7 @@ import com.appscatter.iab.core.util.ActivityForResultLauncher;
 import com.appscatter.iab.core.util.BillingUtils;
 import com.appscatter.iab.core.util.SyncedReference;
 import com.appscatter.iab.core.verification.PurchaseVerifier;
+import com.appscatter.iab.core.verification.VerificationResult;
 import com.appscatter.iab.utils.ASLog;
 
 import android.content.Context;
@@ -155,10 +156,15 @@ public abstract class BaseBillingProvider<R extends SkuResolver, V extends Purch
 
     @Override
     public void onBillingRequest(@NonNull final BillingRequest billingRequest) {
-        if (!isAvailable()) {
-            postEmptyResponse(billingRequest, BILLING_UNAVAILABLE);
-        } else {
-            handleRequest(billingRequest);
+        AidlBillingHelper.onRequestStarted();
+        try {
+            if (!isAvailable()) {
+                postEmptyResponse(billingRequest, BILLING_UNAVAILABLE);
+            } else {
+                handleRequest(billingRequest);
+            }
+        } finally {
+            AidlBillingHelper.onRequestHandled();
         }
     }
 
@@ -167,6 +173,17 @@ public abstract class BaseBillingProvider<R extends SkuResolver, V extends Purch
         return BillingUtils.verify(purchaseVerifier, response);
     }
 
+    @VerificationResult
+    @Override
+    public int verifyPurchase(@NonNull final Purchase purchase) {
+        final V purchaseVerifier = this.purchaseVerifier;
+        if (purchaseVerifier == null) {
+            // Provider wasn't initialized, nothing to verify with
+            return VerificationResult.UNKNOWN;
+        }
+        return purchaseVerifier.verify(purchase);
+    }
+
     protected BillingResponse revertSku(@NonNull final BillingResponse response) {
         return BillingUtils.revert(skuResolver, response);
     }
@@ -193,6 +210,21 @@ public abstract class BaseBillingProvider<R extends SkuResolver, V extends Purch
         postResponse(BillingUtils.emptyResponse(getName(), billingRequest, status));
     }
 
+    /**
+     * Gets resolver this provider was initialized with.
+     *
+     * @return SkuResolver object used to translate SKUs for this provider.
+     */
+    @NonNull
+    public R getSkuResolver() {
+        return skuResolver;
+    }
+
+    @Override
+    public int getMaxConcurrentRequests() {
+        return 1;
+    }
+
     @Override
     public boolean skuTypeSupported(@SkuType final int skuType) {
         return true;
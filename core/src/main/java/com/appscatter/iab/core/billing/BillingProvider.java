@@ -20,10 +20,12 @@ package com.appscatter.iab.core.billing;
 import com.appscatter.iab.core.ASIab;
 
 import com.appscatter.iab.core.model.billing.IapProductList;
+import com.appscatter.iab.core.model.billing.Purchase;
 import com.appscatter.iab.core.model.billing.SkuType;
 import com.appscatter.iab.core.model.event.billing.BillingRequest;
 import com.appscatter.iab.core.sku.SkuResolver;
 import com.appscatter.iab.core.verification.PurchaseVerifier;
+import com.appscatter.iab.core.verification.VerificationResult;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -83,16 +85,34 @@ public interface BillingProvider {
     /**
      * Entry point for all billing requests.
      * <p>
-     * Called from <b>single</b> background thread.
+     * Called from background thread. Unless {@link #getMaxConcurrentRequests()} is greater than 1,
+     * requests are never handled concurrently.
      * <p>
-     * As soon as billing request is handled, BillingProvider <b>must</b> notify library with
-     * {@link RequestHandledEvent} using {@link ASIab#post(Object)}. Same method should be used
-     * with proper {@link BillingResponse} object when result of performed action becomes available.
+     * BillingProvider <b>must</b> post exactly one proper {@link BillingResponse} for every request
+     * using {@link ASIab#post(Object)}, either before returning or when result of performed action
+     * becomes available. Request keeps its slot until then, library posts
+     * {@link RequestHandledEvent} afterwards. Response posted after request was canceled or missed
+     * its deadline is dropped.
+     * <p>
+     * Response posted from any other thread is bound to the oldest pending request of the same
+     * type, so providers handling requests concurrently must post responses from calling thread.
      *
      * @param billingRequest Billing request to handle with this billing provider.
      */
     void onBillingRequest(@NonNull final BillingRequest billingRequest);
 
+    /**
+     * Gets max number of requests this provider can handle concurrently.
+     * <p>
+     * Only read-only requests, loading SKU details or inventory, are executed concurrently, each
+     * on a separate background thread. Several SKU details requests can be executed at once, while
+     * inventory is loaded by one request at a time. Purchase and consume requests are always
+     * exclusive.
+     *
+     * @return Max number of concurrent requests, 1 to handle requests one by one.
+     */
+    int getMaxConcurrentRequests();
+
     /**
      * Indicates whether supplied SkyType is supported by this billing provider.
      * <p>
@@ -132,6 +152,17 @@ public interface BillingProvider {
     @NonNull
     PurchaseVerifier getPurchaseVerifier(String key);
 
+    /**
+     * Verifies supplied purchase with {@link PurchaseVerifier} this provider was initialized with.
+     * <p>
+     * Intended to be called from background thread, because it may perform long time operations.
+     *
+     * @param purchase Purchase object to verify, e.g. restored from local storage.
+     * @return Verification result.
+     */
+    @VerificationResult
+    int verifyPurchase(@NonNull final Purchase purchase);
+
     /**
      * For when using dynamic loading of the providers libraries
      *
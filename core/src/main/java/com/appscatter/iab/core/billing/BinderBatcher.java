@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.billing;
+
+import com.appscatter.iab.utils.ASLog;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.os.TransactionTooLargeException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Splits a list of items into chunks, each sent to a service in a separate binder transaction.
+ * <p>
+ * Chunk size is adapted to the observed size of replies, so each reply stays well below binder
+ * transaction buffer limit. Replies are handed to {@link Receiver} one by one as they arrive.
+ */
+public final class BinderBatcher {
+
+    /**
+     * Desired size of a single reply. Binder buffer is 1MB and is shared by all transactions of
+     * the process.
+     */
+    private static final int TARGET_REPLY_SIZE = 256 * 1024;
+
+    private final int maxChunkSize;
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong itemCount = new AtomicLong();
+    /**
+     * Estimated reply size per item in bytes, 0 if unknown.
+     */
+    private volatile int itemSize;
+
+    /**
+     * Constructs new batcher.
+     *
+     * @param maxChunkSize Max number of items service accepts in a single call.
+     */
+    public BinderBatcher(final int maxChunkSize) {
+        if (maxChunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * Gets number of items to put in the next chunk.
+     *
+     * @return Chunk size.
+     */
+    public int getChunkSize() {
+        final int size = itemSize;
+        if (size == 0) {
+            return maxChunkSize;
+        }
+        return Math.max(1, Math.min(maxChunkSize, TARGET_REPLY_SIZE / size));
+    }
+
+    /**
+     * Gets number of calls made to service, including ones retried with smaller chunks.
+     *
+     * @return Call count.
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * Gets number of items sent to service in all calls.
+     *
+     * @return Item count.
+     */
+    public long getItemCount() {
+        return itemCount.get();
+    }
+
+    /**
+     * Sends supplied items to service chunk by chunk.
+     * <p>
+     * If a call fails with {@link TransactionTooLargeException} the same items are retried in
+     * smaller chunks.
+     *
+     * @param items    Items to send.
+     * @param call     Call sending a single chunk to service.
+     * @param receiver Receiver of the replies.
+     * @param <T>      Type of the items.
+     * @return True if all chunks were sent, false if receiver requested to stop.
+     * @throws RemoteException If call failed.
+     */
+    public <T> boolean execute(@NonNull final List<T> items,
+            @NonNull final Call<T> call,
+            @NonNull final Receiver<T> receiver) throws RemoteException {
+        final int size = items.size();
+        int start = 0;
+        while (start < size) {
+            final int end = Math.min(size, start + getChunkSize());
+            final List<T> chunk = items.subList(start, end);
+            final long startedAt = SystemClock.elapsedRealtime();
+            callCount.incrementAndGet();
+            itemCount.addAndGet(chunk.size());
+            final Bundle reply;
+            try {
+                reply = call.call(chunk);
+            } catch (TransactionTooLargeException exception) {
+                if (chunk.size() == 1) {
+                    throw exception;
+                }
+                shrink(chunk.size());
+                ASLog.d("Reply is too large, chunk size reduced to %d", getChunkSize());
+                continue;
+            }
+            final long latency = SystemClock.elapsedRealtime() - startedAt;
+            if (reply != null) {
+                measure(reply, chunk.size());
+            }
+            ASLog.d("Chunk from %d to %d loaded in %d ms", start, end, latency);
+            if (!receiver.onReply(chunk, reply, latency)) {
+                return false;
+            }
+            start = end;
+        }
+        return true;
+    }
+
+    private void measure(@NonNull final Bundle reply, final int count) {
+        final Parcel parcel = Parcel.obtain();
+        final int size;
+        try {
+            reply.writeToParcel(parcel, 0);
+            size = parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+        final int perItem = Math.max(1, size / count);
+        final int current = itemSize;
+        // Grow estimate immediately, shrink it slowly
+        itemSize = perItem > current ? perItem : (current * 3 + perItem) / 4;
+    }
+
+    private void shrink(final int chunkSize) {
+        final int halfChunk = chunkSize / 2;
+        itemSize = Math.max(itemSize, TARGET_REPLY_SIZE / halfChunk + 1);
+    }
+
+    /**
+     * Single chunk call to a service.
+     *
+     * @param <T> Type of the items.
+     */
+    public interface Call<T> {
+
+        /**
+         * Sends supplied chunk to service.
+         *
+         * @param chunk Items to send, can't be empty.
+         * @return Service reply, can be null.
+         * @throws RemoteException If binder transaction failed.
+         */
+        @Nullable
+        Bundle call(@NonNull final List<T> chunk) throws RemoteException;
+    }
+
+    /**
+     * Receiver of the service replies.
+     *
+     * @param <T> Type of the items.
+     */
+    public interface Receiver<T> {
+
+        /**
+         * Handles a reply for a single chunk.
+         *
+         * @param chunk   Items sent to service.
+         * @param reply   Service reply, can be null.
+         * @param latency Time the call took, in milliseconds.
+         * @return True to proceed with the next chunk, false to stop.
+         */
+        boolean onReply(@NonNull final List<T> chunk, @Nullable final Bundle reply,
+                final long latency);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.billing;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import java.util.Random;
+
+/**
+ * Circuit breaker guarding connection to a single service.
+ * <p>
+ * Circuit opens after {@link #FAILURE_THRESHOLD} failures within {@link #FAILURE_WINDOW}. While
+ * it's open all requests are rejected. Once backoff period has passed circuit becomes half-open
+ * and lets a single probe request through. Successful probe closes the circuit, failed one
+ * reopens it with doubled backoff period. Probe which doesn't report its outcome within
+ * {@link #PROBE_TIMEOUT} is replaced by the next request. Backoff periods are jittered to spread
+ * retries of different services.
+ */
+final class CircuitBreaker {
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long FAILURE_WINDOW = Long.parseLong("30000");
+    private static final long PROBE_TIMEOUT = Long.parseLong("30000");
+    private static final long MIN_BACKOFF = Long.parseLong("1000");
+    private static final long MAX_BACKOFF = Long.parseLong("120000");
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final Random random;
+
+    private int state = CLOSED;
+    private int failures;
+    private long firstFailureAt;
+    /**
+     * Number of times in a row circuit was opened without successful probe.
+     */
+    private int attempts;
+    private long openUntil;
+    /**
+     * Time the current probe was let through, valid only while circuit is half-open.
+     */
+    private long probeStartedAt;
+
+    CircuitBreaker() {
+        this(new Random());
+    }
+
+    CircuitBreaker(@NonNull final Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Checks whether request to the service can be made.
+     *
+     * @return True if request is allowed, false if it must fail immediately.
+     */
+    boolean allowRequest() {
+        return allowRequest(SystemClock.elapsedRealtime());
+    }
+
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    synchronized boolean allowRequest(final long now) {
+        switch (state) {
+            case OPEN:
+                if (now < openUntil) {
+                    return false;
+                }
+                state = HALF_OPEN;
+                probeStartedAt = now;
+                return true;
+            case HALF_OPEN:
+                if (now - probeStartedAt < PROBE_TIMEOUT) {
+                    // Wait for the outcome of the probe in flight
+                    return false;
+                }
+                probeStartedAt = now;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Checks whether circuit is closed, letting all requests through.
+     *
+     * @return True if circuit is closed, false if it's open or waiting for a probe.
+     */
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    synchronized boolean isClosed() {
+        return state == CLOSED;
+    }
+
+    /**
+     * Records successful request, closing the circuit.
+     */
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    synchronized void onSuccess() {
+        if (state != CLOSED || failures > 0) {
+            close();
+        }
+    }
+
+    /**
+     * Records failed request.
+     *
+     * @return True if this failure opened the circuit.
+     */
+    boolean onFailure() {
+        return onFailure(SystemClock.elapsedRealtime());
+    }
+
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    synchronized boolean onFailure(final long now) {
+        if (state == OPEN) {
+            return false;
+        }
+        if (state == HALF_OPEN) {
+            // Probe failed
+            open(now);
+            return true;
+        }
+        if (failures == 0 || now - firstFailureAt > FAILURE_WINDOW) {
+            failures = 0;
+            firstFailureAt = now;
+        }
+        if (++failures >= FAILURE_THRESHOLD) {
+            open(now);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets time left until circuit becomes half-open.
+     *
+     * @return Time in milliseconds, 0 if circuit is not open.
+     */
+    long getRemainingBackoff() {
+        return getRemainingBackoff(SystemClock.elapsedRealtime());
+    }
+
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    synchronized long getRemainingBackoff(final long now) {
+        if (state != OPEN) {
+            return 0;
+        }
+        return Math.max(0, openUntil - now);
+    }
+
+    private void open(final long now) {
+        final long backoff = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(attempts, 16));
+        // Equal jitter: keep half of the period, randomize the other half
+        final long half = backoff / 2;
+        openUntil = now + half + (long) (random.nextDouble() * half);
+        attempts++;
+        state = OPEN;
+        failures = 0;
+    }
+
+    private void close() {
+        state = CLOSED;
+        attempts = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.billing;
+
+import android.os.SystemClock;
+
+/**
+ * Deadline of the request current thread executes in {@link BillingProvider}.
+ * <p>
+ * Blocking calls made on behalf of the request shouldn't wait past its deadline, response posted
+ * after it is dropped anyway.
+ *
+ * @see com.appscatter.iab.core.model.Configuration#getRequestDeadline(int)
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Sets deadline of the request current thread starts executing.
+     *
+     * @param deadline Deadline in {@link SystemClock#elapsedRealtime()} base, not positive if
+     *                 request has no deadline.
+     */
+    public static void set(final long deadline) {
+        if (deadline > 0) {
+            DEADLINE.set(deadline);
+        } else {
+            DEADLINE.remove();
+        }
+    }
+
+    /**
+     * Clears deadline once current thread is done with the request.
+     */
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * Limits supplied timeout to the time left until deadline of the current request.
+     *
+     * @param timeout Timeout in milliseconds.
+     * @return Supplied timeout if current thread has no deadline, otherwise the smaller of it and
+     * the remaining time, never negative.
+     */
+    public static long limit(final long timeout) {
+        final Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return timeout;
+        }
+        final long remaining = deadline - SystemClock.elapsedRealtime();
+        return Math.max(0, Math.min(timeout, remaining));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.billing;
+
+import com.appscatter.iab.utils.ASLog;
+
+import android.os.IInterface;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a single AIDL service binding shared by all callers waiting for it.
+ *
+ * @param <AIDL> AIDL class being bound to.
+ * @see AidlBillingHelper#getServiceAsync()
+ */
+public final class ServiceFuture<AIDL extends IInterface> {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    @Nullable
+    private List<Callback<AIDL>> callbacks = new ArrayList<>();
+    @Nullable
+    private volatile AIDL service;
+
+    ServiceFuture() {
+    }
+
+    ServiceFuture(@Nullable final AIDL service) {
+        this.service = service;
+        this.callbacks = null;
+        latch.countDown();
+    }
+
+    /**
+     * Registers callback to be notified when binding is finished.
+     * <p>
+     * If binding is already finished callback is called immediately on the calling thread,
+     * otherwise it's called on the main thread. Callback must not block.
+     *
+     * @param callback Callback to notify.
+     */
+    public void addCallback(@NonNull final Callback<AIDL> callback) {
+        synchronized (this) {
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        dispatch(callback, service);
+    }
+
+    /**
+     * Indicates whether binding is finished, either successfully or not.
+     *
+     * @return True if binding is finished, false otherwise.
+     */
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    /**
+     * Blocks calling thread until binding is finished or timeout has passed.
+     *
+     * @param timeout Max time to wait in milliseconds.
+     * @return Connected service, null if binding failed, timed out or thread was interrupted.
+     */
+    @Nullable
+    public AIDL get(final long timeout) {
+        try {
+            if (latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                return service;
+            }
+        } catch (InterruptedException exception) {
+            ASLog.d("", exception);
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Finishes binding and notifies all waiters.
+     *
+     * @param service Connected service, null if binding failed.
+     */
+    void complete(@Nullable final AIDL service) {
+        final List<Callback<AIDL>> waiting;
+        synchronized (this) {
+            if (callbacks == null) {
+                return;
+            }
+            this.service = service;
+            waiting = callbacks;
+            callbacks = null;
+        }
+        latch.countDown();
+        for (final Callback<AIDL> callback : waiting) {
+            dispatch(callback, service);
+        }
+    }
+
+    private static <AIDL extends IInterface> void dispatch(@NonNull final Callback<AIDL> callback,
+            @Nullable final AIDL service) {
+        if (service == null) {
+            callback.onServiceFailed();
+        } else {
+            callback.onServiceConnected(service);
+        }
+    }
+
+    /**
+     * Callback notified when service binding is finished.
+     *
+     * @param <AIDL> AIDL class being bound to.
+     */
+    public interface Callback<AIDL extends IInterface> {
+
+        /**
+         * Called when service is connected.
+         *
+         * @param service Connected service.
+         */
+        void onServiceConnected(@NonNull final AIDL service);
+
+        /**
+         * Called when service couldn't be bound, connection timed out or service was
+         * disconnected before binding was finished.
+         */
+        void onServiceFailed();
+    }
+}
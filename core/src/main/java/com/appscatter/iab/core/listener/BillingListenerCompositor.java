@@ -27,22 +27,28 @@ import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
 
 import android.support.annotation.NonNull;
 
-import java.util.Collection;
-import java.util.HashSet;
-
 /**
  * Handy implementation of {@link BillingListener} interface which aggregates multiple listener
  * objects.
+ * <p>
+ * Listeners are kept in {@link CopyOnWriteListenerSet}s, so dispatch doesn't allocate and
+ * listeners can be removed while an event is being dispatched.
  */
 public class BillingListenerCompositor implements BillingListener {
 
-    protected final Collection<BillingListener> billingListeners = new HashSet<>();
+    protected final CopyOnWriteListenerSet<BillingListener> billingListeners =
+            new CopyOnWriteListenerSet<>();
 
-    protected final Collection<OnSetupListener> setupListeners = new HashSet<>();
-    protected final Collection<OnPurchaseListener> purchaseListeners = new HashSet<>();
-    protected final Collection<OnInventoryListener> inventoryListeners = new HashSet<>();
-    protected final Collection<OnSkuDetailsListener> skuDetailsListeners = new HashSet<>();
-    protected final Collection<OnConsumeListener> consumeListeners = new HashSet<>();
+    protected final CopyOnWriteListenerSet<OnSetupListener> setupListeners =
+            new CopyOnWriteListenerSet<>();
+    protected final CopyOnWriteListenerSet<OnPurchaseListener> purchaseListeners =
+            new CopyOnWriteListenerSet<>();
+    protected final CopyOnWriteListenerSet<OnInventoryListener> inventoryListeners =
+            new CopyOnWriteListenerSet<>();
+    protected final CopyOnWriteListenerSet<OnSkuDetailsListener> skuDetailsListeners =
+            new CopyOnWriteListenerSet<>();
+    protected final CopyOnWriteListenerSet<OnConsumeListener> consumeListeners =
+            new CopyOnWriteListenerSet<>();
 
     public BillingListenerCompositor() {
         super();
@@ -78,59 +84,81 @@ public class BillingListenerCompositor implements BillingListener {
         addConsumeListener(billingListener);
     }
 
+    /**
+     * Removes supplied listener from all listener sets.
+     *
+     * @param billingListener Listener object to remove.
+     */
+    public void removeBillingListener(@NonNull final BillingListener billingListener) {
+        billingListeners.remove(billingListener);
+        setupListeners.remove(billingListener);
+        purchaseListeners.remove(billingListener);
+        consumeListeners.remove(billingListener);
+        inventoryListeners.remove(billingListener);
+        skuDetailsListeners.remove(billingListener);
+    }
+
     @Override
     public void onRequest(@NonNull final BillingRequest billingRequest) {
-        for (final BillingListener billingListener : billingListeners) {
-            billingListener.onRequest(billingRequest);
+        final Object[] listeners = billingListeners.snapshot();
+        for (int i = 0; i < listeners.length; i++) {
+            ((BillingListener) listeners[i]).onRequest(billingRequest);
         }
     }
 
     @Override
     public void onResponse(@NonNull final BillingResponse billingResponse) {
-        for (final BillingListener billingListener : billingListeners) {
-            billingListener.onResponse(billingResponse);
+        final Object[] listeners = billingListeners.snapshot();
+        for (int i = 0; i < listeners.length; i++) {
+            ((BillingListener) listeners[i]).onResponse(billingResponse);
         }
     }
 
     @Override
     public void onSetupStarted(@NonNull final SetupStartedEvent setupStartedEvent) {
-        for (final OnSetupListener setupListener : setupListeners) {
-            setupListener.onSetupStarted(setupStartedEvent);
+        final Object[] listeners = setupListeners.snapshot();
+        for (int i = 0; i < listeners.length; i++) {
+            ((OnSetupListener) listeners[i]).onSetupStarted(setupStartedEvent);
         }
     }
 
     @Override
     public void onSetupResponse(@NonNull final SetupResponse setupResponse) {
-        for (final OnSetupListener setupListener : setupListeners) {
-            setupListener.onSetupResponse(setupResponse);
+        final Object[] listeners = setupListeners.snapshot();
+        for (int i = 0; i < listeners.length; i++) {
+            ((OnSetupListener) listeners[i]).onSetupResponse(setupResponse);
         }
     }
 
     @Override
     public void onPurchase(@NonNull final PurchaseResponse purchaseResponse) {
-        for (final OnPurchaseListener purchaseListener : purchaseListeners) {
-            purchaseListener.onPurchase(purchaseResponse);
+        final Object[] listeners = purchaseListeners.snapshot();
+        for (int i = 0; i < listeners.length; i++) {
+            ((OnPurchaseListener) listeners[i]).onPurchase(purchaseResponse);
         }
     }
 
     @Override
     public void onConsume(@NonNull final ConsumeResponse consumeResponse) {
-        for (final OnConsumeListener consumeListener : consumeListeners) {
-            consumeListener.onConsume(consumeResponse);
+        final Object[] listeners = consumeListeners.snapshot();
+        for (int i = 0; i < listeners.length; i++) {
+            ((OnConsumeListener) listeners[i]).onConsume(consumeResponse);
         }
     }
 
     @Override
     public void onInventory(@NonNull final InventoryResponse inventoryResponse) {
-        for (final OnInventoryListener inventoryListener : inventoryListeners) {
-            inventoryListener.onInventory(inventoryResponse);
+        final Object[] listeners = inventoryListeners.snapshot();
+        for (int i = 0; i < listeners.length; i++) {
+            ((OnInventoryListener) listeners[i]).onInventory(inventoryResponse);
         }
     }
 
     @Override
     public void onSkuDetails(@NonNull final SkuDetailsResponse skuDetailsResponse) {
-        for (final OnSkuDetailsListener skuDetailsListener : skuDetailsListeners) {
-            skuDetailsListener.onSkuDetails(skuDetailsResponse);
+        final Object[] listeners = skuDetailsListeners.snapshot();
+        for (int i = 0; i < listeners.length; i++) {
+            ((OnSkuDetailsListener) listeners[i]).onSkuDetails(skuDetailsResponse);
         }
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.listener;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Set of listeners backed by an array which is copied on every modification.
+ * <p>
+ * Dispatching code iterates {@link #snapshot()} directly, this doesn't allocate anything and stays
+ * safe if listeners are added or removed during dispatch.
+ *
+ * @param <L> Listener type.
+ */
+public final class CopyOnWriteListenerSet<L> {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    @NonNull
+    private volatile Object[] listeners = EMPTY;
+
+    /**
+     * Adds supplied listener unless it's already present.
+     *
+     * @param listener Listener to add.
+     * @return True if listener was added, false otherwise.
+     */
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    public synchronized boolean add(@NonNull final L listener) {
+        final Object[] current = listeners;
+        if (indexOf(current, listener) >= 0) {
+            return false;
+        }
+        final Object[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+        return true;
+    }
+
+    /**
+     * Removes supplied listener.
+     *
+     * @param listener Listener to remove.
+     * @return True if listener was removed, false if it wasn't present.
+     */
+    @SuppressWarnings("PMD.AvoidSynchronizedAtMethodLevel")
+    public synchronized boolean remove(@NonNull final Object listener) {
+        final Object[] current = listeners;
+        final int index = indexOf(current, listener);
+        if (index < 0) {
+            return false;
+        }
+        final int length = current.length;
+        if (length == 1) {
+            listeners = EMPTY;
+            return true;
+        }
+        final Object[] updated = new Object[length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, length - index - 1);
+        listeners = updated;
+        return true;
+    }
+
+    /**
+     * Gets current listeners.
+     * <p>
+     * Returned array must not be modified, every element is an instance of {@code L}.
+     *
+     * @return Array of listeners, can't be null.
+     */
+    @NonNull
+    public Object[] snapshot() {
+        return listeners;
+    }
+
+    public boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    private static int indexOf(@NonNull final Object[] array, @NonNull final Object listener) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].equals(listener)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
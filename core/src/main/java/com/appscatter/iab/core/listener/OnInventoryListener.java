@@ -29,7 +29,11 @@ public interface OnInventoryListener {
 
     /**
      * Called every time InventoryResponse is sent by current {@link BillingProvider}.
+     * <p>
+     * If purchase ledger is used, inventory request starting over is first answered from the
+     * ledger. Another response follows once ledger is synced with provider, if it has changed.
      *
+     * @see com.appscatter.iab.core.model.Configuration.Builder#setUsePurchaseLedger(boolean)
      * @param inventoryResponse {@link BillingResponse} object sent by BillingProvider.
      */
     void onInventory(@NonNull final InventoryResponse inventoryResponse);
@@ -29,7 +29,12 @@ public interface OnSkuDetailsListener {
 
     /**
      * Called every time SkuDetailsResponse is sent by current {@link BillingProvider}.
+     * <p>
+     * If SKU details are persisted, request might be first answered with outdated details.
+     * Another response follows once they are revalidated with provider, if any of them has
+     * changed.
      *
+     * @see com.appscatter.iab.core.model.Configuration.Builder#setPersistSkuDetails(boolean)
      * @param skuDetailsResponse {@link BillingResponse} object sent by BillingProvider.
      */
     void onSkuDetails(@NonNull final SkuDetailsResponse skuDetailsResponse);
@@ -20,14 +20,17 @@ import com.appscatter.iab.core.ASIab;
 import com.appscatter.iab.core.billing.BillingProvider;
 import com.appscatter.iab.core.listener.BillingListener;
 import com.appscatter.iab.core.listener.DefaultBillingListener;
+import com.appscatter.iab.core.model.event.billing.BillingEventType;
 import com.appscatter.iab.utils.permissions.ASPermissionsConfig;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Model class representing library configuration.
@@ -37,6 +40,14 @@ import java.util.Set;
 @SuppressWarnings("PMD.MissingStaticMethodInNonInstantiatableClass")
 public final class Configuration {
 
+    /**
+     * Default deadline for requests which don't require user interaction.
+     */
+    private static final long DEFAULT_REQUEST_DEADLINE = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEFAULT_SETUP_DEADLINE = TimeUnit.SECONDS.toMillis(30);
+    private static final int DEFAULT_SKU_DETAILS_CACHE_SIZE = 256;
+    private static final long DEFAULT_UNKNOWN_SKU_TTL = TimeUnit.MINUTES.toMillis(5);
+
     @NonNull
     private final Set<BillingProvider> providers;
     @Nullable
@@ -45,17 +56,54 @@ public final class Configuration {
     private final boolean autoRecover;
     private final BillingEventsProvider billingEventsProvider;
     private ASPermissionsConfig permissionsConfig;
+    @EventOverflowPolicy
+    private final int eventOverflowPolicy;
+    private final int eventQueueCapacity;
+    @NonNull
+    private final EventKeySelector eventKeySelector;
+    @NonNull
+    private final RequestPriorityPolicy requestPriorityPolicy;
+    @NonNull
+    private final long[] requestDeadlines;
+    private final long setupDeadline;
+    private final long skuDetailsTtl;
+    private final int skuDetailsCacheSize;
+    private final boolean persistSkuDetails;
+    private final long unknownSkuTtl;
+    private final boolean usePurchaseLedger;
 
     Configuration(@NonNull final Set<BillingProvider> providers,
             @Nullable final BillingListener billingListener,
             final boolean skipStaleRequests,
             final boolean autoRecover,
-            final ASPermissionsConfig permissionsConfig) {
+            final ASPermissionsConfig permissionsConfig,
+            @EventOverflowPolicy final int eventOverflowPolicy,
+            final int eventQueueCapacity,
+            @NonNull final EventKeySelector eventKeySelector,
+            @NonNull final RequestPriorityPolicy requestPriorityPolicy,
+            @NonNull final long[] requestDeadlines,
+            final long setupDeadline,
+            final long skuDetailsTtl,
+            final int skuDetailsCacheSize,
+            final boolean persistSkuDetails,
+            final long unknownSkuTtl,
+            final boolean usePurchaseLedger) {
         this.skipStaleRequests = skipStaleRequests;
         this.autoRecover = autoRecover;
         this.providers = Collections.unmodifiableSet(providers);
         this.billingListener = billingListener;
         this.permissionsConfig = permissionsConfig;
+        this.eventOverflowPolicy = eventOverflowPolicy;
+        this.eventQueueCapacity = eventQueueCapacity;
+        this.eventKeySelector = eventKeySelector;
+        this.requestPriorityPolicy = requestPriorityPolicy;
+        this.requestDeadlines = Arrays.copyOf(requestDeadlines, requestDeadlines.length);
+        this.setupDeadline = setupDeadline;
+        this.skuDetailsTtl = skuDetailsTtl;
+        this.skuDetailsCacheSize = skuDetailsCacheSize;
+        this.persistSkuDetails = persistSkuDetails;
+        this.unknownSkuTtl = unknownSkuTtl;
+        this.usePurchaseLedger = usePurchaseLedger;
         this.billingEventsProvider = new BillingEventsProvider();
     }
 
@@ -103,6 +151,117 @@ public final class Configuration {
         return autoRecover;
     }
 
+    /**
+     * Gets policy applied when event subscriber queue is full.
+     *
+     * @return Overflow policy.
+     * @see Builder#setEventQueue(int, int)
+     */
+    @EventOverflowPolicy
+    public int getEventOverflowPolicy() {
+        return eventOverflowPolicy;
+    }
+
+    /**
+     * Gets max number of events waiting for delivery to a single subscriber.
+     *
+     * @return Queue capacity, ignored for {@link EventOverflowPolicy#UNBOUNDED}.
+     */
+    public int getEventQueueCapacity() {
+        return eventQueueCapacity;
+    }
+
+    /**
+     * Gets key selector used by {@link EventOverflowPolicy#COALESCE}.
+     *
+     * @return EventKeySelector object, can't be null.
+     */
+    @NonNull
+    public EventKeySelector getEventKeySelector() {
+        return eventKeySelector;
+    }
+
+    /**
+     * Gets policy defining order in which pending billing requests are executed.
+     *
+     * @return RequestPriorityPolicy object, can't be null.
+     */
+    @NonNull
+    public RequestPriorityPolicy getRequestPriorityPolicy() {
+        return requestPriorityPolicy;
+    }
+
+    /**
+     * Gets time billing provider has to handle request of the supplied type.
+     *
+     * @param type Type of the request.
+     * @return Deadline in milliseconds, not positive if requests of this type have no deadline.
+     * @see Builder#setRequestDeadline(int, long)
+     */
+    public long getRequestDeadline(@BillingEventType final int type) {
+        return requestDeadlines[type];
+    }
+
+    /**
+     * Gets max time setup process waits for providers to report their compatibility.
+     *
+     * @return Deadline in milliseconds.
+     * @see Builder#setSetupDeadline(long)
+     */
+    public long getSetupDeadline() {
+        return setupDeadline;
+    }
+
+    /**
+     * Gets time loaded SKU details can be reused without asking billing provider again.
+     *
+     * @return Time to live in milliseconds, not positive if SKU details are not cached.
+     * @see Builder#setSkuDetailsCache(long, int)
+     */
+    public long getSkuDetailsTtl() {
+        return skuDetailsTtl;
+    }
+
+    /**
+     * Gets max number of SKU details kept in memory.
+     *
+     * @return Max number of cached SKU details.
+     * @see Builder#setSkuDetailsCache(long, int)
+     */
+    public int getSkuDetailsCacheSize() {
+        return skuDetailsCacheSize;
+    }
+
+    /**
+     * Indicates whether cached SKU details should survive application restart.
+     *
+     * @return True if SKU details are persisted, false otherwise.
+     * @see Builder#setPersistSkuDetails(boolean)
+     */
+    public boolean persistSkuDetails() {
+        return persistSkuDetails;
+    }
+
+    /**
+     * Gets time SKUs unknown to billing provider are not requested again.
+     *
+     * @return Time in milliseconds, not positive if unknown SKUs are always requested.
+     * @see Builder#setUnknownSkuTtl(long)
+     */
+    public long getUnknownSkuTtl() {
+        return unknownSkuTtl;
+    }
+
+    /**
+     * Indicates whether verified purchases should be kept in local ledger.
+     *
+     * @return True if purchase ledger is used, false otherwise.
+     * @see Builder#setUsePurchaseLedger(boolean)
+     */
+    public boolean usePurchaseLedger() {
+        return usePurchaseLedger;
+    }
+
     /**
      * Returns the billing events object
      *
@@ -124,6 +283,26 @@ public final class Configuration {
         private boolean skipStaleRequests = true;
         private boolean autoRecover;
         private ASPermissionsConfig permissionsConfig;
+        @EventOverflowPolicy
+        private int eventOverflowPolicy = EventOverflowPolicy.UNBOUNDED;
+        private int eventQueueCapacity = Integer.MAX_VALUE;
+        @NonNull
+        private EventKeySelector eventKeySelector = EventKeySelector.DEFAULT;
+        @NonNull
+        private RequestPriorityPolicy requestPriorityPolicy = RequestPriorityPolicy.DEFAULT;
+        @NonNull
+        private final long[] requestDeadlines = {
+                DEFAULT_REQUEST_DEADLINE, // CONSUME
+                0, // PURCHASE
+                DEFAULT_REQUEST_DEADLINE, // SKU_DETAILS
+                DEFAULT_REQUEST_DEADLINE // INVENTORY
+        };
+        private long setupDeadline = DEFAULT_SETUP_DEADLINE;
+        private long skuDetailsTtl;
+        private int skuDetailsCacheSize = DEFAULT_SKU_DETAILS_CACHE_SIZE;
+        private boolean persistSkuDetails;
+        private long unknownSkuTtl = DEFAULT_UNKNOWN_SKU_TTL;
+        private boolean usePurchaseLedger;
 
         /**
          * Adds supported billing provider.
@@ -181,6 +360,159 @@ public final class Configuration {
             return this;
         }
 
+        /**
+         * Bounds the number of events waiting for delivery to every library event subscriber.
+         * <p>
+         * By default queues are not bounded.
+         *
+         * @param policy   What to do when subscriber queue is full.
+         * @param capacity Max number of events waiting in a single subscriber queue.
+         * @return this object.
+         */
+        public Builder setEventQueue(@EventOverflowPolicy final int policy, final int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Queue capacity must be positive.");
+            }
+            this.eventOverflowPolicy = policy;
+            this.eventQueueCapacity = policy == EventOverflowPolicy.UNBOUNDED
+                    ? Integer.MAX_VALUE : capacity;
+            return this;
+        }
+
+        /**
+         * Sets key selector used to coalesce queued events.
+         *
+         * @param eventKeySelector EventKeySelector object to use.
+         * @return this object.
+         * @see EventOverflowPolicy#COALESCE
+         */
+        public Builder setEventKeySelector(@NonNull final EventKeySelector eventKeySelector) {
+            this.eventKeySelector = eventKeySelector;
+            return this;
+        }
+
+        /**
+         * Sets policy defining order in which pending billing requests are executed.
+         * <p>
+         * By default {@link RequestPriorityPolicy#DEFAULT} is used.
+         *
+         * @param requestPriorityPolicy RequestPriorityPolicy object to use.
+         * @return this object.
+         */
+        public Builder setRequestPriorityPolicy(
+                @NonNull final RequestPriorityPolicy requestPriorityPolicy) {
+            this.requestPriorityPolicy = requestPriorityPolicy;
+            return this;
+        }
+
+        /**
+         * Sets time billing provider has to handle request of the supplied type.
+         * <p>
+         * Request which misses its deadline is finished with
+         * {@link com.appscatter.iab.core.model.event.billing.Status#TIMEOUT} and stops blocking
+         * other requests. By default purchase has no deadline since it waits for the user, other
+         * requests have 1 minute.
+         *
+         * @param type     Type of the request.
+         * @param deadline Deadline in milliseconds, 0 to disable.
+         * @return this object.
+         */
+        public Builder setRequestDeadline(@BillingEventType final int type, final long deadline) {
+            this.requestDeadlines[type] = deadline;
+            return this;
+        }
+
+        /**
+         * Sets max time setup process waits for providers to report their compatibility.
+         * <p>
+         * Providers which don't respond in time are considered incompatible for this setup.
+         * Default is 30 seconds.
+         *
+         * @param setupDeadline Deadline in milliseconds.
+         * @return this object.
+         */
+        public Builder setSetupDeadline(final long setupDeadline) {
+            if (setupDeadline <= 0) {
+                throw new IllegalArgumentException("Setup deadline must be positive.");
+            }
+            this.setupDeadline = setupDeadline;
+            return this;
+        }
+
+        /**
+         * Sets how SKU details loaded from billing provider are cached in memory.
+         * <p>
+         * Cached details are used to answer following SKU details requests, only SKUs missing
+         * from the cache are loaded from billing provider. When cache is full, least recently used
+         * details are evicted. By default details are not cached.
+         *
+         * @param ttl        Time to live in milliseconds, 0 to disable caching.
+         * @param maxEntries Max number of cached SKU details.
+         * @return this object.
+         * @see com.appscatter.iab.core.SkuDetailsCache
+         */
+        public Builder setSkuDetailsCache(final long ttl, final int maxEntries) {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("Cache size must be positive.");
+            }
+            this.skuDetailsTtl = ttl;
+            this.skuDetailsCacheSize = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets whether cached SKU details should be persisted.
+         * <p>
+         * Persisted details are served as soon as setup is finished, even after application
+         * restart. Details older than cache time to live are revalidated with billing provider in
+         * background, listeners receive another response only if any price has changed. Thus a
+         * single SKU details request might be answered twice. Has no effect unless caching is
+         * enabled with {@link #setSkuDetailsCache(long, int)}, at most that many SKUs are
+         * persisted. By default details are not persisted.
+         *
+         * @param persistSkuDetails True to persist SKU details, false to keep them in memory.
+         * @return this object.
+         * @see #setSkuDetailsCache(long, int)
+         */
+        public Builder setPersistSkuDetails(final boolean persistSkuDetails) {
+            this.persistSkuDetails = persistSkuDetails;
+            return this;
+        }
+
+        /**
+         * Sets time SKUs unknown to billing provider are not requested again.
+         * <p>
+         * Such SKUs are answered with empty
+         * {@link com.appscatter.iab.core.model.billing.SkuDetails} until this time passes or
+         * product catalog changes. Default is 5 minutes.
+         *
+         * @param unknownSkuTtl Time in milliseconds, 0 to always request unknown SKUs.
+         * @return this object.
+         */
+        public Builder setUnknownSkuTtl(final long unknownSkuTtl) {
+            this.unknownSkuTtl = unknownSkuTtl;
+            return this;
+        }
+
+        /**
+         * Sets whether verified purchases should be kept in local ledger.
+         * <p>
+         * Once ledger was synced with billing provider, inventory requests starting over are
+         * answered from it right away and provider is synced in background, listeners receive
+         * another response only if any purchase has changed. Thus a single inventory request might
+         * be answered twice. Ledger survives application restart and can be read with
+         * {@link com.appscatter.iab.core.ASIab#getPurchaseLedger()} before setup is finished.
+         * By default ledger is not used.
+         *
+         * @param usePurchaseLedger True to use purchase ledger, false to always load inventory
+         *                          from billing provider.
+         * @return this object.
+         */
+        public Builder setUsePurchaseLedger(final boolean usePurchaseLedger) {
+            this.usePurchaseLedger = usePurchaseLedger;
+            return this;
+        }
+
         /**
          * Constructs new Configuration object.
          *
@@ -190,7 +522,10 @@ public final class Configuration {
             if (permissionsConfig == null) {
                 permissionsConfig = new ASPermissionsConfig.Builder().build();
             }
-            return new Configuration(providers, billingListener, skipStaleRequests, autoRecover, permissionsConfig);
+            return new Configuration(providers, billingListener, skipStaleRequests, autoRecover,
+                    permissionsConfig, eventOverflowPolicy, eventQueueCapacity, eventKeySelector,
+                    requestPriorityPolicy, requestDeadlines, setupDeadline, skuDetailsTtl,
+                    skuDetailsCacheSize, persistSkuDetails, unknownSkuTtl, usePurchaseLedger);
         }
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.model;
+
+import com.appscatter.iab.core.model.event.ASEvent;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Picks key used to coalesce queued events.
+ *
+ * @see EventOverflowPolicy#COALESCE
+ */
+public interface EventKeySelector {
+
+    /**
+     * Default key selector, coalesces events of the same class.
+     */
+    EventKeySelector DEFAULT = new EventKeySelector() {
+        @NonNull
+        @Override
+        public Object getKey(@NonNull final ASEvent event) {
+            return event.getClass();
+        }
+    };
+
+    /**
+     * Gets coalescing key of the supplied event.
+     *
+     * @param event Event to get key for.
+     * @return Key object, events with equal keys can replace each other.
+     */
+    @NonNull
+    Object getKey(@NonNull final ASEvent event);
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.model;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import static com.appscatter.iab.core.model.EventOverflowPolicy.BLOCK;
+import static com.appscatter.iab.core.model.EventOverflowPolicy.COALESCE;
+import static com.appscatter.iab.core.model.EventOverflowPolicy.DROP_OLDEST;
+import static com.appscatter.iab.core.model.EventOverflowPolicy.FAIL_FAST;
+import static com.appscatter.iab.core.model.EventOverflowPolicy.UNBOUNDED;
+
+/**
+ * Defines what happens when event subscriber can't keep up with posted events.
+ *
+ * @see Configuration.Builder#setEventQueue(int, int)
+ */
+@Retention(RetentionPolicy.SOURCE)
+@IntDef({UNBOUNDED, BLOCK, DROP_OLDEST, COALESCE, FAIL_FAST})
+public @interface EventOverflowPolicy {
+    /**
+     * Subscriber queues are not bounded.
+     */
+    int UNBOUNDED = 0;
+    /**
+     * Posting thread waits until subscriber frees some space in its queue.
+     * <p>
+     * Main thread, billing thread and threads delivering events to any subscriber are never
+     * blocked, oldest event is dropped instead. Otherwise subscribers posting to each other's
+     * full queues would deadlock.
+     */
+    int BLOCK = 1;
+    /**
+     * Oldest queued event is dropped to make room for the new one.
+     */
+    int DROP_OLDEST = 2;
+    /**
+     * New event replaces last queued event with the same key.
+     * <p>
+     * If there's no such event, oldest queued event is dropped.
+     *
+     * @see EventKeySelector
+     */
+    int COALESCE = 3;
+    /**
+     * New event is rejected right away and overflow is reported as error.
+     */
+    int FAIL_FAST = 4;
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.model;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Snapshot of a single event subscriber queue state.
+ *
+ * @see com.appscatter.iab.core.ASIab#getEventQueueGauges()
+ */
+public final class EventQueueGauge {
+
+    @NonNull
+    private final Class<?> eventClass;
+    private final int depth;
+    private final int maxDepth;
+    private final long dropped;
+
+    public EventQueueGauge(@NonNull final Class<?> eventClass,
+            final int depth,
+            final int maxDepth,
+            final long dropped) {
+        this.eventClass = eventClass;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+        this.dropped = dropped;
+    }
+
+    /**
+     * Gets type of events delivered through the queue.
+     *
+     * @return Event class, can't be null.
+     */
+    @NonNull
+    public Class<?> getEventClass() {
+        return eventClass;
+    }
+
+    /**
+     * Gets number of events waiting for delivery.
+     *
+     * @return Current queue depth.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the highest number of events ever waiting in the queue.
+     *
+     * @return Max queue depth.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets number of events dropped, coalesced or rejected due to overflow.
+     *
+     * @return Dropped events count.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return eventClass.getSimpleName() + "{depth=" + depth + ", maxDepth=" + maxDepth
+                + ", dropped=" + dropped + "}";
+    }
+}
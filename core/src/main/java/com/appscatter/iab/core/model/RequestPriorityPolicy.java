@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.model;
+
+import com.appscatter.iab.core.model.event.billing.BillingEventType;
+import com.appscatter.iab.core.model.event.billing.BillingRequest;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines order in which pending billing requests are executed.
+ * <p>
+ * Requests with higher priority are executed first. To prevent starvation every waiting request
+ * gains one priority level per {@link #getAgingPeriod()}.
+ *
+ * @see Configuration.Builder#setRequestPriorityPolicy(RequestPriorityPolicy)
+ */
+public interface RequestPriorityPolicy {
+
+    /**
+     * Default policy, ranks purchase over consume over inventory over SKU details.
+     * <p>
+     * Waiting request gains one priority level every 10 seconds.
+     */
+    RequestPriorityPolicy DEFAULT = new RequestPriorityPolicy() {
+
+        private final long agingPeriod = TimeUnit.SECONDS.toMillis(10);
+
+        @Override
+        public int getPriority(@NonNull final BillingRequest request) {
+            switch (request.getType()) {
+                case BillingEventType.PURCHASE:
+                    return 3;
+                case BillingEventType.CONSUME:
+                    return 2;
+                case BillingEventType.INVENTORY:
+                    return 1;
+                default:
+                    return 0;
+            }
+        }
+
+        @Override
+        public long getAgingPeriod() {
+            return agingPeriod;
+        }
+    };
+
+    /**
+     * Executes requests in the order they were scheduled.
+     */
+    RequestPriorityPolicy FIFO = new RequestPriorityPolicy() {
+        @Override
+        public int getPriority(@NonNull final BillingRequest request) {
+            return 0;
+        }
+
+        @Override
+        public long getAgingPeriod() {
+            return 0;
+        }
+    };
+
+    /**
+     * Gets priority of the supplied request.
+     *
+     * @param request Request to rank.
+     * @return Priority level, higher values are executed first.
+     */
+    int getPriority(@NonNull final BillingRequest request);
+
+    /**
+     * Gets time after which waiting request is considered one priority level higher.
+     *
+     * @return Period in milliseconds, aging is disabled if not positive.
+     */
+    long getAgingPeriod();
+}
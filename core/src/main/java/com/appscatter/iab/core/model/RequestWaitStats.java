@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.model;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Statistics of time billing requests spent waiting in a helper queue before execution.
+ *
+ * @see com.appscatter.iab.core.api.AdvancedIabHelper#getWaitStats()
+ */
+public final class RequestWaitStats {
+
+    /**
+     * Statistics for a helper which had no requests queued yet.
+     */
+    public static final RequestWaitStats EMPTY = new RequestWaitStats(0, 0, 0);
+
+    private final long count;
+    private final long totalWait;
+    private final long maxWait;
+
+    public RequestWaitStats(final long count, final long totalWait, final long maxWait) {
+        this.count = count;
+        this.totalWait = totalWait;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Constructs new statistics including one more request.
+     *
+     * @param wait Time request spent in queue, in milliseconds.
+     * @return New RequestWaitStats object.
+     */
+    @NonNull
+    public RequestWaitStats add(final long wait) {
+        return new RequestWaitStats(count + 1, totalWait + wait, Math.max(maxWait, wait));
+    }
+
+    /**
+     * Gets number of requests which left the queue for execution.
+     *
+     * @return Requests count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets time all requests spent in queue.
+     *
+     * @return Total wait time in milliseconds.
+     */
+    public long getTotalWait() {
+        return totalWait;
+    }
+
+    /**
+     * Gets longest time a single request spent in queue.
+     *
+     * @return Max wait time in milliseconds.
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Gets average time a request spent in queue.
+     *
+     * @return Average wait time in milliseconds, 0 if no requests were queued.
+     */
+    public long getAverageWait() {
+        return count == 0 ? 0 : totalWait / count;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestWaitStats{count=" + count + ", averageWait=" + getAverageWait()
+                + ", maxWait=" + maxWait + "}";
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.model;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Statistics of binding to a billing service.
+ *
+ * @see com.appscatter.iab.core.billing.AidlBillingHelper#getBindStats()
+ */
+public final class ServiceBindStats {
+
+    /**
+     * Statistics for a service which was never bound.
+     */
+    public static final ServiceBindStats EMPTY = new ServiceBindStats(0, 0, 0, 0);
+
+    private final long count;
+    private final long failures;
+    private final long totalLatency;
+    private final long maxLatency;
+
+    public ServiceBindStats(final long count,
+            final long failures,
+            final long totalLatency,
+            final long maxLatency) {
+        this.count = count;
+        this.failures = failures;
+        this.totalLatency = totalLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * Constructs new statistics including one more successful bind.
+     *
+     * @param latency Time it took service to connect, in milliseconds.
+     * @return New ServiceBindStats object.
+     */
+    @NonNull
+    public ServiceBindStats addBind(final long latency) {
+        return new ServiceBindStats(count + 1, failures, totalLatency + latency,
+                Math.max(maxLatency, latency));
+    }
+
+    /**
+     * Constructs new statistics including one more failed bind.
+     *
+     * @return New ServiceBindStats object.
+     */
+    @NonNull
+    public ServiceBindStats addFailure() {
+        return new ServiceBindStats(count, failures + 1, totalLatency, maxLatency);
+    }
+
+    /**
+     * Gets number of successful binds.
+     *
+     * @return Binds count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets number of binds which couldn't be started, timed out or were disconnected before
+     * service was connected.
+     *
+     * @return Failed binds count.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Gets time all successful binds took.
+     *
+     * @return Total bind latency in milliseconds.
+     */
+    public long getTotalLatency() {
+        return totalLatency;
+    }
+
+    /**
+     * Gets longest time a single successful bind took.
+     *
+     * @return Max bind latency in milliseconds.
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * Gets average time a successful bind took.
+     *
+     * @return Average bind latency in milliseconds, 0 if service was never bound.
+     */
+    public long getAverageLatency() {
+        return count == 0 ? 0 : totalLatency / count;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceBindStats{count=" + count + ", failures=" + failures
+                + ", averageLatency=" + getAverageLatency() + ", maxLatency=" + maxLatency + "}";
+    }
+}
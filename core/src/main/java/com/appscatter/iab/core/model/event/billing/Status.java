@@ -34,6 +34,7 @@ import static com.appscatter.iab.core.model.event.billing.Status.NO_BILLING_PROV
 import static com.appscatter.iab.core.model.event.billing.Status.PENDING;
 import static com.appscatter.iab.core.model.event.billing.Status.SERVICE_UNAVAILABLE;
 import static com.appscatter.iab.core.model.event.billing.Status.SUCCESS;
+import static com.appscatter.iab.core.model.event.billing.Status.TIMEOUT;
 import static com.appscatter.iab.core.model.event.billing.Status.UNAUTHORISED;
 import static com.appscatter.iab.core.model.event.billing.Status.UNKNOWN_ERROR;
 import static com.appscatter.iab.core.model.event.billing.Status.USER_CANCELED;
@@ -41,7 +42,7 @@ import static java.lang.annotation.RetentionPolicy.SOURCE;
 
 @Retention(SOURCE)
 @IntDef({SUCCESS, PENDING, UNAUTHORISED, BUSY, USER_CANCELED, BILLING_UNAVAILABLE, NO_BILLING_PROVIDER, SERVICE_UNAVAILABLE, ITEM_UNAVAILABLE,
-        ITEM_ALREADY_OWNED, UNKNOWN_ERROR, ERROR_NONE})
+        ITEM_ALREADY_OWNED, UNKNOWN_ERROR, ERROR_NONE, TIMEOUT})
 public @interface Status{
     /**
      * Everything is OK.
@@ -96,4 +97,10 @@ public @interface Status{
      * For some reason {@link BillingProvider} returned an empty response.
      */
     int ERROR_NONE = 11;
+    /**
+     * {@link BillingProvider} didn't handle request before its deadline.
+     *
+     * @see com.appscatter.iab.core.model.Configuration#getRequestDeadline(int)
+     */
+    int TIMEOUT = 12;
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.RequestPriorityPolicy;
+import com.appscatter.iab.core.model.event.billing.BillingRequest;
+import com.appscatter.iab.core.model.event.billing.InventoryRequest;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BillingRequestSchedulerTest {
+
+    private final BillingRequestScheduler scheduler = new BillingRequestScheduler();
+    private final IabHelperImpl helper1 = new IabHelperImpl();
+    private final IabHelperImpl helper2 = new IabHelperImpl();
+
+    @Test
+    public void schedule_skipsEqualRequestFromAnyHelper() throws Exception {
+        assertTrue(schedule(helper1, skuDetails("a")));
+        assertFalse(schedule(helper1, skuDetails("a")));
+        assertFalse(schedule(helper2, skuDetails("a")));
+        assertTrue(schedule(helper2, skuDetails("b")));
+        assertTrue(schedule(helper2, new InventoryRequest(true)));
+        assertFalse(schedule(helper1, new InventoryRequest(true)));
+    }
+
+    @Test
+    public void removeQueue_forgetsOnlyRequestsOfSuppliedHelper() throws Exception {
+        schedule(helper1, skuDetails("a"));
+        schedule(helper2, skuDetails("b"));
+
+        scheduler.removeQueue(helper1);
+
+        assertTrue(schedule(helper2, skuDetails("a")));
+        assertFalse(schedule(helper1, skuDetails("b")));
+    }
+
+    @Test
+    public void clear_forgetsAllRequests() throws Exception {
+        schedule(helper1, skuDetails("a"));
+        schedule(helper1, new InventoryRequest(true));
+
+        scheduler.clear();
+
+        assertTrue(schedule(helper2, skuDetails("a")));
+        assertTrue(schedule(helper2, new InventoryRequest(true)));
+    }
+
+    private boolean schedule(final IabHelperImpl helper, final BillingRequest request) {
+        return scheduler.schedule(helper, request, RequestPriorityPolicy.DEFAULT, 0);
+    }
+
+    private static SkuDetailsRequest skuDetails(final String sku) {
+        return new SkuDetailsRequest(Collections.singleton(sku));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.EventKeySelector;
+import com.appscatter.iab.core.model.EventOverflowPolicy;
+import com.appscatter.iab.core.model.EventQueueGauge;
+import com.appscatter.iab.core.model.event.billing.BillingResponse;
+import com.appscatter.iab.core.model.event.billing.InventoryResponse;
+import com.appscatter.iab.core.model.event.billing.PurchaseResponse;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.model.event.billing.Status;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.Emitter;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+
+public class BoundedEventQueueTest {
+
+    private static final int CAPACITY = 2;
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final List<BillingResponse> delivered = new ArrayList<>();
+
+    private final BillingResponse sku = new SkuDetailsResponse(Status.SUCCESS, null);
+    private final BillingResponse inventory = new InventoryResponse(Status.SUCCESS, null);
+    private final BillingResponse purchase = new PurchaseResponse(Status.SUCCESS, null);
+
+    @Test
+    public void accept_underCapacityDeliversInOrder() throws Exception {
+        final BoundedEventQueue<BillingResponse> queue = queue(EventOverflowPolicy.FAIL_FAST);
+        queue.accept(sku);
+        queue.accept(inventory);
+        scheduler.triggerActions();
+
+        assertEquals(Arrays.asList(sku, inventory), delivered);
+        assertGauge(queue, 0, 2, 0);
+    }
+
+    @Test
+    public void dropOldest_replacesHeadOfQueue() throws Exception {
+        final BoundedEventQueue<BillingResponse> queue = queue(EventOverflowPolicy.DROP_OLDEST);
+        queue.accept(sku);
+        queue.accept(inventory);
+        queue.accept(purchase);
+        assertGauge(queue, 2, 2, 1);
+        scheduler.triggerActions();
+
+        assertEquals(Arrays.asList(inventory, purchase), delivered);
+    }
+
+    @Test
+    public void coalesce_replacesQueuedEventWithSameKey() throws Exception {
+        final BoundedEventQueue<BillingResponse> queue = queue(EventOverflowPolicy.COALESCE);
+        final BillingResponse newSku = new SkuDetailsResponse(Status.SUCCESS, null);
+        queue.accept(sku);
+        queue.accept(inventory);
+        queue.accept(newSku);
+        scheduler.triggerActions();
+
+        assertEquals(Arrays.asList(newSku, inventory), delivered);
+        assertGauge(queue, 0, 2, 1);
+    }
+
+    @Test
+    public void coalesce_withoutSameKeyDropsOldest() throws Exception {
+        final BoundedEventQueue<BillingResponse> queue = queue(EventOverflowPolicy.COALESCE);
+        queue.accept(sku);
+        queue.accept(inventory);
+        queue.accept(purchase);
+        scheduler.triggerActions();
+
+        assertEquals(Arrays.asList(inventory, purchase), delivered);
+    }
+
+    @Test
+    public void failFast_rejectsNewEvent() throws Exception {
+        final BoundedEventQueue<BillingResponse> queue = queue(EventOverflowPolicy.FAIL_FAST);
+        queue.accept(sku);
+        queue.accept(inventory);
+        queue.accept(purchase);
+        scheduler.triggerActions();
+
+        assertEquals(Arrays.asList(sku, inventory), delivered);
+        assertGauge(queue, 0, 2, 1);
+    }
+
+    @Test
+    public void dispose_dropsQueuedEvents() throws Exception {
+        final BoundedEventQueue<BillingResponse> queue = queue(EventOverflowPolicy.DROP_OLDEST);
+        queue.accept(sku);
+        queue.dispose();
+        scheduler.triggerActions();
+
+        assertEquals(0, delivered.size());
+        assertGauge(queue, 0, 1, 0);
+    }
+
+    @Test(timeout = 5000)
+    public void block_fromOtherQueueDrainThread_dropsOldest() throws Exception {
+        final BoundedEventQueue<BillingResponse> full = queue(EventOverflowPolicy.BLOCK);
+        full.accept(sku);
+        full.accept(inventory);
+        final TestScheduler otherScheduler = new TestScheduler();
+        // Subscriber of the other queue posts to the full one from its drain thread
+        final BoundedEventQueue<BillingResponse> other = new BoundedEventQueue<>(
+                BillingResponse.class, EventOverflowPolicy.BLOCK, CAPACITY,
+                EventKeySelector.DEFAULT, new Emitter<BillingResponse>() {
+                    @Override
+                    public void onNext(final BillingResponse value) {
+                        full.accept(value);
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        throw new AssertionError(error);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                }, otherScheduler.createWorker());
+        other.accept(purchase);
+        otherScheduler.triggerActions();
+        assertGauge(full, 2, 2, 1);
+        scheduler.triggerActions();
+
+        assertEquals(Arrays.asList(inventory, purchase), delivered);
+    }
+
+    private BoundedEventQueue<BillingResponse> queue(@EventOverflowPolicy final int policy) {
+        return new BoundedEventQueue<>(BillingResponse.class, policy, CAPACITY,
+                EventKeySelector.DEFAULT, new Emitter<BillingResponse>() {
+                    @Override
+                    public void onNext(final BillingResponse value) {
+                        delivered.add(value);
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        throw new AssertionError(error);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                }, scheduler.createWorker());
+    }
+
+    private static void assertGauge(final BoundedEventQueue<?> queue,
+            final int depth,
+            final int maxDepth,
+            final long dropped) {
+        final EventQueueGauge gauge = queue.getGauge();
+        assertEquals(depth, gauge.getDepth());
+        assertEquals(maxDepth, gauge.getMaxDepth());
+        assertEquals(dropped, gauge.getDropped());
+    }
+}
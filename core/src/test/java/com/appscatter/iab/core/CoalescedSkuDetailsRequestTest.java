@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.billing.SkuDetails;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.model.event.billing.Status;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescedSkuDetailsRequestTest {
+
+    private static final String PROVIDER = "provider";
+
+    private final IabHelperImpl helper1 = new IabHelperImpl();
+    private final IabHelperImpl helper2 = new IabHelperImpl();
+    private final SkuDetailsRequest request1 = request("a", "b");
+    private final SkuDetailsRequest request2 = request("b", "c");
+    private final SkuDetailsRequest request3 = request("d");
+    private final CoalescedSkuDetailsRequest coalesced = new CoalescedSkuDetailsRequest(
+            skus("a", "b", "c", "d"), Arrays.asList(request1, request2, request3),
+            Arrays.asList(helper1, helper2, helper1));
+
+    @Test
+    public void split_partitionsDetailsByOriginalRequest() throws Exception {
+        final List<SkuDetailsResponse> responses = coalesced.split(new SkuDetailsResponse(
+                Status.SUCCESS, PROVIDER, details("a", "b", "c")));
+
+        assertEquals(3, responses.size());
+        assertEquals(Arrays.asList("a", "b"), getSkus(responses.get(0)));
+        // SKU requested by several requests is delivered to each of them
+        assertEquals(Arrays.asList("b", "c"), getSkus(responses.get(1)));
+        // SKU missing from response stays missing
+        assertEquals(Collections.<String>emptyList(), getSkus(responses.get(2)));
+        for (final SkuDetailsResponse response : responses) {
+            assertEquals(Status.SUCCESS, response.getStatus());
+            assertEquals(PROVIDER, response.getProviderName());
+        }
+    }
+
+    @Test
+    public void split_keepsErrorStatusForEveryRequest() throws Exception {
+        final List<SkuDetailsResponse> responses = coalesced.split(
+                new SkuDetailsResponse(Status.SERVICE_UNAVAILABLE, PROVIDER));
+
+        assertEquals(3, responses.size());
+        for (final SkuDetailsResponse response : responses) {
+            assertEquals(Status.SERVICE_UNAVAILABLE, response.getStatus());
+            assertTrue(response.getSkusDetails().isEmpty());
+        }
+    }
+
+    @Test
+    public void cancel_answersOnlyRequestsOfSuppliedHelper() throws Exception {
+        assertEquals(Arrays.asList(request1, request3), coalesced.cancel(helper1));
+        assertFalse(coalesced.isAnswered());
+        // Canceled requests must not receive merged response
+        assertFalse(coalesced.answer(0));
+        assertTrue(coalesced.answer(1));
+        assertFalse(coalesced.answer(2));
+        assertTrue(coalesced.isAnswered());
+    }
+
+    @Test
+    public void cancel_skipsAnsweredRequests() throws Exception {
+        assertTrue(coalesced.answer(1));
+
+        assertEquals(Collections.<SkuDetailsRequest>emptyList(), coalesced.cancel(helper2));
+        assertEquals(Arrays.asList(request1, request3), coalesced.cancel(helper1));
+        assertEquals(Collections.<SkuDetailsRequest>emptyList(), coalesced.cancel(helper1));
+        assertTrue(coalesced.isAnswered());
+    }
+
+    @Test
+    public void canCoalesce_acceptsOnlyPlainSkuDetailsRequests() throws Exception {
+        assertTrue(CoalescedSkuDetailsRequest.canCoalesce(request1));
+        assertFalse(CoalescedSkuDetailsRequest.canCoalesce(coalesced));
+        assertFalse(CoalescedSkuDetailsRequest.canCoalesce(new InventorySyncRequest(true)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_requiresHelperForEveryRequest() throws Exception {
+        new CoalescedSkuDetailsRequest(skus("a"), Collections.singletonList(request1),
+                Collections.<IabHelperImpl>emptyList());
+    }
+
+    private static SkuDetailsRequest request(final String... skus) {
+        return new SkuDetailsRequest(skus(skus));
+    }
+
+    private static Set<String> skus(final String... skus) {
+        return new LinkedHashSet<>(Arrays.asList(skus));
+    }
+
+    private static Collection<SkuDetails> details(final String... skus) {
+        final Collection<SkuDetails> details = new ArrayList<>();
+        for (final String sku : skus) {
+            details.add(new SkuDetails(sku));
+        }
+        return details;
+    }
+
+    private static List<String> getSkus(final SkuDetailsResponse response) {
+        final List<String> skus = new ArrayList<>();
+        for (final SkuDetails skuDetails : response.getSkusDetails()) {
+            skus.add(skuDetails.getSku());
+        }
+        return skus;
+    }
+}
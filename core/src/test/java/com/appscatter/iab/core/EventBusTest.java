@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.event.ASEvent;
+import com.appscatter.iab.core.model.event.billing.BillingResponse;
+import com.appscatter.iab.core.model.event.billing.InventoryResponse;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.model.event.billing.Status;
+
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+
+public class EventBusTest {
+
+    private final EventBus bus = new EventBus();
+
+    @Test
+    public void post_deliversToEventTypeAndSupertypes() throws Exception {
+        final TestObserver<SkuDetailsResponse> exact =
+                bus.events(SkuDetailsResponse.class, Schedulers.trampoline()).test();
+        final TestObserver<BillingResponse> superclass =
+                bus.events(BillingResponse.class, Schedulers.trampoline()).test();
+        final TestObserver<ASEvent> superinterface =
+                bus.events(ASEvent.class, Schedulers.trampoline()).test();
+        final TestObserver<InventoryResponse> unrelated =
+                bus.events(InventoryResponse.class, Schedulers.trampoline()).test();
+
+        final SkuDetailsResponse response = new SkuDetailsResponse(Status.SUCCESS, null);
+        bus.post(response);
+
+        exact.assertValue(response);
+        superclass.assertValue(response);
+        superinterface.assertValue(response);
+        unrelated.assertNoValues();
+    }
+
+    @Test
+    public void post_reachesTypeRegisteredAfterFirstPost() throws Exception {
+        bus.post(new SkuDetailsResponse(Status.SUCCESS, null));
+        final TestObserver<BillingResponse> observer =
+                bus.events(BillingResponse.class, Schedulers.trampoline()).test();
+
+        final SkuDetailsResponse response = new SkuDetailsResponse(Status.SUCCESS, null);
+        bus.post(response);
+
+        observer.assertValue(response);
+    }
+
+    @Test
+    public void events_sameTypeSharesProcessor() throws Exception {
+        final TestObserver<SkuDetailsResponse> first =
+                bus.events(SkuDetailsResponse.class, Schedulers.trampoline()).test();
+        final TestObserver<SkuDetailsResponse> second =
+                bus.events(SkuDetailsResponse.class, Schedulers.trampoline()).test();
+
+        final SkuDetailsResponse response = new SkuDetailsResponse(Status.SUCCESS, null);
+        bus.post(response);
+
+        first.assertValue(response);
+        second.assertValue(response);
+    }
+
+    @Test
+    public void dispose_stopsDelivery() throws Exception {
+        final TestObserver<BillingResponse> observer =
+                bus.events(BillingResponse.class, Schedulers.trampoline()).test();
+        observer.dispose();
+
+        bus.post(new SkuDetailsResponse(Status.SUCCESS, null));
+
+        observer.assertNoValues();
+    }
+}
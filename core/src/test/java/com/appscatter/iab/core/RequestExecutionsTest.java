@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestExecutionsTest {
+
+    private final RequestExecutions executions = new RequestExecutions();
+
+    private final SkuDetailsRequest first = skuDetails();
+    private final SkuDetailsRequest second = skuDetails();
+    private final RequestExecution firstExecution = execution(first, 1);
+    private final RequestExecution secondExecution = execution(second, 2);
+
+    @Test
+    public void put_equalRequests_keepsBothExecutions() throws Exception {
+        assertEquals(first, second);
+
+        executions.put(firstExecution);
+        executions.put(secondExecution);
+
+        assertEquals(2, executions.size());
+        assertSame(firstExecution, executions.get(first));
+        assertSame(secondExecution, executions.get(second));
+    }
+
+    @Test
+    public void remove_equalRequest_leavesOtherExecution() throws Exception {
+        executions.put(firstExecution);
+        executions.put(secondExecution);
+
+        assertSame(firstExecution, executions.remove(first));
+        assertNull(executions.remove(first));
+
+        assertSame(secondExecution, executions.get(second));
+        assertTrue(executions.contains(first));
+        assertSame(secondExecution, executions.remove(second));
+        assertTrue(executions.isEmpty());
+    }
+
+    @Test
+    public void contains_checksEqualRequests() throws Exception {
+        assertFalse(executions.contains(first));
+
+        executions.put(firstExecution);
+
+        assertTrue(executions.contains(second));
+        assertFalse(executions.contains(new SkuDetailsRequest(Collections.singleton("other"))));
+    }
+
+    private static SkuDetailsRequest skuDetails() {
+        return new SkuDetailsRequest(Collections.singleton("sku"));
+    }
+
+    private static RequestExecution execution(final SkuDetailsRequest request, final long order) {
+        return new RequestExecution(request, Collections.<IabHelperImpl>emptyList(), order);
+    }
+}
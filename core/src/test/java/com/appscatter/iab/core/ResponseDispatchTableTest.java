@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.listener.SimpleBillingListener;
+import com.appscatter.iab.core.model.event.billing.BillingResponse;
+import com.appscatter.iab.core.model.event.billing.InventoryResponse;
+import com.appscatter.iab.core.model.event.billing.PurchaseResponse;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.model.event.billing.Status;
+
+import org.junit.Test;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseDispatchTableTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private final ResponseDispatchTable table = new ResponseDispatchTable();
+
+    @Test
+    public void dispatch_callsOnResponseOfAllListenersBeforeTypedCallbacks() throws Exception {
+        table.rebuild(new Object[]{new RecordingListener("a"), new RecordingListener("b")});
+
+        table.dispatch(new SkuDetailsResponse(Status.SUCCESS, null));
+
+        assertEquals(Arrays.asList("a.onResponse", "b.onResponse",
+                "a.onSkuDetails", "b.onSkuDetails"), calls);
+    }
+
+    @Test
+    public void dispatch_callsOnlyCallbackOfResponseType() throws Exception {
+        table.rebuild(new Object[]{new RecordingListener("a")});
+
+        table.dispatch(new PurchaseResponse(Status.SUCCESS, null));
+        table.dispatch(new InventoryResponse(Status.SUCCESS, null));
+
+        assertEquals(Arrays.asList("a.onResponse", "a.onPurchase",
+                "a.onResponse", "a.onInventory"), calls);
+    }
+
+    @Test
+    public void rebuild_dropsRemovedListeners() throws Exception {
+        final RecordingListener listener = new RecordingListener("a");
+        table.rebuild(new Object[]{listener});
+        table.rebuild(new Object[0]);
+
+        table.dispatch(new SkuDetailsResponse(Status.SUCCESS, null));
+
+        assertTrue(calls.isEmpty());
+    }
+
+    private final class RecordingListener extends SimpleBillingListener {
+
+        private final String name;
+
+        RecordingListener(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onResponse(@NonNull final BillingResponse billingResponse) {
+            calls.add(name + ".onResponse");
+        }
+
+        @Override
+        public void onPurchase(@NonNull final PurchaseResponse purchaseResponse) {
+            calls.add(name + ".onPurchase");
+        }
+
+        @Override
+        public void onInventory(@NonNull final InventoryResponse inventoryResponse) {
+            calls.add(name + ".onInventory");
+        }
+
+        @Override
+        public void onSkuDetails(@NonNull final SkuDetailsResponse skuDetailsResponse) {
+            calls.add(name + ".onSkuDetails");
+        }
+    }
+}
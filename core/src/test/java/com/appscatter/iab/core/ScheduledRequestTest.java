@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.RequestPriorityPolicy;
+import com.appscatter.iab.core.model.billing.Purchase;
+import com.appscatter.iab.core.model.event.billing.BillingRequest;
+import com.appscatter.iab.core.model.event.billing.ConsumeRequest;
+import com.appscatter.iab.core.model.event.billing.InventoryRequest;
+import com.appscatter.iab.core.model.event.billing.PurchaseRequest;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsRequest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ScheduledRequestTest {
+
+    private static final long AGING_PERIOD = TimeUnit.SECONDS.toMillis(10);
+
+    private final BillingRequest purchase = new PurchaseRequest("purchase");
+    private final BillingRequest consume = new ConsumeRequest(new Purchase("consume"));
+    private final BillingRequest inventory = new InventoryRequest(true);
+    private final BillingRequest skuDetails =
+            new SkuDetailsRequest(Collections.singleton("sku"));
+
+    @Test
+    public void defaultPolicy_ranksByRequestType() throws Exception {
+        final List<BillingRequest> order = poll(
+                scheduled(skuDetails, RequestPriorityPolicy.DEFAULT, 0),
+                scheduled(inventory, RequestPriorityPolicy.DEFAULT, 0),
+                scheduled(consume, RequestPriorityPolicy.DEFAULT, 0),
+                scheduled(purchase, RequestPriorityPolicy.DEFAULT, 0));
+
+        assertEquals(Arrays.asList(purchase, consume, inventory, skuDetails), order);
+    }
+
+    @Test
+    public void defaultPolicy_waitingRequestAgesOnePriorityLevelPerPeriod() throws Exception {
+        // Waited 2.5 periods, still lower than purchase
+        assertSame(purchase, poll(
+                scheduled(skuDetails, RequestPriorityPolicy.DEFAULT, 0),
+                scheduled(purchase, RequestPriorityPolicy.DEFAULT, AGING_PERIOD * 5 / 2)).get(0));
+        // Waited 3.5 periods, overtakes purchase
+        assertSame(skuDetails, poll(
+                scheduled(skuDetails, RequestPriorityPolicy.DEFAULT, 0),
+                scheduled(purchase, RequestPriorityPolicy.DEFAULT, AGING_PERIOD * 7 / 2)).get(0));
+    }
+
+    @Test
+    public void samePriority_keepsSchedulingOrder() throws Exception {
+        final List<BillingRequest> order = poll(
+                scheduled(purchase, RequestPriorityPolicy.DEFAULT, 0),
+                scheduled(new PurchaseRequest("other"), RequestPriorityPolicy.DEFAULT, 0));
+
+        assertSame(purchase, order.get(0));
+    }
+
+    @Test
+    public void fifoPolicy_ignoresRequestType() throws Exception {
+        final List<BillingRequest> order = poll(
+                scheduled(skuDetails, RequestPriorityPolicy.FIFO, 0),
+                scheduled(inventory, RequestPriorityPolicy.FIFO, 1),
+                scheduled(purchase, RequestPriorityPolicy.FIFO, 2));
+
+        assertEquals(Arrays.asList(skuDetails, inventory, purchase), order);
+    }
+
+    private static ScheduledRequest scheduled(final BillingRequest request,
+            final RequestPriorityPolicy policy,
+            final long enqueuedAt) {
+        return new ScheduledRequest(request, policy, enqueuedAt);
+    }
+
+    private static List<BillingRequest> poll(final ScheduledRequest... requests) {
+        final PriorityQueue<ScheduledRequest> queue = new PriorityQueue<>();
+        Collections.addAll(queue, requests);
+        final BillingRequest[] order = new BillingRequest[requests.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = queue.poll().getRequest();
+        }
+        return Arrays.asList(order);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import org.junit.Test;
+
+import static com.appscatter.iab.core.SetupManager.NONE;
+import static com.appscatter.iab.core.SetupManager.UNDECIDED;
+import static com.appscatter.iab.core.SetupManager.UNKNOWN;
+import static com.appscatter.iab.core.SetupManager.pick;
+import static com.appscatter.iab.core.billing.Compatibility.COMPATIBLE;
+import static com.appscatter.iab.core.billing.Compatibility.INCOMPATIBLE;
+import static com.appscatter.iab.core.billing.Compatibility.PREFERRED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class SetupManagerTest {
+
+    private static final int NO_LAST = -1;
+
+    @Test
+    public void pick_prefersLastProviderIfCompatible() throws Exception {
+        assertEquals(1, pick(verdicts(PREFERRED, COMPATIBLE), 1, false));
+    }
+
+    @Test
+    public void pick_waitsForLastProviderVerdict() throws Exception {
+        assertEquals(UNDECIDED, pick(verdicts(PREFERRED, UNKNOWN), 1, false));
+        // Setup deadline passed, last provider is treated as incompatible
+        assertEquals(0, pick(verdicts(PREFERRED, UNKNOWN), 1, true));
+    }
+
+    @Test
+    public void pick_skipsIncompatibleLastProvider() throws Exception {
+        assertEquals(1, pick(verdicts(COMPATIBLE, PREFERRED, INCOMPATIBLE), 2, false));
+    }
+
+    @Test
+    public void pick_prefersPreferredProviderToInsertionOrder() throws Exception {
+        assertEquals(1, pick(verdicts(COMPATIBLE, PREFERRED), NO_LAST, false));
+    }
+
+    @Test
+    public void pick_fallsBackToInsertionOrder() throws Exception {
+        assertEquals(1, pick(verdicts(INCOMPATIBLE, COMPATIBLE, COMPATIBLE), NO_LAST, false));
+    }
+
+    @Test
+    public void pick_waitsForProvidersWhichMightBePreferred() throws Exception {
+        // Earlier provider might be preferred too
+        assertEquals(UNDECIDED, pick(verdicts(UNKNOWN, PREFERRED), NO_LAST, false));
+        assertEquals(1, pick(verdicts(UNKNOWN, PREFERRED), NO_LAST, true));
+        // Later provider might be preferred to compatible one
+        assertEquals(UNDECIDED, pick(verdicts(COMPATIBLE, UNKNOWN), NO_LAST, false));
+        assertEquals(0, pick(verdicts(COMPATIBLE, UNKNOWN), NO_LAST, true));
+    }
+
+    @Test
+    public void pick_doesNotWaitAfterFirstPreferredProvider() throws Exception {
+        assertEquals(0, pick(verdicts(PREFERRED, UNKNOWN, UNKNOWN), NO_LAST, false));
+    }
+
+    @Test
+    public void pick_returnsNoneIfNothingIsSuitable() throws Exception {
+        assertEquals(NONE, pick(verdicts(INCOMPATIBLE, INCOMPATIBLE), NO_LAST, false));
+        assertEquals(NONE, pick(verdicts(INCOMPATIBLE, UNKNOWN), 1, true));
+        assertEquals(NONE, pick(new int[0], NO_LAST, true));
+    }
+
+    @Test
+    public void sentinels_differFromEachOtherAndVerdicts() throws Exception {
+        final int[] values = {UNKNOWN, UNDECIDED, NONE, COMPATIBLE, INCOMPATIBLE, PREFERRED};
+        for (int i = 0; i < values.length; i++) {
+            for (int j = i + 1; j < values.length; j++) {
+                assertNotEquals(values[i], values[j]);
+            }
+        }
+    }
+
+    private static int[] verdicts(final int... verdicts) {
+        return verdicts;
+    }
+}
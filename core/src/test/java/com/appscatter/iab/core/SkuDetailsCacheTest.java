@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core;
+
+import com.appscatter.iab.core.model.billing.SkuDetails;
+import com.appscatter.iab.core.model.event.billing.SkuDetailsResponse;
+import com.appscatter.iab.core.model.event.billing.Status;
+import com.appscatter.iab.core.sku.SkuResolver;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SkuDetailsCacheTest {
+
+    private static final String PROVIDER = "provider";
+    private static final long TTL = 1000;
+    private static final long UNKNOWN_TTL = 100;
+
+    private long now;
+    private final SkuDetailsCache cache = new SkuDetailsCache(new SkuDetailsCache.Clock() {
+        @Override
+        public long now() {
+            return now;
+        }
+    });
+
+    @Test
+    public void lookup_withinTtl_answersFromCache() throws Exception {
+        setUp(10);
+        put(new SkuDetails("a"));
+
+        now = TTL - 1;
+        final List<SkuDetails> cached = new ArrayList<>();
+        final Set<String> missing = lookup(cached, "a");
+
+        assertTrue(missing.isEmpty());
+        assertEquals("a", cached.get(0).getSku());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void lookup_afterTtl_dropsEntry() throws Exception {
+        setUp(10);
+        put(new SkuDetails("a"));
+
+        now = TTL;
+        final Set<String> missing = lookup(new ArrayList<SkuDetails>(), "a");
+
+        assertEquals(Collections.singleton("a"), missing);
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void put_reloadedWithinTtl_keepsLoadTime() throws Exception {
+        setUp(10);
+        put(new SkuDetails("a"));
+        now = TTL / 2;
+        put(new SkuDetails("a"));
+
+        now = TTL;
+
+        assertEquals(Collections.singleton("a"), lookup(new ArrayList<SkuDetails>(), "a"));
+    }
+
+    @Test
+    public void put_overCapacity_evictsLeastRecentlyUsed() throws Exception {
+        setUp(2);
+        put(new SkuDetails("a"), new SkuDetails("b"));
+        // Touch "a", so "b" becomes the eldest
+        lookup(new ArrayList<SkuDetails>(), "a");
+
+        put(new SkuDetails("c"));
+
+        assertEquals(2, cache.getSize());
+        assertEquals(Collections.singleton("b"),
+                lookup(new ArrayList<SkuDetails>(), "a", "b", "c"));
+    }
+
+    @Test
+    public void configure_smallerCapacity_trimsEldestEntries() throws Exception {
+        setUp(3);
+        put(new SkuDetails("a"), new SkuDetails("b"), new SkuDetails("c"));
+
+        cache.configure(TTL, UNKNOWN_TTL, 1);
+
+        assertEquals(1, cache.getSize());
+        assertEquals(Collections.singleton("c"), cachedSkus("a", "b", "c"));
+    }
+
+    @Test
+    public void put_otherProvider_isIgnored() throws Exception {
+        setUp(10);
+
+        cache.put(new SkuDetailsResponse(Status.SUCCESS, "other",
+                Collections.singletonList(new SkuDetails("a"))));
+
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void put_failedResponse_isIgnored() throws Exception {
+        setUp(10);
+
+        cache.put(new SkuDetailsResponse(Status.SERVICE_UNAVAILABLE, PROVIDER,
+                Collections.singletonList(new SkuDetails("a"))));
+
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void lookup_disabledCache_missesKnownAndUnknownSkus() throws Exception {
+        cache.configure(0, 0, 10);
+        cache.setProvider(PROVIDER, SkuResolver.DEFAULT);
+        put(new SkuDetails("a"), new UnknownSkuDetails("b"));
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("a", "b")),
+                lookup(new ArrayList<SkuDetails>(), "a", "b"));
+    }
+
+    @Test
+    public void unknownSku_answeredEmptyUntilExpiry() throws Exception {
+        setUp(10);
+        put(new UnknownSkuDetails("x"));
+
+        now = UNKNOWN_TTL - 1;
+        final List<SkuDetails> cached = new ArrayList<>();
+        assertTrue(lookup(cached, "x").isEmpty());
+        assertEquals("x", cached.get(0).getSku());
+
+        now = UNKNOWN_TTL;
+        assertEquals(Collections.singleton("x"), lookup(new ArrayList<SkuDetails>(), "x"));
+    }
+
+    @Test
+    public void unknownSku_forgottenOnceProviderKnowsIt() throws Exception {
+        setUp(10);
+        put(new UnknownSkuDetails("x"));
+
+        final SkuDetails details = new SkuDetails("x");
+        put(details);
+
+        final List<SkuDetails> cached = new ArrayList<>();
+        lookup(cached, "x");
+        assertEquals(Collections.singletonList(details), cached);
+    }
+
+    @Test
+    public void unknownSku_forgottenOnReconfiguration() throws Exception {
+        setUp(10);
+        put(new UnknownSkuDetails("x"));
+
+        cache.configure(TTL, UNKNOWN_TTL, 10);
+
+        assertEquals(Collections.singleton("x"), lookup(new ArrayList<SkuDetails>(), "x"));
+    }
+
+    private void setUp(final int maxEntries) {
+        cache.configure(TTL, UNKNOWN_TTL, maxEntries);
+        cache.setProvider(PROVIDER, SkuResolver.DEFAULT);
+    }
+
+    private void put(final SkuDetails... skusDetails) {
+        cache.put(new SkuDetailsResponse(Status.SUCCESS, PROVIDER, Arrays.asList(skusDetails)));
+    }
+
+    private Set<String> lookup(final List<SkuDetails> cached, final String... skus) {
+        return cache.lookup(Arrays.asList(skus), cached, new ArrayList<String>());
+    }
+
+    private Set<String> cachedSkus(final String... skus) {
+        final Set<String> found = new LinkedHashSet<>(Arrays.asList(skus));
+        found.removeAll(lookup(new ArrayList<SkuDetails>(), skus));
+        return found;
+    }
+
+    /**
+     * Details provider didn't recognize, {@link SkuDetails#isEmpty()} relies on Android stubs.
+     */
+    private static final class UnknownSkuDetails extends SkuDetails {
+
+        UnknownSkuDetails(final String sku) {
+            super(sku);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.billing;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    /**
+     * Backoff of the first opening with no jitter.
+     */
+    private static final long BACKOFF = 500;
+    private static final long PROBE_TIMEOUT = 30000;
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(new Random() {
+        @Override
+        public double nextDouble() {
+            return 0;
+        }
+    });
+
+    @Test
+    public void closed_allowsRequests() throws Exception {
+        assertTrue(circuitBreaker.allowRequest(0));
+        assertTrue(circuitBreaker.allowRequest(0));
+        assertTrue(circuitBreaker.isClosed());
+    }
+
+    @Test
+    public void thresholdFailures_openCircuit() throws Exception {
+        assertFalse(circuitBreaker.onFailure(0));
+        assertFalse(circuitBreaker.onFailure(0));
+        assertTrue(circuitBreaker.onFailure(0));
+
+        assertFalse(circuitBreaker.allowRequest(BACKOFF - 1));
+        assertEquals(BACKOFF, circuitBreaker.getRemainingBackoff(0));
+    }
+
+    @Test
+    public void failuresOutsideWindow_keepCircuitClosed() throws Exception {
+        circuitBreaker.onFailure(0);
+        circuitBreaker.onFailure(20000);
+
+        assertFalse(circuitBreaker.onFailure(40000));
+        assertTrue(circuitBreaker.isClosed());
+    }
+
+    @Test
+    public void success_resetsFailureCount() throws Exception {
+        circuitBreaker.onFailure(0);
+        circuitBreaker.onFailure(0);
+        circuitBreaker.onSuccess();
+
+        assertFalse(circuitBreaker.onFailure(0));
+        assertFalse(circuitBreaker.onFailure(0));
+        assertTrue(circuitBreaker.onFailure(0));
+    }
+
+    @Test
+    public void halfOpen_allowsSingleProbe() throws Exception {
+        open();
+
+        assertTrue(circuitBreaker.allowRequest(BACKOFF));
+        assertFalse(circuitBreaker.allowRequest(BACKOFF + 1));
+        assertFalse(circuitBreaker.isClosed());
+    }
+
+    @Test
+    public void successfulProbe_closesCircuit() throws Exception {
+        open();
+        circuitBreaker.allowRequest(BACKOFF);
+
+        circuitBreaker.onSuccess();
+
+        assertTrue(circuitBreaker.isClosed());
+        assertTrue(circuitBreaker.allowRequest(BACKOFF));
+        assertTrue(circuitBreaker.allowRequest(BACKOFF));
+    }
+
+    @Test
+    public void failedProbe_reopensWithDoubledBackoff() throws Exception {
+        open();
+        circuitBreaker.allowRequest(BACKOFF);
+
+        assertTrue(circuitBreaker.onFailure(BACKOFF));
+
+        assertFalse(circuitBreaker.allowRequest(BACKOFF));
+        assertEquals(BACKOFF * 2, circuitBreaker.getRemainingBackoff(BACKOFF));
+    }
+
+    @Test
+    public void successAfterReopening_resetsBackoff() throws Exception {
+        open();
+        circuitBreaker.allowRequest(BACKOFF);
+        circuitBreaker.onFailure(BACKOFF);
+        circuitBreaker.allowRequest(BACKOFF * 3);
+        circuitBreaker.onSuccess();
+
+        open();
+
+        assertEquals(BACKOFF, circuitBreaker.getRemainingBackoff(0));
+    }
+
+    @Test
+    public void silentProbe_isReplacedAfterTimeout() throws Exception {
+        open();
+        circuitBreaker.allowRequest(BACKOFF);
+
+        assertFalse(circuitBreaker.allowRequest(BACKOFF + PROBE_TIMEOUT - 1));
+        assertTrue(circuitBreaker.allowRequest(BACKOFF + PROBE_TIMEOUT));
+        assertFalse(circuitBreaker.allowRequest(BACKOFF + PROBE_TIMEOUT));
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onFailure(0);
+        }
+    }
+}
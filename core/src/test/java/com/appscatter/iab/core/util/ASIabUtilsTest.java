@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.core.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ASIabUtilsTest {
+
+    @Test
+    public void partition_splitsRemainderIntoLastBatch() throws Exception {
+        final List<List<Integer>> batches = ASIabUtils.partition(Arrays.asList(1, 2, 3, 4, 5), 2);
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4),
+                Collections.singletonList(5)), batches);
+    }
+
+    @Test
+    public void partition_multipleOfBatch_hasNoEmptyTrailingBatch() throws Exception {
+        final List<List<Integer>> batches = ASIabUtils.partition(Arrays.asList(1, 2, 3, 4), 2);
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4)), batches);
+    }
+
+    @Test
+    public void partition_moreThanOneBatch_keepsAllItems() throws Exception {
+        // Precedence bug used to produce a single batch here
+        final List<Integer> items = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+
+        final List<List<Integer>> batches = ASIabUtils.partition(items, 5);
+
+        assertEquals(3, batches.size());
+        assertEquals(Arrays.asList(11, 12), batches.get(2));
+    }
+
+    @Test
+    public void partition_smallerThanBatch_returnsSingleBatch() throws Exception {
+        final List<List<Integer>> batches = ASIabUtils.partition(Arrays.asList(1, 2), 20);
+
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2)), batches);
+    }
+
+    @Test
+    public void partition_empty_returnsNoBatches() throws Exception {
+        assertTrue(ASIabUtils.partition(Collections.<Integer>emptyList(), 20).isEmpty());
+    }
+}
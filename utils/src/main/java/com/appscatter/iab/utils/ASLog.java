@@ -189,6 +189,18 @@ public final class ASLog {
         log(ERROR, message, args);
     }
 
+    /**
+     * Same as {@link #logMethod(Object...)} but doesn't allocate arguments array when logging is
+     * disabled.
+     *
+     * @param arg The argument of the logged method.
+     */
+    public static void logMethod(@Nullable final Object arg) {
+        if (shouldLog(DEBUG)) {
+            Log.println(DEBUG, TAG, getMethodLog(arg));
+        }
+    }
+
     /**
      * Logs a class and a method names.
      *
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2017. AppScatter
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.appscatter.iab.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index of installed packages.
+ * <p>
+ * Index is built with a single {@link android.content.pm.PackageManager#getInstalledPackages(int)}
+ * call on first use and is kept up to date by a package change receiver, so availability checks of
+ * billing providers don't have to go through {@link android.content.pm.PackageManager} each time.
+ * <p>
+ * Only {@link #isAnyInstalled(Pattern)} needs the whole index, until it's built
+ * {@link #isInstalled(String)} looks up single packages. Thus {@link #getInstaller()} and
+ * checks of known packages are cheap enough for the main thread.
+ */
+public final class ASPackageIndex {
+
+    private static final String SCHEME_PACKAGE = "package";
+
+    private static volatile ASPackageIndex instance;
+
+    /**
+     * Gets shared package index.
+     *
+     * @param context Context object used to query packages.
+     * @return Package index object, can't be null.
+     */
+    @NonNull
+    public static ASPackageIndex getInstance(@NonNull final Context context) {
+        ASPackageIndex index = instance;
+        if (index == null) {
+            synchronized (ASPackageIndex.class) {
+                index = instance;
+                if (index == null) {
+                    index = new ASPackageIndex(context.getApplicationContext());
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    @NonNull
+    private final Context context;
+    private final Map<Pattern, Boolean> matches = new ConcurrentHashMap<>();
+    /**
+     * Single package lookups made before index was built.
+     */
+    private final Map<String, Boolean> lookups = new ConcurrentHashMap<>();
+    private final Object[] listenersLock = new Object[0];
+
+    @Nullable
+    private volatile Set<String> packages;
+    @NonNull
+    private volatile Object[] listeners = new Object[0];
+    private volatile boolean installerLoaded;
+    @Nullable
+    private volatile String installer;
+    /**
+     * Number of package changes received so far.
+     */
+    private volatile int revision;
+
+    private ASPackageIndex(@NonNull final Context context) {
+        this.context = context;
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme(SCHEME_PACKAGE);
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(final Context context, final Intent intent) {
+                onPackageChanged(intent);
+            }
+        }, filter);
+    }
+
+    /**
+     * Checks if supplied package is installed.
+     *
+     * @param packageName Package name to look for.
+     * @return True if package is installed, false otherwise.
+     */
+    public boolean isInstalled(@NonNull final String packageName) {
+        final Set<String> set = packages;
+        if (set != null) {
+            return set.contains(packageName);
+        }
+        final Boolean cached = lookups.get(packageName);
+        if (cached != null) {
+            return cached;
+        }
+        final int revision = this.revision;
+        final boolean result = lookup(packageName);
+        synchronized (this) {
+            // Package might have changed during lookup
+            if (packages == null && revision == this.revision) {
+                lookups.put(packageName, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if any installed package name matches supplied pattern.
+     * <p>
+     * Result is remembered until the next package change. First call builds the whole index, it
+     * should be made from a background thread.
+     *
+     * @param pattern Pattern to match package names with.
+     * @return True if at least one installed package matches, false otherwise.
+     */
+    public boolean isAnyInstalled(@NonNull final Pattern pattern) {
+        final Boolean cached = matches.get(pattern);
+        if (cached != null) {
+            return cached;
+        }
+        final Set<String> set = getPackages();
+        boolean result = false;
+        for (final String packageName : set) {
+            if (pattern.matcher(packageName).matches()) {
+                result = true;
+                break;
+            }
+        }
+        synchronized (this) {
+            // Don't remember result computed from outdated index
+            if (set == packages) {
+                matches.put(pattern, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets package name of the application installer.
+     * <p>
+     * Installer can't change while application process is alive, thus it's queried only once.
+     *
+     * @return Installer package name, null if unknown.
+     */
+    @Nullable
+    public String getInstaller() {
+        if (!installerLoaded) {
+            installer = context.getPackageManager()
+                    .getInstallerPackageName(context.getPackageName());
+            installerLoaded = true;
+        }
+        return installer;
+    }
+
+    /**
+     * Registers listener to be notified about every package installation, removal or update.
+     * <p>
+     * Listener is called on the main thread after the index was updated.
+     *
+     * @param listener Listener to add.
+     */
+    public void addListener(@NonNull final OnPackageChangeListener listener) {
+        synchronized (listenersLock) {
+            final Object[] current = listeners;
+            final Object[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+            listeners = updated;
+        }
+    }
+
+    @NonNull
+    private Set<String> getPackages() {
+        Set<String> set = packages;
+        if (set == null) {
+            synchronized (this) {
+                set = packages;
+                if (set == null) {
+                    set = load();
+                    packages = set;
+                    lookups.clear();
+                }
+            }
+        }
+        return set;
+    }
+
+    private boolean lookup(@NonNull final String packageName) {
+        try {
+            context.getPackageManager().getPackageInfo(packageName, 0);
+            return true;
+        } catch (PackageManager.NameNotFoundException ignore) {
+            return false;
+        }
+    }
+
+    @NonNull
+    private Set<String> load() {
+        final List<PackageInfo> infos = context.getPackageManager().getInstalledPackages(0);
+        final Set<String> set = new HashSet<>(infos.size() * 2);
+        for (final PackageInfo info : infos) {
+            set.add(info.packageName);
+        }
+        ASLog.d("Package index built: %d packages", set.size());
+        return Collections.unmodifiableSet(set);
+    }
+
+    private void onPackageChanged(@NonNull final Intent intent) {
+        final Uri data = intent.getData();
+        final String packageName = data == null ? null : data.getSchemeSpecificPart();
+        if (packageName == null) {
+            return;
+        }
+        final boolean removed = Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())
+                && !intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+        synchronized (this) {
+            final Set<String> current = packages;
+            if (current != null && current.contains(packageName) == removed) {
+                final Set<String> updated = new HashSet<>(current);
+                if (removed) {
+                    updated.remove(packageName);
+                } else {
+                    updated.add(packageName);
+                }
+                packages = Collections.unmodifiableSet(updated);
+            }
+            matches.clear();
+            lookups.remove(packageName);
+            revision++;
+        }
+        ASLog.d("Package changed: %s, removed: %b", packageName, removed);
+        for (final Object listener : listeners) {
+            ((OnPackageChangeListener) listener).onPackageChanged(packageName);
+        }
+    }
+
+    /**
+     * Listener notified about installed packages changes.
+     */
+    public interface OnPackageChangeListener {
+
+        /**
+         * Called when package was installed, removed or updated.
+         *
+         * @param packageName Name of the changed package.
+         */
+        void onPackageChanged(@NonNull final String packageName);
+    }
+}
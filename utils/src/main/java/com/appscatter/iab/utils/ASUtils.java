@@ -106,12 +106,7 @@ public final class ASUtils {
      */
     public static boolean isInstalled(@NonNull final Context context,
             @NonNull final String appPackage) {
-        try {
-            return context.getPackageManager().getApplicationInfo(appPackage, 0) != null;
-        } catch (PackageManager.NameNotFoundException ignore) {
-            // ignore
-        }
-        return false;
+        return ASPackageIndex.getInstance(context).isInstalled(appPackage);
     }
 
     /**
@@ -122,8 +117,7 @@ public final class ASUtils {
      */
     @Nullable
     public static String getPackageInstaller(@NonNull final Context context) {
-        final PackageManager packageManager = context.getPackageManager();
-        return packageManager.getInstallerPackageName(context.getPackageName());
+        return ASPackageIndex.getInstance(context).getInstaller();
     }
 
     /**
@@ -223,14 +217,8 @@ public final class ASUtils {
      * @return if Google Play Store is installed
      */
     public static boolean isGooglePlayInstalled(Context context) {
-        List<ApplicationInfo> packages = context.getPackageManager().getInstalledApplications(PackageManager.GET_META_DATA);
-
-        for (ApplicationInfo appInfo : packages) {
-            if (appInfo.packageName.equals(GooglePlayStorePackageNameOld) ||
-                    appInfo.packageName.equals(GooglePlayStorePackageNameNew)) {
-                return true;
-            }
-        }
-        return false;
+        final ASPackageIndex index = ASPackageIndex.getInstance(context);
+        return index.isInstalled(GooglePlayStorePackageNameOld)
+                || index.isInstalled(GooglePlayStorePackageNameNew);
     }
 }